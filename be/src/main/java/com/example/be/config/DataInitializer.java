@@ -1,24 +1,107 @@
 package com.example.be.config;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
+import com.example.be.service.LabService;
 import com.example.be.service.LabTemplateService;
+import com.example.be.service.LeaderElection;
 
+/**
+ * Startup work that needs the database or the cluster, run off the main thread so the context
+ * finishes refreshing (and the port opens) without waiting for it.
+ * <p>
+ * Seeding the default templates is retried until it succeeds and gates readiness: this
+ * indicator is part of the readiness group, so the pod gets no traffic before the templates
+ * exist. The expired lab cleanup does not gate readiness; it only runs on the maintenance leader
+ * and the scheduled cleanup catches whatever it misses.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
-public class DataInitializer implements ApplicationRunner {
+public class DataInitializer implements ApplicationRunner, HealthIndicator {
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30000;
 
     private final LabTemplateService labTemplateService;
+    private final LabService labService;
+    private final LeaderElection leaderElection;
+
+    private volatile boolean templatesReady;
+    private volatile String lastError;
+
+    @Value("${lab.startup.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${lab.startup.cleanup-expired-labs:true}")
+    private boolean cleanupExpiredLabs;
+
+    public DataInitializer(LabTemplateService labTemplateService, LabService labService,
+                           LeaderElection leaderElection) {
+        this.labTemplateService = labTemplateService;
+        this.labService = labService;
+        this.leaderElection = leaderElection;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Starting application data initialization in the background");
+        Thread.ofVirtual().name("startup-init").start(this::initialize);
+    }
 
     @Override
-    public void run(ApplicationArguments args) throws Exception {
-        log.info("Initializing application data...");
-        // Template initialization is handled in @PostConstruct of LabTemplateService
+    public Health health() {
+        if (templatesReady) {
+            return Health.up().build();
+        }
+        Health.Builder builder = Health.outOfService().withDetail("task", "default templates");
+        if (lastError != null) {
+            builder.withDetail("lastError", lastError);
+        }
+        return builder.build();
+    }
+
+    private void initialize() {
+        long started = System.nanoTime();
+        seedTemplates();
+        log.info("Default templates ready after {} ms, accepting traffic", (System.nanoTime() - started) / 1_000_000);
+
+        if (cleanupExpiredLabs) {
+            try {
+                // Orphans left by a previous run; only the replica holding the lease deletes pods
+                if (leaderElection.tryAcquire(LeaderElection.MAINTENANCE)) {
+                    labService.cleanupExpiredLabs();
+                }
+            } catch (Exception e) {
+                log.warn("Startup cleanup of expired labs failed, leaving it to the scheduled cleanup: {}", e.getMessage());
+            }
+        }
         log.info("Application data initialization completed");
     }
-}
\ No newline at end of file
+
+    private void seedTemplates() {
+        long backoff = retryBackoffMs;
+        while (true) {
+            try {
+                labTemplateService.initializeDefaultTemplates();
+                templatesReady = true;
+                lastError = null;
+                return;
+            } catch (Exception e) {
+                lastError = e.getMessage();
+                log.warn("Failed to initialize default templates, retrying in {} ms: {}", backoff, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MS);
+        }
+    }
+}
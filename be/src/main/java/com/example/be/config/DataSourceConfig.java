@@ -0,0 +1,95 @@
+package com.example.be.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Primary pool plus optional read replicas behind one routing DataSource.
+ * <p>
+ * Set up unconditionally, with no replicas configured every connection comes from the primary;
+ * this keeps the bean graph the same for the AOT build, where conditions are fixed at build time.
+ */
+@Slf4j
+@Configuration
+public class DataSourceConfig {
+
+    // Comma-separated JDBC URLs; empty = no replicas
+    @Value("${lab.datasource.replica-urls:}")
+    private String replicaUrls;
+
+    @Value("${lab.datasource.replica-username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${lab.datasource.replica-password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${lab.datasource.replica-pool-size:20}")
+    private int replicaPoolSize;
+
+    // Short, so a dead replica falls back to the primary quickly
+    @Value("${lab.datasource.replica-connection-timeout-ms:2000}")
+    private long replicaConnectionTimeoutMs;
+
+    @Value("${lab.datasource.replica-max-lag-seconds:2}")
+    private long replicaMaxLagSeconds;
+
+    /**
+     * The pool Spring Boot would have created, bound to spring.datasource.hikari.*
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("primary");
+        return pool;
+    }
+
+    @Bean
+    public ReadReplicas readReplicas(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        List<String> urls = Arrays.stream(replicaUrls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + (i + 1));
+            pool.setJdbcUrl(urls.get(i));
+            pool.setDriverClassName(properties.determineDriverClassName());
+            pool.setUsername(replicaUsername);
+            pool.setPassword(replicaPassword);
+            pool.setMaximumPoolSize(replicaPoolSize);
+            pool.setConnectionTimeout(replicaConnectionTimeoutMs);
+            pool.setReadOnly(true);
+            // Start even when a replica is down; the health check brings it in later
+            pool.setInitializationFailTimeout(-1);
+            pool.setMetricRegistry(meterRegistry);
+            pools.add(pool);
+        }
+        if (!pools.isEmpty()) {
+            log.info("Routing read-only transactions of GET requests to {} replica(s)", pools.size());
+        }
+        return new ReadReplicas(pools, replicaMaxLagSeconds);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReadReplicas readReplicas,
+                                 MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryDataSource, readReplicas, meterRegistry));
+    }
+}
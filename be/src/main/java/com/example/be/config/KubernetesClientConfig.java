@@ -0,0 +1,133 @@
+package com.example.be.config;
+
+import io.kubernetes.client.Exec;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.util.Config;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.example.be.service.KubernetesClusters;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Configuration
+public class KubernetesClientConfig {
+
+    @Value("${kubernetes.client.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${kubernetes.client.read-timeout-ms:30000}")
+    private int readTimeoutMs;
+
+    @Value("${kubernetes.client.write-timeout-ms:30000}")
+    private int writeTimeoutMs;
+
+    @Value("${kubernetes.client.max-idle-connections:20}")
+    private int maxIdleConnections;
+
+    @Value("${kubernetes.client.keep-alive-minutes:5}")
+    private long keepAliveMinutes;
+
+    @Value("${kubernetes.client.max-requests:128}")
+    private int maxRequests;
+
+    @Value("${kubernetes.client.exec-max-requests:64}")
+    private int execMaxRequests;
+
+    @Value("${kubernetes.client.exec-ping-interval-seconds:30}")
+    private long execPingIntervalSeconds;
+
+    /**
+     * Shared by the API and exec clients so both reuse the same keep-alive connections
+     */
+    @Bean
+    public ConnectionPool kubernetesConnectionPool() {
+        return new ConnectionPool(maxIdleConnections, keepAliveMinutes, TimeUnit.MINUTES);
+    }
+
+    @Bean
+    public Dispatcher kubernetesDispatcher() {
+        return newDispatcher(maxRequests);
+    }
+
+    /**
+     * Exec streams are held for as long as their command runs; on their own dispatcher they
+     * cannot use up the request slots of pod creates, reads and deletes
+     */
+    @Bean
+    public Dispatcher kubernetesExecDispatcher() {
+        return newDispatcher(execMaxRequests);
+    }
+
+    /**
+     * One API client and one exec client per configured cluster. A cluster without a kubeconfig
+     * uses the default client resolution (KUBECONFIG, ~/.kube/config, then in-cluster).
+     */
+    @Bean
+    public KubernetesClusters kubernetesClusters(ConnectionPool kubernetesConnectionPool,
+                                                 Dispatcher kubernetesDispatcher,
+                                                 Dispatcher kubernetesExecDispatcher,
+                                                 Environment environment,
+                                                 @Value("${kubernetes.clusters:default}") List<String> clusterNames,
+                                                 @Value("${kubernetes.namespace:default}") String defaultNamespace) throws IOException {
+        List<KubernetesClusters.Cluster> clusters = new ArrayList<>();
+        for (String name : clusterNames) {
+            String prefix = "kubernetes.cluster." + name + ".";
+            String kubeconfig = environment.getProperty(prefix + "kubeconfig", "");
+            List<String> namespaces = Arrays.stream(environment.getProperty(prefix + "namespaces", defaultNamespace).split(","))
+                    .map(String::trim).filter(namespace -> !namespace.isEmpty()).toList();
+
+            ApiClient apiClient = newClient(kubeconfig);
+            apiClient.setHttpClient(tune(apiClient.getHttpClient().newBuilder(), kubernetesConnectionPool, kubernetesDispatcher)
+                    .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                    .build());
+
+            // Long-running setup commands can stay silent for minutes, so exec streams have no
+            // read timeout and WebSocket pings keep the connection alive instead
+            ApiClient execClient = newClient(kubeconfig);
+            execClient.setHttpClient(tune(execClient.getHttpClient().newBuilder(), kubernetesConnectionPool, kubernetesExecDispatcher)
+                    .readTimeout(0, TimeUnit.MILLISECONDS)
+                    .pingInterval(execPingIntervalSeconds, TimeUnit.SECONDS)
+                    .build());
+
+            clusters.add(new KubernetesClusters.Cluster(name, new CoreV1Api(apiClient), new Exec(execClient), namespaces));
+            log.info("Kubernetes cluster {} initialized: server={}, namespaces={}", name, apiClient.getBasePath(), namespaces);
+        }
+        log.info("Kubernetes clients: connectTimeout={}ms, readTimeout={}ms, maxIdleConnections={}, maxRequests={}, " +
+                        "execMaxRequests={}, execPingInterval={}s",
+                connectTimeoutMs, readTimeoutMs, maxIdleConnections, maxRequests, execMaxRequests, execPingIntervalSeconds);
+        return new KubernetesClusters(clusters);
+    }
+
+    private static Dispatcher newDispatcher(int maxRequests) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+        return dispatcher;
+    }
+
+    private static ApiClient newClient(String kubeconfig) throws IOException {
+        return kubeconfig.isBlank() ? Config.defaultClient() : Config.fromConfig(kubeconfig);
+    }
+
+    private OkHttpClient.Builder tune(OkHttpClient.Builder builder, ConnectionPool connectionPool, Dispatcher dispatcher) {
+        return builder
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMs, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.be.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection pools of the read replicas and their health.
+ * <p>
+ * A replica is used only while its last check passed: the connection is valid and, when it
+ * replicates, it is running and at most {@code maxLagSeconds} behind. The lag comes from
+ * {@code SHOW REPLICA STATUS} (MySQL 8.0.22+, needs REPLICATION CLIENT); an instance that is not
+ * configured as a replica reports no lag, which keeps two standalone local databases usable for
+ * testing. A failed connection attempt takes the replica out until the next check.
+ */
+@Slf4j
+public class ReadReplicas implements HealthIndicator, AutoCloseable {
+
+    static final class Replica {
+        private final HikariDataSource pool;
+        private volatile boolean healthy;
+        private volatile Long lagSeconds;
+        private volatile String lastError;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+    }
+
+    private final List<Replica> replicas;
+    private final long maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadReplicas(List<HikariDataSource> pools, long maxLagSeconds) {
+        this.replicas = new ArrayList<>();
+        pools.forEach(pool -> replicas.add(new Replica(pool)));
+        this.maxLagSeconds = maxLagSeconds;
+        checkHealth();
+    }
+
+    public boolean isEnabled() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * Next healthy replica, round robin, or null when none is
+     */
+    HikariDataSource pick() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.pool;
+            }
+        }
+        return null;
+    }
+
+    void markDown(HikariDataSource pool, SQLException error) {
+        for (Replica replica : replicas) {
+            if (replica.pool == pool && replica.healthy) {
+                replica.healthy = false;
+                replica.lastError = error.getMessage();
+                log.warn("Read replica {} failed, reading from the primary until it recovers: {}",
+                        pool.getPoolName(), error.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lab.datasource.replica-health-interval-ms:2000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            try (Connection connection = replica.pool.getConnection()) {
+                if (!connection.isValid(2)) {
+                    throw new SQLException("Connection is not valid");
+                }
+                Long lag = replicationLag(connection);
+                replica.lagSeconds = lag;
+                if (lag != null && lag < 0) {
+                    throw new SQLException("Replication is not running");
+                }
+                if (lag != null && maxLagSeconds > 0 && lag > maxLagSeconds) {
+                    throw new SQLException("Replica is " + lag + "s behind (max " + maxLagSeconds + "s)");
+                }
+                replica.healthy = true;
+                replica.lastError = null;
+                if (!wasHealthy) {
+                    log.info("Read replica {} is healthy (lag {}s)", replica.pool.getPoolName(), lag);
+                }
+            } catch (SQLException e) {
+                replica.healthy = false;
+                replica.lastError = e.getMessage();
+                if (wasHealthy) {
+                    log.warn("Read replica {} is unhealthy: {}", replica.pool.getPoolName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Seconds behind the source, null when the instance does not replicate, -1 when replication is stopped
+     */
+    private static Long replicationLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet status = statement.executeQuery("SHOW REPLICA STATUS")) {
+            if (!status.next()) {
+                return null;
+            }
+            long lag = status.getLong("Seconds_Behind_Source");
+            return status.wasNull() ? -1L : lag;
+        }
+    }
+
+    /**
+     * Always UP: without replicas, reads fall back to the primary
+     */
+    @Override
+    public Health health() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("healthy", replica.healthy);
+            if (replica.lagSeconds != null) {
+                detail.put("lagSeconds", replica.lagSeconds);
+            }
+            if (replica.lastError != null) {
+                detail.put("error", replica.lastError);
+            }
+            details.put(replica.pool.getPoolName(), detail);
+        }
+        return Health.up().withDetails(details).build();
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.be.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Decides per request whether reads may go to a replica.
+ * <p>
+ * GET and HEAD requests may, unless the client wrote something in the last
+ * {@code read-your-writes-seconds}: every other request sets a short-lived cookie that keeps the
+ * client's reads on the primary until the replicas have caught up with its write.
+ */
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final String COOKIE = "lab_rw";
+
+    private final ReadReplicas readReplicas;
+
+    @Value("${lab.datasource.read-your-writes-seconds:5}")
+    private int stickySeconds;
+
+    public ReadYourWritesFilter(ReadReplicas readReplicas) {
+        this.readReplicas = readReplicas;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!readReplicas.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            // Set before the handler runs, the response may be committed by the time it returns
+            Cookie cookie = new Cookie(COOKIE, Long.toString(System.currentTimeMillis() + stickySeconds * 1000L));
+            cookie.setPath("/");
+            cookie.setMaxAge(stickySeconds);
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (!wroteRecently(request)) {
+            ReplicaRoutingDataSource.allowReplicaReads();
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.clear();
+        }
+    }
+
+    private static boolean wroteRecently(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.be.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends read-only transactions of GET requests to a healthy read replica, everything else to
+ * the primary.
+ * <p>
+ * Only threads marked by {@link ReadYourWritesFilter} may use a replica, so background work
+ * (setup jobs, the outbox, the reconciler) always reads its own writes, and a request that opens
+ * a read-write transaction stays on the primary from then on. Must sit behind a
+ * {@code LazyConnectionDataSourceProxy}: the read-only flag of a transaction is only known once
+ * it has begun, after the transaction manager asked for a connection.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final ThreadLocal<Boolean> REPLICA_ALLOWED = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final ReadReplicas replicas;
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, ReadReplicas replicas, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.primaryConnections = meterRegistry.counter("lab.datasource.connections", "target", "primary");
+        this.replicaConnections = meterRegistry.counter("lab.datasource.connections", "target", "replica");
+    }
+
+    /**
+     * Lets read-only transactions on the current thread use a replica, until {@link #clear()}
+     */
+    public static void allowReplicaReads() {
+        REPLICA_ALLOWED.set(Boolean.TRUE);
+    }
+
+    /**
+     * Keeps the rest of the current request on the primary
+     */
+    public static void usePrimary() {
+        REPLICA_ALLOWED.remove();
+    }
+
+    public static void clear() {
+        REPLICA_ALLOWED.remove();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (REPLICA_ALLOWED.get() != null && TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // The request writes: its later reads must see that write
+            REPLICA_ALLOWED.remove();
+        }
+        if (REPLICA_ALLOWED.get() != null && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            HikariDataSource replica = replicas.pick();
+            if (replica != null) {
+                try {
+                    Connection connection = replica.getConnection();
+                    replicaConnections.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    replicas.markDown(replica, e);
+                }
+            }
+        }
+        primaryConnections.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Explicit credentials are never routed: the replicas are configured for the application user
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryConnections.increment();
+        return primary.getConnection(username, password);
+    }
+}
@@ -1,9 +1,56 @@
 package com.example.be.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+/**
+ * Two schedulers: the default one (spring.task.scheduling.*) for the background loops, and a
+ * separate one for lease renewals only, so a slow retention run, reconciliation or node listing can
+ * never delay a renewal past the leader or setup job lease and hand the work to a second replica.
+ * Bulk provisioning runs its batches on a bounded executor of its own.
+ */
 @Configuration
 @EnableScheduling
 public class SchedulingConfig {
-}
\ No newline at end of file
+
+    public static final String LEASE_SCHEDULER = "leaseScheduler";
+    public static final String BULK_PROVISIONING_EXECUTOR = "bulkProvisioningExecutor";
+
+    /**
+     * Picked up by @Scheduled methods without an explicit scheduler
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(LEASE_SCHEDULER)
+    public ThreadPoolTaskScheduler leaseScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("lease-renewal-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
+
+    /**
+     * One thread per batch creating pods; batches beyond the queue are rejected
+     */
+    @Bean(BULK_PROVISIONING_EXECUTOR)
+    public ThreadPoolTaskExecutor bulkProvisioningExecutor(
+            @Value("${lab.bulk.max-running-batches:2}") int maxRunningBatches,
+            @Value("${lab.bulk.max-queued-batches:4}") int maxQueuedBatches) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxRunningBatches);
+        executor.setMaxPoolSize(maxRunningBatches);
+        executor.setQueueCapacity(maxQueuedBatches);
+        executor.setThreadNamePrefix("bulk-provision-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
@@ -13,6 +13,8 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:5173")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                // Lets clients that manage their own cache send If-None-Match
+                .exposedHeaders("ETag")
                 .allowCredentials(true);
     }
 }
\ No newline at end of file
@@ -2,13 +2,20 @@ package com.example.be.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import com.example.be.dto.CreateLabRequest;
 import com.example.be.dto.ExecuteCommandRequest;
 import com.example.be.dto.CommandResultResponse;
+import com.example.be.dto.ExecBenchmarkResponse;
 import com.example.be.dto.LabResponse;
+import com.example.be.service.ChangeTracker;
+import com.example.be.service.LabExecLimiter;
 import com.example.be.service.LabService;
 
 import java.util.List;
@@ -20,7 +27,19 @@ import java.util.List;
 @RequiredArgsConstructor
 public class LabController {
 
+    private static final List<String> LAB_TYPES = List.of("docker", "python", "nodejs", "kubernetes", "johndoe");
+    // Only changes with a deployment that changes the list
+    private static final String LAB_TYPES_ETAG = "\"types-" + Integer.toHexString(LAB_TYPES.hashCode()) + "\"";
+
     private final LabService labService;
+    private final ChangeTracker changeTracker;
+
+    // Diagnostics only: each call runs every iteration once per transport in the lab's pod
+    @Value("${lab.exec.benchmark.enabled:false}")
+    private boolean benchmarkEnabled;
+
+    @Value("${lab.exec.benchmark.max-iterations:50}")
+    private int benchmarkMaxIterations;
 
     @PostMapping("/create")
     public ResponseEntity<LabResponse> createLab(@RequestBody CreateLabRequest request) {
@@ -35,10 +54,15 @@ public class LabController {
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<LabResponse>> getUserLabs(@PathVariable String userId) {
+    public ResponseEntity<List<LabResponse>> getUserLabs(@PathVariable String userId, WebRequest request) {
+        // Answered from the in-memory change counter, before touching the database
+        String etag = changeTracker.etag(ChangeTracker.userLabs(userId));
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
         log.info("Fetching labs for user: {}", userId);
         List<LabResponse> labs = labService.getUserLabs(userId);
-        return ResponseEntity.ok(labs);
+        return etag == null ? ResponseEntity.ok(labs) : ResponseEntity.ok().eTag(etag).body(labs);
     }
 
     @DeleteMapping("/{labId}")
@@ -72,6 +96,17 @@ public class LabController {
             log.info("Executing command '{}' in lab {}", request.getCommand(), request.getLabId());
             CommandResultResponse result = labService.executeCommand(request);
             return ResponseEntity.ok(result);
+        } catch (LabExecLimiter.LabBusyException e) {
+            log.warn("Lab {} is saturated, rejecting command '{}'", request.getLabId(), request.getCommand());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(CommandResultResponse.builder()
+                            .command(request.getCommand())
+                            .output("")
+                            .error(e.getMessage())
+                            .exitCode(-1)
+                            .success(false)
+                            .build());
         } catch (Exception e) {
             log.error("Failed to execute command in lab {}: {}", request.getLabId(), e.getMessage(), e);
             return ResponseEntity.badRequest().body(
@@ -86,6 +121,33 @@ public class LabController {
         }
     }
 
+    @PostMapping("/{labId}/exec/benchmark")
+    public ResponseEntity<ExecBenchmarkResponse> benchmarkExecTransports(@PathVariable String labId,
+                                                                         @RequestParam(defaultValue = "true") String command,
+                                                                         @RequestParam(defaultValue = "20") int iterations) {
+        if (!benchmarkEnabled) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            log.info("Benchmarking exec transports in lab {} with {} iterations", labId, iterations);
+            ExecBenchmarkResponse result = labService.benchmarkExecTransports(labId, command,
+                    Math.max(1, Math.min(iterations, benchmarkMaxIterations)));
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid exec benchmark request for lab {}: {}", labId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("/{labId}/exec/{execId}")
+    public ResponseEntity<Void> cancelExec(@PathVariable String labId, @PathVariable String execId) {
+        log.info("Cancelling exec {} in lab {}", execId, labId);
+        if (labService.cancelExec(labId, execId)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
     @GetMapping("/{labId}/suggested-commands")
     public ResponseEntity<List<String>> getSuggestedCommands(@PathVariable String labId) {
         // Get suggested commands based on lab type
@@ -108,7 +170,10 @@ public class LabController {
         }
     }
     @GetMapping("/types")
-public ResponseEntity<List<String>> getLabTypes() {
-    return ResponseEntity.ok(List.of("docker", "python", "nodejs", "kubernetes", "johndoe"));
+public ResponseEntity<List<String>> getLabTypes(WebRequest request) {
+    if (request.checkNotModified(LAB_TYPES_ETAG)) {
+        return null;
+    }
+    return ResponseEntity.ok().eTag(LAB_TYPES_ETAG).body(LAB_TYPES);
 }
 }
\ No newline at end of file
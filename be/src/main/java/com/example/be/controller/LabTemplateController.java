@@ -2,18 +2,34 @@ package com.example.be.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import com.example.be.dto.BulkCreateLabsRequest;
+import com.example.be.dto.BulkProvisionResponse;
 import com.example.be.dto.CreateLabFromTemplateRequest;
 import com.example.be.dto.LabResponse;
 import com.example.be.dto.LabTemplateResponse;
 import com.example.be.dto.SetupStepResponse;
 import com.example.be.dto.SetupExecutionLogResponse;
+import com.example.be.dto.SetupLogSummaryResponse;
+import com.example.be.dto.TemplateImportResponse;
+import com.example.be.dto.TemplateSearchResponse;
 import com.example.be.model.Lab;
 import com.example.be.model.SetupExecutionLog;
+import com.example.be.repository.SetupExecutionLogRepository;
+import com.example.be.service.BulkLabProvisioningService;
+import com.example.be.service.ChangeTracker;
 import com.example.be.service.LabTemplateService;
+import com.example.be.service.TemplateImportService;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,12 +41,35 @@ import java.util.stream.Collectors;
 public class LabTemplateController {
 
     private final LabTemplateService labTemplateService;
+    private final BulkLabProvisioningService bulkLabProvisioningService;
+    private final ChangeTracker changeTracker;
+    private final TemplateImportService templateImportService;
 
     @GetMapping
-    public ResponseEntity<List<LabTemplateResponse>> getAllTemplates() {
+    public ResponseEntity<List<LabTemplateResponse>> getAllTemplates(WebRequest request) {
+        // Answered from the in-memory change counter, before touching the database
+        String etag = changeTracker.etag(ChangeTracker.TEMPLATES);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
         log.info("Fetching all active lab templates");
         List<LabTemplateResponse> templates = labTemplateService.getAllActiveTemplates();
-        return ResponseEntity.ok(templates);
+        return okWithETag(etag, templates);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<TemplateSearchResponse> searchTemplates(@RequestParam(required = false) String q,
+                                                                  @RequestParam(required = false) String labType,
+                                                                  @RequestParam(required = false) String difficulty,
+                                                                  @RequestParam(defaultValue = "0") int page,
+                                                                  @RequestParam(defaultValue = "20") int size) {
+        try {
+            log.info("Searching templates: q='{}', labType={}, difficulty={}, page={}", q, labType, difficulty, page);
+            return ResponseEntity.ok(labTemplateService.searchTemplates(q, labType, difficulty, page, size));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid template search: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/type/{labType}")
@@ -53,11 +92,15 @@ public class LabTemplateController {
     }
 
     @GetMapping("/{templateId}/steps")
-    public ResponseEntity<List<SetupStepResponse>> getTemplateSteps(@PathVariable String templateId) {
+    public ResponseEntity<List<SetupStepResponse>> getTemplateSteps(@PathVariable String templateId, WebRequest request) {
+        String etag = changeTracker.etag(ChangeTracker.TEMPLATES);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
         try {
             log.info("Fetching setup steps for template: {}", templateId);
             List<SetupStepResponse> steps = labTemplateService.getTemplateSteps(templateId);
-            return ResponseEntity.ok(steps);
+            return okWithETag(etag, steps);
         } catch (IllegalArgumentException e) {
             log.error("Template not found: {}", templateId);
             return ResponseEntity.notFound().build();
@@ -80,6 +123,56 @@ public class LabTemplateController {
         }
     }
 
+    @PostMapping("/bulk-create-labs")
+    public ResponseEntity<BulkProvisionResponse> bulkCreateLabs(@RequestBody BulkCreateLabsRequest request) {
+        try {
+            log.info("Bulk creating labs from template {} for {} users", request.getTemplateId(),
+                    request.getUserIds() == null ? 0 : request.getUserIds().size());
+            BulkProvisionResponse response = bulkLabProvisioningService.provision(request);
+            return ResponseEntity.accepted().body(response);
+        } catch (BulkLabProvisioningService.BulkProvisioningBusyException e) {
+            log.warn("Rejecting bulk create request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .build();
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid bulk create request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Failed to bulk create labs: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE,
+            "application/yaml", "application/x-yaml", "text/yaml"})
+    public ResponseEntity<List<TemplateImportResponse>> importTemplates(
+            @RequestBody byte[] body,
+            @RequestHeader(value = "Content-Type", defaultValue = MediaType.APPLICATION_JSON_VALUE) String contentType) {
+        try {
+            boolean yaml = contentType.toLowerCase().contains("yaml");
+            List<TemplateImportResponse> results = templateImportService.importBundle(templateImportService.parse(body, yaml));
+            log.info("Imported template bundle with {} templates", results.size());
+            return ResponseEntity.ok(results);
+        } catch (TemplateImportService.TemplateInUseException e) {
+            log.warn("Rejecting template bundle: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid template bundle: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/bulk/{batchId}")
+    public ResponseEntity<BulkProvisionResponse> getBulkProgress(@PathVariable String batchId) {
+        try {
+            return ResponseEntity.ok(bulkLabProvisioningService.getProgress(batchId));
+        } catch (IllegalArgumentException e) {
+            log.error("Bulk provisioning batch not found: {}", batchId);
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("/labs/{labId}/setup-logs")
     public ResponseEntity<List<SetupExecutionLogResponse>> getLabSetupLogs(@PathVariable String labId) {
         try {
@@ -95,9 +188,44 @@ public class LabTemplateController {
         }
     }
 
+    /**
+     * Step progress without command, output or error text
+     */
+    @GetMapping("/labs/{labId}/setup-logs/summary")
+    public ResponseEntity<List<SetupLogSummaryResponse>> getLabSetupLogSummaries(@PathVariable String labId) {
+        try {
+            List<SetupLogSummaryResponse> response = labTemplateService.getLabSetupLogSummaries(labId)
+                    .stream()
+                    .map(this::convertToLogSummaryResponse)
+                    .collect(Collectors.toList());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.error("Failed to fetch setup log summary for lab {}: {}", labId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Full output or error message of one step as UTF-8 text. Returned as a Resource so Spring
+     * answers Range requests with 206, letting the UI page through large outputs.
+     */
+    @GetMapping("/labs/{labId}/setup-logs/{logId}/{stream:output|error}")
+    public ResponseEntity<Resource> getSetupLogText(@PathVariable String labId, @PathVariable String logId,
+                                                    @PathVariable String stream) {
+        try {
+            String text = labTemplateService.getSetupLogText(labId, logId, "error".equals(stream));
+            return ResponseEntity.ok()
+                    .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .body(new ByteArrayResource(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (IllegalArgumentException e) {
+            log.error("Setup log {} of lab {} not found: {}", logId, labId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     private LabResponse convertToLabResponse(Lab lab) {
         return LabResponse.builder()
-                .id(lab.getId())
+                .id(lab.getId().toString())
                 .userId(lab.getUserId())
                 .labType(lab.getLabType())
                 .status(lab.getStatus().toString())
@@ -110,7 +238,7 @@ public class LabTemplateController {
 
     private SetupExecutionLogResponse convertToLogResponse(SetupExecutionLog log) {
         return SetupExecutionLogResponse.builder()
-                .id(log.getId())
+                .id(log.getId().toString())
                 .stepOrder(log.getStepOrder())
                 .stepTitle(log.getStepTitle())
                 .command(log.getCommand())
@@ -124,4 +252,20 @@ public class LabTemplateController {
                 .completedAt(log.getCompletedAt())
                 .build();
     }
-}
\ No newline at end of file
+
+    private SetupLogSummaryResponse convertToLogSummaryResponse(SetupExecutionLogRepository.Summary summary) {
+        return SetupLogSummaryResponse.builder()
+                .id(summary.getId().toString())
+                .stepOrder(summary.getStepOrder())
+                .stepTitle(summary.getStepTitle())
+                .status(summary.getStatus().toString())
+                .exitCode(summary.getExitCode())
+                .executionTimeMs(summary.getExecutionTimeMs())
+                .attemptNumber(summary.getAttemptNumber())
+                .build();
+    }
+
+    private static <T> ResponseEntity<T> okWithETag(String etag, T body) {
+        return etag == null ? ResponseEntity.ok(body) : ResponseEntity.ok().eTag(etag).body(body);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.be.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkCreateLabsRequest {
+    private String templateId;
+    private List<String> userIds;
+}
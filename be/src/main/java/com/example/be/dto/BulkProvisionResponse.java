@@ -0,0 +1,23 @@
+package com.example.be.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BulkProvisionResponse {
+    private String batchId;
+    private String templateId;
+    private int totalLabs;
+    private int podsCreated;
+    private int podsFailed;
+    private long settingUp;
+    private long ready;
+    private long failed;
+    private boolean completed;
+    private LocalDateTime startedAt;
+    private List<String> labIds;
+}
@@ -11,4 +11,9 @@ public class CommandResultResponse {
     private String error;
     private int exitCode;
     private boolean success;
+    // Killed at its timeout; exitCode is -1
+    private boolean timedOut;
+    private String execId;
+    // Answered from the per-lab result cache without running the command
+    private boolean cached;
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.example.be.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ExecBenchmarkResponse {
+    private String labId;
+    private String command;
+    private int iterations;
+    private List<TransportResult> results;
+
+    @Data
+    @Builder
+    public static class TransportResult {
+        private String transport;
+        private int successes;
+        private int failures;
+        private double meanMs;
+        private double p50Ms;
+        private double p95Ms;
+        private double p99Ms;
+        private double maxMs;
+    }
+}
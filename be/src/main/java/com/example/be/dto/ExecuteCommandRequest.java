@@ -6,4 +6,6 @@ import lombok.Data;
 public class ExecuteCommandRequest {
     private String labId;
     private String command;
+    // Optional, lets the client cancel the command while it runs
+    private String execId;
 }
\ No newline at end of file
@@ -20,4 +20,5 @@ public class LabTemplateResponse {
     private LocalDateTime createdAt;
     private String createdBy;
     private Boolean isActive;
+    private Boolean packageCacheEnabled;
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.example.be.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SetupLogSummaryResponse {
+    private String id;
+    private Integer stepOrder;
+    private String stepTitle;
+    private String status;
+    private Integer exitCode;
+    private Long executionTimeMs;
+    private Integer attemptNumber;
+}
@@ -0,0 +1,50 @@
+package com.example.be.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * A template bundle file (JSON or YAML): one or more templates, each with its ordered steps.
+ * Step order is the position in the list.
+ */
+@Data
+public class TemplateBundleRequest {
+    private List<TemplateDefinition> templates;
+
+    @Data
+    public static class TemplateDefinition {
+        private String id;
+        private String name;
+        private String description;
+        private String labType;
+        private String baseImage;
+        private Integer durationMinutes;
+        private String difficulty;
+        private String successCriteria;
+        private Boolean active;
+        private Boolean packageCacheEnabled;
+        private String cpuRequest;
+        private String cpuLimit;
+        private String memoryRequest;
+        private String memoryLimit;
+        private String nodeSelector;
+        private Integer topologySpreadMaxSkew;
+        private String topologySpreadKey;
+        private List<StepDefinition> steps;
+    }
+
+    @Data
+    public static class StepDefinition {
+        // Optional; matches the step across imports when its command changes
+        private String key;
+        private String title;
+        private String description;
+        private String setupCommand;
+        private Integer expectedExitCode;
+        private Integer timeoutSeconds;
+        private Integer retryCount;
+        private Boolean continueOnFailure;
+        private String workingDirectory;
+    }
+}
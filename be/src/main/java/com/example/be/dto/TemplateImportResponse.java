@@ -0,0 +1,14 @@
+package com.example.be.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TemplateImportResponse {
+    private String templateId;
+    // CREATED, UPDATED or UNCHANGED
+    private String status;
+    private int steps;
+    private String contentHash;
+}
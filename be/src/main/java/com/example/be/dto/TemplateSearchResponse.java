@@ -0,0 +1,15 @@
+package com.example.be.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TemplateSearchResponse {
+    private List<LabTemplateResponse> templates;
+    private int page;
+    private int size;
+    private long total;
+}
@@ -0,0 +1,41 @@
+package com.example.be.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of one bulk provisioning request, readable from every replica
+ */
+@Entity
+@Table(name = "bulk_batches", indexes = @Index(name = "idx_bulk_batches_started_at", columnList = "started_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkBatch {
+    
+    @Id
+    @Column(length = 36)
+    private String id;
+    
+    @Column(name = "template_id", nullable = false)
+    private String templateId;
+    
+    // Comma separated lab ids in request order
+    @Column(name = "lab_ids", nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String labIds;
+    
+    @Column(name = "pods_created", nullable = false)
+    private int podsCreated;
+    
+    @Column(name = "pods_failed", nullable = false)
+    private int podsFailed;
+    
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+}
@@ -0,0 +1,34 @@
+package com.example.be.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Version of a slice of API-visible state ("templates", "labs:user:{id}"), bumped on every change.
+ * Response ETags are derived from it.
+ */
+@Entity
+@Table(name = "change_counters", indexes = {
+        @Index(name = "idx_change_counters_updated", columnList = "updated_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeCounter {
+    
+    @Id
+    @Column(length = 191)
+    private String scope;
+    
+    @Column(nullable = false)
+    private Long version;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
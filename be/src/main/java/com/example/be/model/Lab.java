@@ -5,12 +5,22 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import com.example.be.service.ChangeTrackingListener;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Entity
-@Table(name = "lab_instances")
+@Table(name = "lab_instances", indexes = {
+        // findExpiredLabs and retention both filter on status and expiry
+        @Index(name = "idx_lab_status_expires", columnList = "status, expires_at"),
+        @Index(name = "idx_lab_user_created", columnList = "user_id, created_at")
+})
+@EntityListeners(ChangeTrackingListener.class)
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,7 +28,9 @@ import java.util.List;
 public class Lab {
     
     @Id
-    private String id;
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    private UUID id;
     
     @Column(name = "user_id", nullable = false)
     private String userId;
@@ -54,9 +66,30 @@ public class Lab {
     @Column(name = "pod_name")
     private String podName;
     
+    // Placement target; null for labs created before multi-cluster placement
+    @Column(name = "cluster_name")
+    private String clusterName;
+    
+    @Column(name = "namespace")
+    private String namespace;
+    
     @Column(name = "duration")
     private Integer duration;
     
+    // Moved by every command that may change the lab; cached command results carry the value they
+    // were read at, see CommandResultCache. Only LabRepository.bumpExecGeneration writes it, so a
+    // stale entity save can never move it back.
+    @Column(name = "exec_generation", nullable = false, updatable = false,
+            columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long execGeneration;
+    
+    // Bumped by every write, including the conditional updates in LabRepository, so a stale
+    // entity can never be saved over a newer state. The default lets ddl-auto add the column to
+    // existing labs.
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+    
     @OneToMany(mappedBy = "labInstance", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<SetupExecutionLog> setupLogs;
     
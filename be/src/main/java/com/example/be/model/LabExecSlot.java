@@ -0,0 +1,38 @@
+package com.example.be.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One running exec in a lab pod, shared by all replicas. The id is "podName#slot", so a pod can
+ * never have more rows than slots.
+ */
+@Entity
+@Table(name = "lab_exec_slots", indexes = @Index(name = "idx_lab_exec_slots_pod", columnList = "pod_name"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LabExecSlot {
+    
+    @Id
+    private String id;
+    
+    @Column(name = "pod_name", nullable = false)
+    private String podName;
+    
+    @Column(nullable = false)
+    private String owner;
+    
+    @Column(nullable = false, length = 16)
+    private String priority;
+    
+    // Exec timeout plus a margin; frees the slot of a replica that died mid-exec
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
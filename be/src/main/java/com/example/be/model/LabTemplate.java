@@ -6,11 +6,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import com.example.be.service.ChangeTrackingListener;
+
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
 @Table(name = "lab_templates")
+@EntityListeners(ChangeTrackingListener.class)
 @Data
 @Builder
 @NoArgsConstructor
@@ -53,6 +56,44 @@ public class LabTemplate {
     @Column(name = "is_active")
     private Boolean isActive;
     
+    @Column(name = "package_cache_enabled")
+    private Boolean packageCacheEnabled;
+    
+    // Resource profile as Kubernetes quantities (e.g. "250m", "768Mi"), unset falls back to lab.pod.default-*
+    @Column(name = "cpu_request")
+    private String cpuRequest;
+    
+    @Column(name = "cpu_limit")
+    private String cpuLimit;
+    
+    @Column(name = "memory_request")
+    private String memoryRequest;
+    
+    @Column(name = "memory_limit")
+    private String memoryLimit;
+    
+    // Comma separated key=value pairs, e.g. "lab-pool=general,kubernetes.io/arch=amd64"
+    @Column(name = "node_selector")
+    private String nodeSelector;
+    
+    // Spread the template's labs across topology domains, unset or 0 disables it
+    @Column(name = "topology_spread_max_skew")
+    private Integer topologySpreadMaxSkew;
+    
+    @Column(name = "topology_spread_key")
+    private String topologySpreadKey;
+    
+    // SHA-256 of the imported bundle definition, unchanged re-imports are skipped
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    // Bumped on every update, keys the compiled pod prototype and the search index. Never null for
+    // stored rows: the default fills existing templates when ddl-auto adds the column, and a null
+    // would make Spring Data treat the row as new.
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+    
     @OneToMany(mappedBy = "template", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<SetupStep> setupSteps;
     
@@ -64,6 +105,9 @@ public class LabTemplate {
         if (isActive == null) {
             isActive = true;
         }
+        if (packageCacheEnabled == null) {
+            packageCacheEnabled = false;
+        }
     }
     
     public enum Difficulty {
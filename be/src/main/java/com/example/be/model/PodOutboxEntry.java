@@ -0,0 +1,100 @@
+package com.example.be.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A pod create or delete recorded in the same transaction as the lab change that needs it,
+ * carried out afterwards by the outbox dispatcher.
+ */
+@Entity
+@Table(name = "pod_outbox", indexes = {
+        @Index(name = "idx_pod_outbox_claim", columnList = "status, available_at"),
+        @Index(name = "idx_pod_outbox_lab", columnList = "lab_id, status")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PodOutboxEntry {
+
+    @Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    private UUID id;
+
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "lab_id", nullable = false, length = 16)
+    private UUID labId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Operation operation;
+
+    @Column(name = "cluster_name", nullable = false)
+    private String clusterName;
+
+    @Column(nullable = false)
+    private String namespace;
+
+    @Column(name = "pod_name", nullable = false)
+    private String podName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EntryStatus status;
+
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    // Retries are not claimed before this time
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(name = "attempts")
+    private Integer attempts;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (availableAt == null) {
+            availableAt = createdAt;
+        }
+        if (status == null) {
+            status = EntryStatus.PENDING;
+        }
+        if (attempts == null) {
+            attempts = 0;
+        }
+    }
+
+    public enum Operation {
+        CREATE_POD, DELETE_POD
+    }
+
+    public enum EntryStatus {
+        PENDING, RUNNING, DONE, FAILED
+    }
+}
@@ -5,8 +5,13 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import com.example.be.util.CompressedText;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "setup_execution_logs")
@@ -17,7 +22,9 @@ import java.time.LocalDateTime;
 public class SetupExecutionLog {
     
     @Id
-    private String id;
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    private UUID id;
     
     @Column(name = "step_order", nullable = false)
     private Integer stepOrder;
@@ -25,17 +32,18 @@ public class SetupExecutionLog {
     @Column(name = "step_title")
     private String stepTitle;
     
-    @Column(name = "command", columnDefinition = "TEXT")
-    private String command;
+    // command, output and error_message are stored compressed, see the accessors below
+    @Column(name = "command_z", columnDefinition = "BLOB")
+    private byte[] commandCompressed;
     
     @Enumerated(EnumType.STRING)
     private ExecutionStatus status;
     
-    @Column(name = "output", columnDefinition = "TEXT")
-    private String output;
+    @Column(name = "output_z", columnDefinition = "MEDIUMBLOB")
+    private byte[] outputCompressed;
     
-    @Column(name = "error_message", columnDefinition = "TEXT")
-    private String errorMessage;
+    @Column(name = "error_message_z", columnDefinition = "MEDIUMBLOB")
+    private byte[] errorMessageCompressed;
     
     @Column(name = "exit_code")
     private Integer exitCode;
@@ -60,6 +68,34 @@ public class SetupExecutionLog {
     @JoinColumn(name = "setup_step_id", nullable = false)
     private SetupStep setupStep;
     
+    /**
+     * The text accessors decompress on every call, so loading a log for its status or timing
+     * never pays for inflating its output.
+     */
+    public String getCommand() {
+        return CompressedText.decompress(commandCompressed);
+    }
+    
+    public void setCommand(String command) {
+        this.commandCompressed = CompressedText.compress(command);
+    }
+    
+    public String getOutput() {
+        return CompressedText.decompress(outputCompressed);
+    }
+    
+    public void setOutput(String output) {
+        this.outputCompressed = CompressedText.compress(output);
+    }
+    
+    public String getErrorMessage() {
+        return CompressedText.decompress(errorMessageCompressed);
+    }
+    
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessageCompressed = CompressedText.compress(errorMessage);
+    }
+    
     @PrePersist
     protected void onCreate() {
         if (startedAt == null) {
@@ -0,0 +1,89 @@
+package com.example.be.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "setup_jobs", indexes = {
+        @Index(name = "idx_setup_jobs_claim", columnList = "status, available_at"),
+        @Index(name = "idx_setup_jobs_lab", columnList = "lab_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SetupJob {
+    
+    @Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    private UUID id;
+    
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(name = "lab_id", nullable = false, length = 16)
+    private UUID labId;
+    
+    @Column(name = "template_id", nullable = false)
+    private String templateId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private JobStatus status;
+    
+    // Step order of the last step that finished successfully, 0 when none has
+    @Column(name = "last_completed_step")
+    private Integer lastCompletedStep;
+    
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+    
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    
+    // Jobs are not claimed before this time, used to stage bulk setups
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+    
+    @Column(name = "attempts")
+    private Integer attempts;
+    
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (availableAt == null) {
+            availableAt = createdAt;
+        }
+        if (status == null) {
+            status = JobStatus.PENDING;
+        }
+        if (lastCompletedStep == null) {
+            lastCompletedStep = 0;
+        }
+        if (attempts == null) {
+            attempts = 0;
+        }
+    }
+    
+    public enum JobStatus {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+}
@@ -5,9 +5,16 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import com.example.be.service.ChangeTrackingListener;
+
+import java.util.UUID;
 
 @Entity
 @Table(name = "setup_steps")
+@EntityListeners(ChangeTrackingListener.class)
 @Data
 @Builder
 @NoArgsConstructor
@@ -15,11 +22,17 @@ import lombok.NoArgsConstructor;
 public class SetupStep {
     
     @Id
-    private String id;
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    private UUID id;
     
     @Column(name = "step_order", nullable = false)
     private Integer stepOrder;
     
+    // Key given in the imported bundle, if any; see TemplateImportService
+    @Column(name = "step_key", length = 63)
+    private String stepKey;
+    
     @Column(nullable = false)
     private String title;
     
@@ -44,6 +57,10 @@ public class SetupStep {
     @Column(name = "working_directory")
     private String workingDirectory = "/";
     
+    // Replaced or dropped by a later import; kept so the execution logs that reference it survive
+    @Column(name = "retired", nullable = false, columnDefinition = "BIT(1) NOT NULL DEFAULT 0")
+    private boolean retired;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "template_id", nullable = false)
     private LabTemplate template;
@@ -0,0 +1,31 @@
+package com.example.be.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.be.model.BulkBatch;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface BulkBatchRepository extends JpaRepository<BulkBatch, String> {
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE BulkBatch b SET b.podsCreated = b.podsCreated + 1 WHERE b.id = :id")
+    int incrementPodsCreated(@Param("id") String id);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE BulkBatch b SET b.podsFailed = b.podsFailed + :count WHERE b.id = :id")
+    int incrementPodsFailed(@Param("id") String id, @Param("count") int count);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BulkBatch b WHERE b.startedAt < :cutoff")
+    int deleteStartedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,19 @@
+package com.example.be.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.be.model.ChangeCounter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * updated_at is always set from the database clock, so it can be used as a poll cursor
+ * by every replica.
+ */
+@Repository
+public interface ChangeCounterRepository extends JpaRepository<ChangeCounter, String> {
+    
+    List<ChangeCounter> findByUpdatedAtGreaterThanEqual(LocalDateTime since);
+}
@@ -0,0 +1,44 @@
+package com.example.be.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.be.model.LabExecSlot;
+
+/**
+ * Each statement commits on its own; expiry is compared against the database clock.
+ */
+@Repository
+public interface LabExecSlotRepository extends JpaRepository<LabExecSlot, String> {
+    
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM lab_exec_slots WHERE pod_name = :podName AND expires_at < CURRENT_TIMESTAMP(6)",
+           nativeQuery = true)
+    int deleteExpired(@Param("podName") String podName);
+    
+    /**
+     * @return 1 when the slot was free and is now held by the owner, 0 when it is taken
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO lab_exec_slots (id, pod_name, owner, priority, expires_at) " +
+                   "VALUES (:id, :podName, :owner, :priority, TIMESTAMPADD(MICROSECOND, :leaseMillis * 1000, CURRENT_TIMESTAMP(6)))",
+           nativeQuery = true)
+    int tryClaim(@Param("id") String id, @Param("podName") String podName, @Param("owner") String owner,
+                 @Param("priority") String priority, @Param("leaseMillis") long leaseMillis);
+    
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM lab_exec_slots WHERE id = :id AND owner = :owner", nativeQuery = true)
+    int release(@Param("id") String id, @Param("owner") String owner);
+    
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM lab_exec_slots WHERE expires_at < CURRENT_TIMESTAMP(6)", nativeQuery = true)
+    int purgeExpired();
+}
@@ -1,16 +1,23 @@
 package com.example.be.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.be.model.Lab;
 
 @Repository
-public interface LabRepository extends JpaRepository<Lab, String> {
+public interface LabRepository extends JpaRepository<Lab, UUID> {
     
     List<Lab> findByUserIdOrderByCreatedAtDesc(String userId);
     
@@ -20,6 +27,68 @@ public interface LabRepository extends JpaRepository<Lab, String> {
     
     Optional<Lab> findByPodName(String podName);
     
+    List<Lab> findByStatusIn(Collection<Lab.LabStatus> statuses);
+    
     @Query("SELECT l FROM Lab l WHERE l.status = 'RUNNING' AND l.expiresAt < CURRENT_TIMESTAMP")
     List<Lab> findExpiredLabs();
+    
+    /**
+     * Labs per placement target, for least-loaded placement
+     */
+    @Query("SELECT l.clusterName AS clusterName, l.namespace AS namespace, COUNT(l) AS labs " +
+           "FROM Lab l WHERE l.status IN :statuses GROUP BY l.clusterName, l.namespace")
+    List<PlacementLoad> countByPlacement(@Param("statuses") Collection<Lab.LabStatus> statuses);
+    
+    @Query("SELECT l FROM Lab l WHERE l.status IN :statuses AND l.expiresAt < :cutoff ORDER BY l.expiresAt")
+    List<Lab> findRetentionCandidates(@Param("statuses") Collection<Lab.LabStatus> statuses,
+                                      @Param("cutoff") LocalDateTime cutoff, Pageable page);
+
+    /*
+     * State transitions. Each one only applies while the lab is still in an expected state and
+     * actually changes, and reports whether it did, so a concurrent EXPIRED is never overwritten
+     * and a repeated status poll writes nothing. They bypass the entity listener and the persistence
+     * context; LabStateTransitions reports the change and refreshes the caller's entity.
+     */
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Lab l SET l.status = :status, l.version = l.version + 1 " +
+           "WHERE l.id = :id AND l.status IN :expected AND l.status <> :status")
+    int transitionStatus(@Param("id") UUID id, @Param("expected") Collection<Lab.LabStatus> expected,
+                         @Param("status") Lab.LabStatus status);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Lab l SET l.status = :status, l.setupStatus = :setupStatus, l.version = l.version + 1 " +
+           "WHERE l.id = :id AND l.status IN :expected " +
+           "AND (l.status <> :status OR l.setupStatus IS NULL OR l.setupStatus <> :setupStatus)")
+    int transitionStatusAndSetup(@Param("id") UUID id, @Param("expected") Collection<Lab.LabStatus> expected,
+                                 @Param("status") Lab.LabStatus status,
+                                 @Param("setupStatus") Lab.SetupStatus setupStatus);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Lab l SET l.setupStatus = 'SETTING_UP', l.setupStartedAt = :startedAt, l.version = l.version + 1 " +
+           "WHERE l.id = :id AND l.status = 'CREATING' AND l.setupStatus = 'INITIALIZING'")
+    int startSetup(@Param("id") UUID id, @Param("startedAt") LocalDateTime startedAt);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Lab l SET l.status = :status, l.setupStatus = :setupStatus, l.setupCompletedAt = :completedAt, " +
+           "l.version = l.version + 1 " +
+           "WHERE l.id = :id AND l.setupStatus = 'SETTING_UP' AND l.status IN :expected")
+    int finishSetup(@Param("id") UUID id, @Param("expected") Collection<Lab.LabStatus> expected,
+                    @Param("status") Lab.LabStatus status, @Param("setupStatus") Lab.SetupStatus setupStatus,
+                    @Param("completedAt") LocalDateTime completedAt);
+
+    /**
+     * Invalidates cached command results of the lab on every replica, see CommandResultCache.
+     * Leaves the version alone: the column is never written by entity saves.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Lab l SET l.execGeneration = l.execGeneration + 1 WHERE l.id = :id")
+    int bumpExecGeneration(@Param("id") UUID id);
+
+    interface PlacementLoad {
+        String getClusterName();
+        String getNamespace();
+        long getLabs();
+    }
 }
@@ -4,9 +4,11 @@ import com.example.be.model.SetupStep;
 import com.example.be.model.Lab;
 import com.example.be.model.SetupExecutionLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -20,10 +22,17 @@ public interface LabTemplateRepository extends JpaRepository<LabTemplate, String
     
     List<LabTemplate> findByDifficultyAndIsActiveTrue(LabTemplate.Difficulty difficulty);
     
-    @Query("SELECT t FROM LabTemplate t WHERE t.isActive = true AND " +
-           "(LOWER(t.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "LOWER(t.description) LIKE LOWER(CONCAT('%', :keyword, '%')))")
-    List<LabTemplate> searchByKeyword(@Param("keyword") String keyword);
+    /**
+     * [id, version] of every template, lets the search index re-read only what changed
+     */
+    @Query("SELECT t.id, t.version FROM LabTemplate t")
+    List<Object[]> findAllIdsAndVersions();
+    
+    // Bulk update on purpose: the estimate is not part of the template version
+    @Modifying
+    @Transactional
+    @Query("UPDATE LabTemplate t SET t.totalSetupTime = :seconds WHERE t.id = :id")
+    int updateTotalSetupTime(@Param("id") String id, @Param("seconds") int seconds);
 }
 
 
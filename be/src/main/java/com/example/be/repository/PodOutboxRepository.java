@@ -0,0 +1,79 @@
+package com.example.be.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.be.model.PodOutboxEntry;
+
+/**
+ * Leases are computed and compared against the database clock, like setup job leases. Updates by
+ * the lease holder also match the attempt number, which tells a claim apart from a later one of
+ * the same replica after the lease ran out.
+ */
+@Repository
+public interface PodOutboxRepository extends JpaRepository<PodOutboxEntry, UUID> {
+
+    /**
+     * Locks claimable entries: pending ones that are due and running ones whose lease has expired.
+     * An entry waits while an older entry of the same lab is unfinished, so a delete never
+     * overtakes the create of the same pod.
+     */
+    @Query(value = "SELECT * FROM pod_outbox o " +
+                   "WHERE ((o.status = 'PENDING' AND o.available_at <= CURRENT_TIMESTAMP(6)) " +
+                   "OR (o.status = 'RUNNING' AND o.lease_expires_at < CURRENT_TIMESTAMP(6))) " +
+                   "AND NOT EXISTS (SELECT 1 FROM pod_outbox e WHERE e.lab_id = o.lab_id AND e.id < o.id " +
+                   "AND e.status IN ('PENDING', 'RUNNING')) " +
+                   "ORDER BY o.id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<PodOutboxEntry> lockClaimable(@Param("limit") int limit);
+
+    /**
+     * Takes over entries locked by {@link #lockClaimable}. Clears the persistence context, so the
+     * locked entities have to be read again.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE pod_outbox SET status = 'RUNNING', lease_owner = :owner, attempts = attempts + 1, " +
+                   "lease_expires_at = TIMESTAMPADD(MICROSECOND, :leaseMillis * 1000, CURRENT_TIMESTAMP(6)) " +
+                   "WHERE id IN :ids",
+           nativeQuery = true)
+    int claim(@Param("ids") Collection<byte[]> ids, @Param("owner") String owner, @Param("leaseMillis") long leaseMillis);
+
+    @Modifying
+    @Query("UPDATE PodOutboxEntry e SET e.status = :status, e.leaseOwner = null, e.leaseExpiresAt = null, " +
+           "e.lastError = :error, e.completedAt = :completedAt " +
+           "WHERE e.id = :id AND e.leaseOwner = :owner AND e.attempts = :attempts")
+    int finish(@Param("id") UUID id, @Param("owner") String owner, @Param("attempts") int attempts,
+               @Param("status") PodOutboxEntry.EntryStatus status,
+               @Param("error") String error, @Param("completedAt") LocalDateTime completedAt);
+
+    @Modifying
+    @Query(value = "UPDATE pod_outbox SET status = 'PENDING', lease_owner = NULL, lease_expires_at = NULL, " +
+                   "last_error = :error, available_at = TIMESTAMPADD(MICROSECOND, :delayMillis * 1000, CURRENT_TIMESTAMP(6)) " +
+                   "WHERE id = :id AND lease_owner = :owner AND attempts = :attempts",
+           nativeQuery = true)
+    int reschedule(@Param("id") byte[] id, @Param("owner") String owner, @Param("attempts") int attempts,
+                   @Param("error") String error, @Param("delayMillis") long delayMillis);
+
+    /**
+     * Extends the lease of an entry still held by this claim
+     */
+    @Modifying
+    @Query(value = "UPDATE pod_outbox " +
+                   "SET lease_expires_at = TIMESTAMPADD(MICROSECOND, :leaseMillis * 1000, CURRENT_TIMESTAMP(6)) " +
+                   "WHERE id = :id AND lease_owner = :owner AND attempts = :attempts AND status = 'RUNNING'",
+           nativeQuery = true)
+    int renewLease(@Param("id") byte[] id, @Param("owner") String owner, @Param("attempts") int attempts,
+                   @Param("leaseMillis") long leaseMillis);
+
+    @Modifying
+    @Query("DELETE FROM PodOutboxEntry e WHERE e.status = :status AND e.completedAt < :cutoff")
+    int purge(@Param("status") PodOutboxEntry.EntryStatus status, @Param("cutoff") LocalDateTime cutoff);
+}
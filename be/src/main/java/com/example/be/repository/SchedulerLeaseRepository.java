@@ -0,0 +1,35 @@
+package com.example.be.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.be.model.SchedulerLease;
+
+/**
+ * Lease expiry is always compared against the database clock so replicas
+ * with skewed clocks still agree on who holds a lease.
+ */
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, String> {
+    
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO scheduler_leases (name, owner, expires_at) " +
+                   "VALUES (:name, '', CURRENT_TIMESTAMP(6))",
+           nativeQuery = true)
+    int createIfMissing(@Param("name") String name);
+    
+    @Modifying
+    @Query(value = "UPDATE scheduler_leases " +
+                   "SET owner = :owner, expires_at = TIMESTAMPADD(MICROSECOND, :leaseMillis * 1000, CURRENT_TIMESTAMP(6)) " +
+                   "WHERE name = :name AND (owner = :owner OR expires_at < CURRENT_TIMESTAMP(6))",
+           nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("owner") String owner, @Param("leaseMillis") long leaseMillis);
+    
+    @Modifying
+    @Query(value = "UPDATE scheduler_leases SET expires_at = CURRENT_TIMESTAMP(6) WHERE name = :name AND owner = :owner",
+           nativeQuery = true)
+    int release(@Param("name") String name, @Param("owner") String owner);
+}
@@ -1,9 +1,13 @@
 package com.example.be.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,14 +15,58 @@ import org.springframework.stereotype.Repository;
 import com.example.be.model.SetupExecutionLog;
 
 @Repository
-public interface SetupExecutionLogRepository extends JpaRepository<SetupExecutionLog, String> {
+public interface SetupExecutionLogRepository extends JpaRepository<SetupExecutionLog, UUID> {
     
-    List<SetupExecutionLog> findByLabInstanceIdOrderByStepOrder(String labInstanceId);
+    List<SetupExecutionLog> findByLabInstanceIdOrderByStepOrder(UUID labInstanceId);
     
-    List<SetupExecutionLog> findByLabInstanceIdAndStatus(String labInstanceId, SetupExecutionLog.ExecutionStatus status);
+    /**
+     * Progress view of a lab's setup; selects no BLOB column
+     */
+    @Query("SELECT l.id AS id, l.stepOrder AS stepOrder, l.stepTitle AS stepTitle, l.status AS status, " +
+           "l.exitCode AS exitCode, l.executionTimeMs AS executionTimeMs, l.attemptNumber AS attemptNumber " +
+           "FROM SetupExecutionLog l WHERE l.labInstance.id = :labInstanceId ORDER BY l.stepOrder, l.attemptNumber")
+    List<Summary> findSummariesByLabInstanceId(@Param("labInstanceId") UUID labInstanceId);
     
-    Optional<SetupExecutionLog> findByLabInstanceIdAndStepOrder(String labInstanceId, Integer stepOrder);
+    @Query("SELECT l.outputCompressed FROM SetupExecutionLog l WHERE l.id = :id AND l.labInstance.id = :labInstanceId")
+    Optional<byte[]> findOutput(@Param("labInstanceId") UUID labInstanceId, @Param("id") UUID id);
+    
+    boolean existsByIdAndLabInstanceId(UUID id, UUID labInstanceId);
+    
+    boolean existsBySetupStepId(UUID setupStepId);
+    
+    @Query("SELECT l.errorMessageCompressed FROM SetupExecutionLog l WHERE l.id = :id AND l.labInstance.id = :labInstanceId")
+    Optional<byte[]> findErrorMessage(@Param("labInstanceId") UUID labInstanceId, @Param("id") UUID id);
+    
+    @Query("SELECT l FROM SetupExecutionLog l JOIN FETCH l.labInstance WHERE l.labInstance.id IN :labIds")
+    List<SetupExecutionLog> findWithLabByLabIds(@Param("labIds") Collection<UUID> labIds);
+    
+    @Modifying
+    @Query("DELETE FROM SetupExecutionLog l WHERE l.labInstance.id IN :labIds")
+    int deleteByLabIds(@Param("labIds") Collection<UUID> labIds);
+    
+    List<SetupExecutionLog> findByLabInstanceIdAndStatus(UUID labInstanceId, SetupExecutionLog.ExecutionStatus status);
+    
+    Optional<SetupExecutionLog> findByLabInstanceIdAndStepOrder(UUID labInstanceId, Integer stepOrder);
     
     @Query("SELECT COUNT(l) FROM SetupExecutionLog l WHERE l.labInstance.id = :labInstanceId AND l.status = 'SUCCESS'")
-    Long countSuccessfulStepsByLabInstanceId(@Param("labInstanceId") String labInstanceId);
+    Long countSuccessfulStepsByLabInstanceId(@Param("labInstanceId") UUID labInstanceId);
+    
+    /**
+     * Durations of step attempts that succeeded or timed out since the given time, as
+     * [stepId, templateId, executionTimeMs, status]; retired steps are left out
+     */
+    @Query("SELECT l.setupStep.id, l.setupStep.template.id, l.executionTimeMs, l.status FROM SetupExecutionLog l " +
+           "WHERE l.status IN ('SUCCESS', 'TIMEOUT') AND l.executionTimeMs IS NOT NULL AND l.startedAt > :since " +
+           "AND l.setupStep.retired = false")
+    List<Object[]> findStepTimings(@Param("since") LocalDateTime since);
+    
+    interface Summary {
+        UUID getId();
+        Integer getStepOrder();
+        String getStepTitle();
+        SetupExecutionLog.ExecutionStatus getStatus();
+        Integer getExitCode();
+        Long getExecutionTimeMs();
+        Integer getAttemptNumber();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.be.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.be.model.SetupJob;
+
+/**
+ * Leases are computed and compared against the database clock so replicas
+ * with skewed clocks still agree on who holds a job.
+ */
+@Repository
+public interface SetupJobRepository extends JpaRepository<SetupJob, UUID> {
+    
+    /**
+     * Locks claimable jobs: pending ones that are due and running ones whose lease has expired.
+     * SKIP LOCKED lets every replica claim concurrently without waiting on each other.
+     */
+    @Query(value = "SELECT * FROM setup_jobs " +
+                   "WHERE (status = 'PENDING' AND available_at <= CURRENT_TIMESTAMP(6)) " +
+                   "OR (status = 'RUNNING' AND lease_expires_at < CURRENT_TIMESTAMP(6)) " +
+                   "ORDER BY available_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<SetupJob> lockClaimable(@Param("limit") int limit);
+    
+    /**
+     * Takes over jobs locked by {@link #lockClaimable}. Clears the persistence context, so the
+     * locked entities have to be read again.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE setup_jobs SET status = 'RUNNING', lease_owner = :owner, attempts = attempts + 1, " +
+                   "lease_expires_at = TIMESTAMPADD(MICROSECOND, :leaseMillis * 1000, CURRENT_TIMESTAMP(6)) " +
+                   "WHERE id IN :ids",
+           nativeQuery = true)
+    int claim(@Param("ids") Collection<byte[]> ids, @Param("owner") String owner, @Param("leaseMillis") long leaseMillis);
+    
+    @Modifying
+    @Query(value = "UPDATE setup_jobs SET last_completed_step = :step, " +
+                   "lease_expires_at = TIMESTAMPADD(MICROSECOND, :leaseMillis * 1000, CURRENT_TIMESTAMP(6)) " +
+                   "WHERE id = :id AND lease_owner = :owner AND status = 'RUNNING'",
+           nativeQuery = true)
+    int checkpoint(@Param("id") byte[] id, @Param("owner") String owner,
+                   @Param("step") int step, @Param("leaseMillis") long leaseMillis);
+    
+    @Modifying
+    @Query(value = "UPDATE setup_jobs " +
+                   "SET lease_expires_at = TIMESTAMPADD(MICROSECOND, :leaseMillis * 1000, CURRENT_TIMESTAMP(6)) " +
+                   "WHERE id IN :ids AND lease_owner = :owner AND status = 'RUNNING'",
+           nativeQuery = true)
+    int renewLeases(@Param("ids") Collection<byte[]> ids, @Param("owner") String owner,
+                    @Param("leaseMillis") long leaseMillis);
+    
+    @Modifying
+    @Query(value = "UPDATE setup_jobs SET lease_expires_at = CURRENT_TIMESTAMP(6) " +
+                   "WHERE id IN :ids AND lease_owner = :owner AND status = 'RUNNING'",
+           nativeQuery = true)
+    int releaseLeases(@Param("ids") Collection<byte[]> ids, @Param("owner") String owner);
+    
+    @Modifying
+    @Query("UPDATE SetupJob j SET j.status = :status, j.leaseOwner = null, j.leaseExpiresAt = null, " +
+           "j.lastError = :error, j.completedAt = :completedAt " +
+           "WHERE j.id = :id AND j.leaseOwner = :owner")
+    int finish(@Param("id") UUID id, @Param("owner") String owner, @Param("status") SetupJob.JobStatus status,
+               @Param("error") String error, @Param("completedAt") LocalDateTime completedAt);
+    
+    long countByStatus(SetupJob.JobStatus status);
+    
+    boolean existsByTemplateIdAndStatusIn(String templateId, Collection<SetupJob.JobStatus> statuses);
+    
+    @Modifying
+    @Query("DELETE FROM SetupJob j WHERE j.labId IN :labIds")
+    int deleteByLabIds(@Param("labIds") Collection<UUID> labIds);
+}
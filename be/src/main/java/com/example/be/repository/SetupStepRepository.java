@@ -2,6 +2,7 @@ package com.example.be.repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -11,12 +12,18 @@ import org.springframework.stereotype.Repository;
 import com.example.be.model.SetupStep;
 
 @Repository
-public interface SetupStepRepository extends JpaRepository<SetupStep, String> {
+public interface SetupStepRepository extends JpaRepository<SetupStep, UUID> {
     
-    List<SetupStep> findByTemplateIdOrderByStepOrder(String templateId);
+    /**
+     * The template's current steps; retired ones are left out
+     */
+    @Query("SELECT s FROM SetupStep s WHERE s.template.id = :templateId AND s.retired = false ORDER BY s.stepOrder")
+    List<SetupStep> findByTemplateIdOrderByStepOrder(@Param("templateId") String templateId);
     
-    Optional<SetupStep> findByTemplateIdAndStepOrder(String templateId, Integer stepOrder);
+    @Query("SELECT s FROM SetupStep s WHERE s.template.id = :templateId AND s.stepOrder = :stepOrder AND s.retired = false")
+    Optional<SetupStep> findByTemplateIdAndStepOrder(@Param("templateId") String templateId,
+                                                     @Param("stepOrder") Integer stepOrder);
     
-    @Query("SELECT COUNT(s) FROM SetupStep s WHERE s.template.id = :templateId")
+    @Query("SELECT COUNT(s) FROM SetupStep s WHERE s.template.id = :templateId AND s.retired = false")
     Long countStepsByTemplateId(@Param("templateId") String templateId);
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+package com.example.be.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.kubernetes.client.openapi.models.V1Pod;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.be.dto.CommandResultResponse;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs commands through the lab agent listening inside the pod, talking to it directly
+ * over the pod network instead of going through the API server and kubelet.
+ * <p>
+ * Protocol: {@code POST http://<podIP>:<port>/v1/exec} with a JSON body
+ * {@code {"command", "workingDirectory", "timeoutSeconds"}} and the pod's own bearer token (see
+ * {@link LabAgentAccess}), answered with {@code {"exitCode", "stdout", "stderr", "timedOut"}}.
+ * The agent speaks h2c, so the single shared HTTP/2 client keeps one persistent, multiplexed
+ * connection per pod.
+ * <p>
+ * Only pods labelled {@code lab-agent=true} run the agent; any other pod is reported unavailable
+ * without a connection attempt. Pod IPs, and the pods found without the label, are cached per pod
+ * name and dropped when the pod is deleted or recreated and after any failed call, so a reused IP
+ * cannot route a command to another lab's pod for long; the per-pod token makes such a pod refuse
+ * it anyway.
+ */
+@Slf4j
+@Component
+public class AgentCommandExecutor implements CommandExecutor {
+
+    /**
+     * Thrown when the agent cannot be reached at all, so the command was never started
+     * and the caller can safely fall back to another transport.
+     */
+    public static class AgentUnavailableException extends IOException {
+        public AgentUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final KubernetesClusters clusters;
+    private final KubernetesApiGateway gateway;
+    private final LabAgentAccess agentAccess;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    // An empty IP marks a pod without the agent
+    private final Map<String, String> podIps = new ConcurrentHashMap<>();
+
+    @Value("${lab.exec.agent.port:7070}")
+    private int port;
+
+    public AgentCommandExecutor(KubernetesClusters clusters,
+                                KubernetesApiGateway gateway,
+                                LabAgentAccess agentAccess,
+                                ObjectMapper objectMapper,
+                                @Value("${lab.exec.agent.connect-timeout-ms:1000}") long connectTimeoutMs) {
+        this.clusters = clusters;
+        this.gateway = gateway;
+        this.agentAccess = agentAccess;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    @Override
+    public String name() {
+        return "agent";
+    }
+
+    @Override
+    public CommandResultResponse execute(KubernetesClusters.Target target, String podName, String command,
+                                         int timeoutSeconds, String workingDirectory) throws Exception {
+        String podIp = resolvePodIp(target, podName);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("command", command);
+        body.put("workingDirectory", workingDirectory == null ? "/" : workingDirectory);
+        body.put("timeoutSeconds", timeoutSeconds);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + podIp + ":" + port + "/v1/exec"))
+                .timeout(Duration.ofSeconds(timeoutSeconds + 5L))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + agentAccess.tokenFor(podName))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (ConnectException | HttpConnectTimeoutException e) {
+            evict(podName);
+            gateway.record(target.getCluster(), "agent.exec", "unavailable", start);
+            throw new AgentUnavailableException("Lab agent not reachable in pod " + podName, e);
+        } catch (IOException e) {
+            evict(podName);
+            throw e;
+        }
+        gateway.record(target.getCluster(), "agent.exec", String.valueOf(response.statusCode()), start);
+
+        if (response.statusCode() == 401 || response.statusCode() == 403) {
+            // Most likely the cached IP now belongs to another lab's pod
+            evict(podName);
+            throw new AgentUnavailableException("Lab agent at " + podIp + " rejected the token of pod " + podName, null);
+        }
+        if (response.statusCode() != 200) {
+            evict(podName);
+            throw new IOException("Lab agent returned HTTP " + response.statusCode() + " for pod " + podName);
+        }
+
+        JsonNode result = objectMapper.readTree(response.body());
+        int exitCode = result.path("exitCode").asInt(-1);
+        String error = result.path("stderr").asText("");
+        boolean timedOut = result.path("timedOut").asBoolean(false);
+        if (timedOut) {
+            error = "Command timed out after " + timeoutSeconds + " seconds";
+            exitCode = -1;
+        }
+
+        return CommandResultResponse.builder()
+                .command(command)
+                .output(result.path("stdout").asText(""))
+                .error(error)
+                .exitCode(exitCode)
+                .success(exitCode == 0)
+                .timedOut(timedOut)
+                .build();
+    }
+
+    /**
+     * Forgets the pod's IP; called when the pod is deleted or created again
+     */
+    public void evict(String podName) {
+        podIps.remove(podName);
+    }
+
+    private String resolvePodIp(KubernetesClusters.Target target, String podName) throws Exception {
+        String cached = podIps.get(podName);
+        if (cached != null) {
+            if (cached.isEmpty()) {
+                throw new AgentUnavailableException("Pod " + podName + " does not run the lab agent", null);
+            }
+            return cached;
+        }
+        // Pods of other clusters are only reachable with a routed pod network; otherwise the
+        // connect fails and the caller falls back to Kubernetes exec
+        V1Pod pod = gateway.read(target.getCluster(), "pod.get",
+                () -> clusters.cluster(target.getCluster()).getApi().readNamespacedPod(podName, target.getNamespace(), null));
+        Map<String, String> labels = pod.getMetadata() == null ? null : pod.getMetadata().getLabels();
+        if (labels == null || !"true".equals(labels.get(LabPodPrototypes.AGENT_LABEL))) {
+            podIps.put(podName, "");
+            throw new AgentUnavailableException("Pod " + podName + " does not run the lab agent", null);
+        }
+        String podIp = pod.getStatus() == null ? null : pod.getStatus().getPodIP();
+        if (podIp == null || !"Running".equals(pod.getStatus().getPhase())) {
+            throw new AgentUnavailableException("Pod " + podName + " has no IP or is not running", null);
+        }
+        podIps.put(podName, podIp);
+        return podIp;
+    }
+}
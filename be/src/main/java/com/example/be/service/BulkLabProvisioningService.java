@@ -0,0 +1,312 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.be.config.SchedulingConfig;
+import com.example.be.dto.BulkCreateLabsRequest;
+import com.example.be.dto.BulkProvisionResponse;
+import com.example.be.model.BulkBatch;
+import com.example.be.model.Lab;
+import com.example.be.model.LabTemplate;
+import com.example.be.repository.BulkBatchRepository;
+import com.example.be.repository.LabRepository;
+import com.example.be.repository.LabTemplateRepository;
+import com.example.be.util.TimeOrderedIds;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Provisions a whole classroom of labs from one template.
+ * Lab rows are inserted in JDBC batches, pods are created through the async
+ * Kubernetes API with bounded parallelism and setup is started in waves so that
+ * a large group does not hit the package mirrors all at once.
+ * <p>
+ * Batch progress is kept in the database, so any replica can report it, and removed after
+ * {@code batch-retention-hours}. Pods are created on a bounded executor; a batch that finds it
+ * full is rejected before any lab is inserted. Lab rows are only inserted, a slice at a time,
+ * right before their pods are created, so a batch waiting in the queue never leaves podless
+ * CREATING rows behind for the reconciler to stop. Pod completions are handled on the batch
+ * thread, not the HTTP client's callback thread.
+ */
+@Slf4j
+@Service
+public class BulkLabProvisioningService {
+
+    private static final String INSERT_LAB_SQL =
+            "INSERT INTO lab_instances (id, user_id, template_id, lab_type, status, setup_status, " +
+            "created_at, expires_at, access_url, duration, cluster_name, namespace, pod_name, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final LabTemplateRepository labTemplateRepository;
+    private final LabRepository labRepository;
+    private final LabTemplateService labTemplateService;
+    private final KubernetesService kubernetesService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChangeTracker changeTracker;
+    private final LabStateTransitions labStateTransitions;
+    private final LabPlacementService labPlacementService;
+    private final BulkBatchRepository bulkBatchRepository;
+    private final TaskExecutor executor;
+
+    @Value("${lab.bulk.max-users:300}")
+    private int maxUsers;
+
+    @Value("${lab.bulk.max-parallel-pod-creates:10}")
+    private int maxParallelPodCreates;
+
+    @Value("${lab.bulk.setup-wave-size:10}")
+    private int setupWaveSize;
+
+    @Value("${lab.bulk.setup-wave-interval-seconds:20}")
+    private int setupWaveIntervalSeconds;
+
+    @Value("${lab.bulk.batch-retention-hours:72}")
+    private long batchRetentionHours;
+
+    public BulkLabProvisioningService(LabTemplateRepository labTemplateRepository,
+                                      LabRepository labRepository,
+                                      LabTemplateService labTemplateService,
+                                      KubernetesService kubernetesService,
+                                      JdbcTemplate jdbcTemplate,
+                                      TransactionTemplate transactionTemplate,
+                                      ChangeTracker changeTracker,
+                                      LabStateTransitions labStateTransitions,
+                                      LabPlacementService labPlacementService,
+                                      BulkBatchRepository bulkBatchRepository,
+                                      @Qualifier(SchedulingConfig.BULK_PROVISIONING_EXECUTOR) TaskExecutor executor) {
+        this.labTemplateRepository = labTemplateRepository;
+        this.labRepository = labRepository;
+        this.labTemplateService = labTemplateService;
+        this.kubernetesService = kubernetesService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.changeTracker = changeTracker;
+        this.labStateTransitions = labStateTransitions;
+        this.labPlacementService = labPlacementService;
+        this.bulkBatchRepository = bulkBatchRepository;
+        this.executor = executor;
+    }
+
+    public BulkProvisionResponse provision(BulkCreateLabsRequest request) {
+        LabTemplate template = labTemplateRepository.findById(request.getTemplateId())
+                .orElseThrow(() -> new IllegalArgumentException("Template not found: " + request.getTemplateId()));
+
+        if (request.getUserIds() == null || request.getUserIds().isEmpty()) {
+            throw new IllegalArgumentException("At least one user id is required");
+        }
+        List<String> userIds = new ArrayList<>(new LinkedHashSet<>(request.getUserIds()));
+        if (userIds.size() > maxUsers) {
+            throw new IllegalArgumentException("Too many users in one batch: " + userIds.size() + " (max " + maxUsers + ")");
+        }
+
+        List<Lab> labs = userIds.stream()
+                .map(userId -> labTemplateService.newLabFromTemplate(userId, template))
+                .collect(Collectors.toList());
+        // One placement pass, so least-loaded spreads the whole class
+        List<KubernetesClusters.Target> targets = labPlacementService.place(userIds);
+        for (int i = 0; i < labs.size(); i++) {
+            labs.get(i).setClusterName(targets.get(i).getCluster());
+            labs.get(i).setNamespace(targets.get(i).getNamespace());
+            labs.get(i).setPodName(KubernetesService.labPodName(labs.get(i).getId()));
+        }
+
+        BulkBatch batch = BulkBatch.builder()
+                .id(TimeOrderedIds.newId().toString())
+                .templateId(template.getId())
+                .labIds(labs.stream().map(lab -> lab.getId().toString()).collect(Collectors.joining(",")))
+                .startedAt(LocalDateTime.now())
+                .build();
+
+        // Saved first so the batch can report progress as soon as it runs; the labs follow on the executor
+        bulkBatchRepository.save(batch);
+        try {
+            executor.execute(() -> createPods(batch.getId(), template, labs));
+        } catch (TaskRejectedException e) {
+            bulkBatchRepository.deleteById(batch.getId());
+            throw new BulkProvisioningBusyException("Too many bulk provisioning batches in progress, try again later");
+        }
+
+        log.info("Bulk provisioning {} started: {} labs from template {}", batch.getId(), labs.size(), template.getId());
+        return getProgress(batch.getId());
+    }
+
+    public BulkProvisionResponse getProgress(String batchId) {
+        BulkBatch batch = bulkBatchRepository.findById(batchId)
+                .orElseThrow(() -> new IllegalArgumentException("Bulk provisioning batch not found: " + batchId));
+        List<UUID> labIds = Arrays.stream(batch.getLabIds().split(","))
+                .map(UUID::fromString)
+                .collect(Collectors.toList());
+
+        Map<Lab.SetupStatus, Long> setupCounts = labRepository.findAllById(labIds)
+                .stream()
+                .collect(Collectors.groupingBy(Lab::getSetupStatus, Collectors.counting()));
+
+        long ready = setupCounts.getOrDefault(Lab.SetupStatus.READY, 0L);
+        long failed = setupCounts.getOrDefault(Lab.SetupStatus.FAILED, 0L);
+
+        return BulkProvisionResponse.builder()
+                .batchId(batch.getId())
+                .templateId(batch.getTemplateId())
+                .totalLabs(labIds.size())
+                .podsCreated(batch.getPodsCreated())
+                .podsFailed(batch.getPodsFailed())
+                .settingUp(setupCounts.getOrDefault(Lab.SetupStatus.SETTING_UP, 0L))
+                .ready(ready)
+                .failed(failed)
+                .completed(ready + failed == labIds.size())
+                .startedAt(batch.getStartedAt())
+                .labIds(labIds.stream().map(UUID::toString).collect(Collectors.toList()))
+                .build();
+    }
+
+    @Scheduled(fixedDelay = 3600000)
+    public void purgeOldBatches() {
+        try {
+            int purged = bulkBatchRepository.deleteStartedBefore(LocalDateTime.now().minusHours(batchRetentionHours));
+            if (purged > 0) {
+                log.info("Purged {} bulk provisioning batches", purged);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to purge bulk provisioning batches: {}", e.getMessage());
+        }
+    }
+
+    private boolean insertLabs(String batchId, List<Lab> labs) {
+        // The lab's clock starts when its row is written, not when the batch was queued
+        LocalDateTime now = LocalDateTime.now();
+        for (Lab lab : labs) {
+            Duration queued = Duration.between(lab.getCreatedAt(), now);
+            lab.setCreatedAt(now);
+            lab.setExpiresAt(lab.getExpiresAt().plus(queued));
+        }
+        List<Object[]> rows = labs.stream()
+                .map(lab -> new Object[]{
+                        TimeOrderedIds.toBytes(lab.getId()),
+                        lab.getUserId(),
+                        lab.getTemplateId(),
+                        lab.getLabType(),
+                        lab.getStatus().name(),
+                        lab.getSetupStatus().name(),
+                        Timestamp.valueOf(lab.getCreatedAt()),
+                        Timestamp.valueOf(lab.getExpiresAt()),
+                        lab.getAccessUrl(),
+                        lab.getDuration(),
+                        lab.getClusterName(),
+                        lab.getNamespace(),
+                        lab.getPodName()
+                })
+                .collect(Collectors.toList());
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_LAB_SQL, rows);
+                changeTracker.changed(labs.stream()
+                        .map(lab -> ChangeTracker.userLabs(lab.getUserId()))
+                        .collect(Collectors.toList()));
+            });
+            return true;
+        } catch (Exception e) {
+            log.error("Bulk provisioning {}: failed to insert {} labs: {}", batchId, labs.size(), e.getMessage());
+            bulkBatchRepository.incrementPodsFailed(batchId, labs.size());
+            return false;
+        }
+    }
+
+    private void createPods(String batchId, LabTemplate template, List<Lab> labs) {
+        // Filled by the HTTP client's callback threads, drained here
+        BlockingQueue<Runnable> completions = new LinkedBlockingQueue<>();
+        int inFlight = 0;
+        int sliceSize = Math.max(1, maxParallelPodCreates);
+
+        try {
+            for (int start = 0; start < labs.size(); start += sliceSize) {
+                List<Lab> slice = labs.subList(start, Math.min(labs.size(), start + sliceSize));
+                if (!insertLabs(batchId, slice)) {
+                    continue;
+                }
+                for (int i = 0; i < slice.size(); i++) {
+                    Lab lab = slice.get(i);
+                    // Labs in the same wave start setup together, each wave after the previous one
+                    long setupDelayMillis = (long) ((start + i) / Math.max(1, setupWaveSize)) * setupWaveIntervalSeconds * 1000L;
+                    while (inFlight >= maxParallelPodCreates) {
+                        completions.take().run();
+                        inFlight--;
+                    }
+                    try {
+                        kubernetesService.createLabPodFromTemplateAsync(kubernetesService.targetOf(lab), lab.getId(), template)
+                                .whenComplete((podName, error) -> completions.add(error == null
+                                        ? () -> onPodCreated(batchId, template, lab, setupDelayMillis)
+                                        : () -> onPodFailed(batchId, lab, error)));
+                        inFlight++;
+                    } catch (Exception e) {
+                        onPodFailed(batchId, lab, e);
+                    }
+                }
+            }
+            while (inFlight > 0) {
+                completions.take().run();
+                inFlight--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Bulk provisioning {} interrupted", batchId);
+        }
+    }
+
+    private void onPodCreated(String batchId, LabTemplate template, Lab lab, long setupDelayMillis) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                bulkBatchRepository.incrementPodsCreated(batchId);
+                // Skipped when the lab was deleted or expired while its pod was being created
+                if (labStateTransitions.startSetup(lab)) {
+                    labTemplateService.executeTemplateSetup(lab, template, setupDelayMillis);
+                } else {
+                    log.info("Bulk provisioning {}: lab {} left creation, not starting setup", batchId, lab.getId());
+                }
+            });
+        } catch (Exception e) {
+            log.error("Bulk provisioning {}: failed to start setup for lab {}: {}", batchId, lab.getId(), e.getMessage());
+        }
+    }
+
+    private void onPodFailed(String batchId, Lab lab, Throwable error) {
+        log.error("Bulk provisioning {}: failed to create pod for lab {}: {}", batchId, lab.getId(), error.getMessage());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                labStateTransitions.failCreate(lab);
+                bulkBatchRepository.incrementPodsFailed(batchId, 1);
+            });
+        } catch (Exception e) {
+            log.error("Bulk provisioning {}: failed to record pod failure for lab {}: {}", batchId, lab.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Thrown when the bulk provisioning executor is full; nothing was created
+     */
+    public static class BulkProvisioningBusyException extends RuntimeException {
+        public BulkProvisioningBusyException(String message) {
+            super(message);
+        }
+    }
+}
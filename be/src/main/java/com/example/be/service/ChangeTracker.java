@@ -0,0 +1,194 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.be.config.ReplicaRoutingDataSource;
+import com.example.be.model.ChangeCounter;
+import com.example.be.repository.ChangeCounterRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Change counters behind the ETags of the polled list endpoints.
+ * <p>
+ * Writers bump a counter per scope after their transaction commits; every replica polls the
+ * counters changed since its last poll into memory, so answering a conditional GET needs neither
+ * a query nor serialization. A replica stops handing out the ETag of a scope it changed itself
+ * until it has read the new counter back; other replicas catch up within one poll interval.
+ */
+@Slf4j
+@Service
+public class ChangeTracker {
+
+    /**
+     * Templates and their setup steps
+     */
+    public static final String TEMPLATES = "templates";
+
+    private static final String BUMP_SQL =
+            "INSERT INTO change_counters (scope, version, updated_at) VALUES (?, 1, CURRENT_TIMESTAMP(6)) " +
+            "ON DUPLICATE KEY UPDATE version = version + 1, updated_at = CURRENT_TIMESTAMP(6)";
+
+    // Rows committed slightly out of updated_at order are still picked up by the next poll
+    private static final long POLL_OVERLAP_SECONDS = 5;
+
+    private final ChangeCounterRepository changeCounterRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    // Scope -> System.currentTimeMillis() of the local bump; Long.MAX_VALUE while the bump is running
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    // Scope -> System.nanoTime() when this replica last saw it change
+    private final Map<String, Long> changedAt = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastSeen;
+    // System.nanoTime() until which the polled versions count as current
+    private volatile long freshUntil;
+    private volatile boolean loaded;
+
+    // Without a successful poll for this long the tracked endpoints stop sending ETags
+    @Value("${lab.http.etag-max-staleness-ms:10000}")
+    private long maxStalenessMillis;
+
+    // Change when the JSON shape of the tracked responses changes, so cached bodies are not reused
+    @Value("${lab.http.etag-salt:1}")
+    private String salt;
+
+    // How long read replicas may trail the primary, see ReadYourWritesFilter
+    @Value("${lab.datasource.read-your-writes-seconds:5}")
+    private long replicaCatchUpSeconds;
+
+    public ChangeTracker(ChangeCounterRepository changeCounterRepository, JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager) {
+        this.changeCounterRepository = changeCounterRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        // Bumps run from afterCompletion, where the finished transaction's connection is still bound
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public static String userLabs(String userId) {
+        return "labs:user:" + userId;
+    }
+
+    /**
+     * ETag for the current version of a scope, or null when it is not known
+     * (no recent poll, or this replica changed it since the last one).
+     */
+    public String etag(String scope) {
+        if (!loaded || System.nanoTime() - freshUntil > 0 || pending.containsKey(scope)) {
+            return null;
+        }
+        // A replica may not have the change behind a new ETag yet; caching its older body under
+        // that ETag would stick until the next change, so read this one from the primary
+        Long changed = changedAt.get(scope);
+        if (changed != null && System.nanoTime() - changed < replicaCatchUpSeconds * 1_000_000_000L) {
+            ReplicaRoutingDataSource.usePrimary();
+        }
+        return "\"" + salt + "-" + versions.getOrDefault(scope, 0L) + "\"";
+    }
+
+    /**
+     * Last polled version of a scope, 0 if it never changed
+     */
+    public long version(String scope) {
+        return versions.getOrDefault(scope, 0L);
+    }
+
+    public void changed(String scope) {
+        changed(List.of(scope));
+    }
+
+    /**
+     * Records a change to the given scopes. Inside a transaction the counters are bumped once it
+     * has committed, so a client can never see the new ETag together with the old data.
+     */
+    @SuppressWarnings("unchecked")
+    public void changed(Collection<String> scopes) {
+        if (scopes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(scopes);
+            return;
+        }
+
+        Set<String> collected = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (collected == null) {
+            Set<String> batch = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, batch);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeTracker.this);
+                    if (status == STATUS_COMMITTED) {
+                        bump(batch);
+                    }
+                }
+            });
+            collected = batch;
+        }
+        collected.addAll(scopes);
+    }
+
+    private void bump(Collection<String> scopes) {
+        List<Object[]> rows = scopes.stream().map(scope -> new Object[]{scope}).toList();
+        scopes.forEach(scope -> pending.put(scope, Long.MAX_VALUE));
+        try {
+            newTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(BUMP_SQL, rows));
+        } catch (Exception e) {
+            // The data change is already committed; the scope stays without ETag until its next bump succeeds
+            log.warn("Failed to bump change counters {}: {}", scopes, e.getMessage());
+            return;
+        }
+        long bumpedAt = System.currentTimeMillis();
+        long bumpedNanos = System.nanoTime();
+        scopes.forEach(scope -> {
+            pending.put(scope, bumpedAt);
+            changedAt.put(scope, bumpedNanos);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${lab.http.etag-poll-interval-ms:1000}")
+    public void poll() {
+        long pollStartedAt = System.currentTimeMillis();
+        long pollStartedNanos = System.nanoTime();
+        try {
+            LocalDateTime since = lastSeen == null
+                    ? LocalDateTime.of(1970, 1, 1, 0, 0)
+                    : lastSeen.minusSeconds(POLL_OVERLAP_SECONDS);
+            for (ChangeCounter counter : changeCounterRepository.findByUpdatedAtGreaterThanEqual(since)) {
+                Long previous = versions.get(counter.getScope());
+                versions.merge(counter.getScope(), counter.getVersion(), Math::max);
+                if (loaded && (previous == null || previous < counter.getVersion())) {
+                    changedAt.put(counter.getScope(), pollStartedNanos);
+                }
+                if (lastSeen == null || counter.getUpdatedAt().isAfter(lastSeen)) {
+                    lastSeen = counter.getUpdatedAt();
+                }
+            }
+            // A poll that started after a local bump finished has read that bump
+            pending.values().removeIf(bumpedAt -> bumpedAt < pollStartedAt);
+            changedAt.values().removeIf(changed -> pollStartedNanos - changed > replicaCatchUpSeconds * 1_000_000_000L);
+            freshUntil = pollStartedNanos + maxStalenessMillis * 1_000_000;
+            loaded = true;
+        } catch (Exception e) {
+            log.warn("Failed to poll change counters: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.be.service;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.example.be.model.Lab;
+
+/**
+ * Entity listener that reports JPA writes of labs, templates and setup steps to the
+ * {@link ChangeTracker}. JDBC batches and bulk JPQL statements bypass it and call the tracker
+ * themselves.
+ */
+@Component
+public class ChangeTrackingListener {
+
+    // Resolved lazily: Hibernate creates the listener while the EntityManagerFactory is still being built
+    private final ObjectProvider<ChangeTracker> changeTracker;
+
+    public ChangeTrackingListener(ObjectProvider<ChangeTracker> changeTracker) {
+        this.changeTracker = changeTracker;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (entity instanceof Lab lab) {
+            changeTracker.getObject().changed(ChangeTracker.userLabs(lab.getUserId()));
+        } else {
+            changeTracker.getObject().changed(ChangeTracker.TEMPLATES);
+        }
+    }
+}
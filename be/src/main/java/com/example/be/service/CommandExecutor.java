@@ -0,0 +1,17 @@
+package com.example.be.service;
+
+import com.example.be.dto.CommandResultResponse;
+
+/**
+ * Transport used to run a shell command inside a lab's container.
+ */
+public interface CommandExecutor {
+
+    /**
+     * Short transport name used in logs, metrics and benchmark results
+     */
+    String name();
+
+    CommandResultResponse execute(KubernetesClusters.Target target, String podName, String command,
+                                  int timeoutSeconds, String workingDirectory) throws Exception;
+}
@@ -0,0 +1,182 @@
+package com.example.be.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.be.dto.CommandResultResponse;
+import com.example.be.repository.LabRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Per-lab cache of results of read-only commands (uname -a, whoami, ...), so the commands users
+ * run most are answered from memory instead of a full exec round-trip. Opt-in.
+ * <p>
+ * Only allowlisted commands that succeeded are cached, for a short TTL and never past the lab's
+ * expiry. Any other command in the lab or setup step moves the lab's exec generation, a counter on
+ * the lab row, before and after it runs. Each result is stored with the generation the lab had when
+ * its command started and is only served while the lab, freshly read by the caller, still has it,
+ * so a change made through any replica invalidates the entries of every replica.
+ */
+@Slf4j
+@Component
+public class CommandResultCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final LabRepository labRepository;
+    private final Map<UUID, Map<String, Entry>> labs = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Set<String> allowlist;
+
+    @Value("${lab.exec.result-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${lab.exec.result-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    public CommandResultCache(LabRepository labRepository, MeterRegistry meterRegistry,
+                              @Value("${lab.exec.result-cache.commands:uname -a,cat /etc/os-release,whoami,pwd,df -h}") List<String> commands) {
+        this.labRepository = labRepository;
+        this.allowlist = commands.stream().map(CommandResultCache::normalize).collect(Collectors.toUnmodifiableSet());
+        this.hits = meterRegistry.counter("lab.exec.cache", "result", "hit");
+        this.misses = meterRegistry.counter("lab.exec.cache", "result", "miss");
+    }
+
+    /**
+     * Cached result marked as such, or null
+     *
+     * @param generation the lab's exec generation as just read from the database
+     */
+    public CommandResultResponse get(UUID labId, long generation, String command) {
+        if (!enabled) {
+            return null;
+        }
+        String key = normalize(command);
+        if (!allowlist.contains(key)) {
+            return null;
+        }
+        Map<String, Entry> entries = labs.get(labId);
+        Entry entry = entries == null ? null : entries.get(key);
+        if (entry == null || entry.generation != generation || System.nanoTime() - entry.expiresAtNanos > 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        CommandResultResponse cached = entry.result;
+        return CommandResultResponse.builder()
+                .command(command)
+                .output(cached.getOutput())
+                .error(cached.getError())
+                .exitCode(cached.getExitCode())
+                .success(cached.isSuccess())
+                .cached(true)
+                .build();
+    }
+
+    /**
+     * Call before running a command in the lab. Invalidates the lab if the command is not
+     * allowlisted, and returns whether its result may be cached.
+     */
+    public boolean begin(UUID labId, String command) {
+        if (!enabled) {
+            return false;
+        }
+        if (!allowlist.contains(normalize(command))) {
+            invalidate(labId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Call after the command ran, with the lab's exec generation from before it started. Stores a
+     * successful allowlisted result; after any other command the lab is invalidated again, since
+     * results cached while it was running may predate its effects.
+     */
+    public void complete(UUID labId, long generation, String command, boolean cacheable,
+                         CommandResultResponse result, LocalDateTime labExpiresAt) {
+        if (!enabled) {
+            return;
+        }
+        if (!cacheable) {
+            invalidate(labId);
+            return;
+        }
+        if (result == null || !result.isSuccess()) {
+            return;
+        }
+        long ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        if (labExpiresAt != null) {
+            ttlNanos = Math.min(ttlNanos, Duration.between(LocalDateTime.now(), labExpiresAt).toNanos());
+        }
+        if (ttlNanos <= 0) {
+            return;
+        }
+        // Stored even if the generation moved meanwhile: get() then never serves it
+        labs.computeIfAbsent(labId, id -> new ConcurrentHashMap<>())
+                .put(normalize(command), new Entry(result, generation, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Drops the lab's results on every replica
+     */
+    public void invalidate(UUID labId) {
+        if (!enabled) {
+            return;
+        }
+        labs.remove(labId);
+        try {
+            labRepository.bumpExecGeneration(labId);
+        } catch (Exception e) {
+            // Other replicas keep their entries until the TTL runs out
+            log.warn("Failed to invalidate cached command results of lab {}: {}", labId, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the lab's results on this replica; for deleted labs, which other replicas no longer find
+     */
+    public void forget(UUID labId) {
+        labs.remove(labId);
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        labs.values().forEach(entries -> entries.values().removeIf(entry -> now - entry.expiresAtNanos > 0));
+        labs.values().removeIf(Map::isEmpty);
+    }
+
+    private static String normalize(String command) {
+        if (command == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(command.trim()).replaceAll(" ");
+    }
+
+    private static final class Entry {
+        private final CommandResultResponse result;
+        private final long generation;
+        private final long expiresAtNanos;
+
+        private Entry(CommandResultResponse result, long generation, long expiresAtNanos) {
+            this.result = result;
+            this.generation = generation;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.be.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-flight interactive execs on this replica, so a user can abort one.
+ * <p>
+ * Cancelling interrupts the thread running the exec: a command still queued in the
+ * {@link LabExecLimiter} leaves the queue, a Kubernetes exec destroys its WebSocket and an agent
+ * request is aborted by the HTTP client. The interrupt can never leak past the exec, because
+ * {@link RunningExec#close()} clears it on the same thread.
+ */
+@Component
+public class ExecRegistry {
+
+    private final Map<String, RunningExec> running = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the exec about to run on the current thread. Clients pass their own id to be able
+     * to cancel before the response arrives; without one a random id is assigned.
+     */
+    public RunningExec start(String labId, String execId) {
+        String id = execId == null || execId.isBlank() ? UUID.randomUUID().toString() : execId;
+        RunningExec exec = new RunningExec(id, labId, Thread.currentThread());
+        if (running.putIfAbsent(id, exec) != null) {
+            throw new IllegalArgumentException("Exec id already in use: " + id);
+        }
+        return exec;
+    }
+
+    /**
+     * @return false when no exec with this id is running for the lab
+     */
+    public boolean cancel(String labId, String execId) {
+        RunningExec exec = running.get(execId);
+        if (exec == null || !exec.labId.equals(labId)) {
+            return false;
+        }
+        return exec.cancel();
+    }
+
+    public final class RunningExec implements AutoCloseable {
+        private final String id;
+        private final String labId;
+        private final Thread thread;
+        private boolean cancelled;
+        private boolean finished;
+
+        private RunningExec(String id, String labId, Thread thread) {
+            this.id = id;
+            this.labId = labId;
+            this.thread = thread;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        private synchronized boolean cancel() {
+            if (finished) {
+                return false;
+            }
+            cancelled = true;
+            thread.interrupt();
+            return true;
+        }
+
+        @Override
+        public synchronized void close() {
+            finished = true;
+            running.remove(id, this);
+            if (cancelled) {
+                // Request threads are pooled; the cancel interrupt must not hit the next request
+                Thread.interrupted();
+            }
+        }
+    }
+}
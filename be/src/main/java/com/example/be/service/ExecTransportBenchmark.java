@@ -0,0 +1,87 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import com.example.be.dto.CommandResultResponse;
+import com.example.be.dto.ExecBenchmarkResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures end-to-end command latency of every exec transport against the same pod,
+ * so the agent and the Kubernetes exec path can be compared on a real lab.
+ */
+@Slf4j
+@Service
+public class ExecTransportBenchmark {
+
+    private static final int COMMAND_TIMEOUT_SECONDS = 30;
+
+    private final List<CommandExecutor> executors;
+
+    public ExecTransportBenchmark(KubernetesExecCommandExecutor kubernetesExecutor,
+                                  AgentCommandExecutor agentExecutor) {
+        this.executors = List.of(kubernetesExecutor, agentExecutor);
+    }
+
+    public List<ExecBenchmarkResponse.TransportResult> run(KubernetesClusters.Target target, String podName,
+                                                        String command, int iterations) {
+        List<ExecBenchmarkResponse.TransportResult> results = new ArrayList<>();
+        for (CommandExecutor executor : executors) {
+            results.add(measure(executor, target, podName, command, iterations));
+        }
+        return results;
+    }
+
+    private ExecBenchmarkResponse.TransportResult measure(CommandExecutor executor, KubernetesClusters.Target target,
+                                                          String podName, String command, int iterations) {
+        // One warm-up call so connection setup is not counted against the first sample
+        runOnce(executor, target, podName, command);
+
+        double[] samples = new double[iterations];
+        int successes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            boolean ok = runOnce(executor, target, podName, command);
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+            if (ok) {
+                successes++;
+            }
+        }
+        Arrays.sort(samples);
+
+        ExecBenchmarkResponse.TransportResult result = ExecBenchmarkResponse.TransportResult.builder()
+                .transport(executor.name())
+                .successes(successes)
+                .failures(iterations - successes)
+                .meanMs(Arrays.stream(samples).average().orElse(0))
+                .p50Ms(percentile(samples, 0.50))
+                .p95Ms(percentile(samples, 0.95))
+                .p99Ms(percentile(samples, 0.99))
+                .maxMs(samples.length == 0 ? 0 : samples[samples.length - 1])
+                .build();
+        log.info("Exec benchmark for pod {} via {}: {}", podName, executor.name(), result);
+        return result;
+    }
+
+    private boolean runOnce(CommandExecutor executor, KubernetesClusters.Target target, String podName, String command) {
+        try {
+            CommandResultResponse result = executor.execute(target, podName, command, COMMAND_TIMEOUT_SECONDS, "/");
+            return result.isSuccess();
+        } catch (Exception e) {
+            log.debug("Exec benchmark call via {} failed: {}", executor.name(), e.getMessage());
+            return false;
+        }
+    }
+
+    private static double percentile(double[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.be.service;
+
+import io.kubernetes.client.openapi.models.V1Affinity;
+import io.kubernetes.client.openapi.models.V1ContainerImage;
+import io.kubernetes.client.openapi.models.V1ContainerStatus;
+import io.kubernetes.client.openapi.models.V1Node;
+import io.kubernetes.client.openapi.models.V1NodeAffinity;
+import io.kubernetes.client.openapi.models.V1NodeSelectorRequirement;
+import io.kubernetes.client.openapi.models.V1NodeSelectorTerm;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.kubernetes.client.openapi.models.V1PreferredSchedulingTerm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Which nodes already hold which images, read from node status (kubelet reports up to 50 images
+ * per node by default), and what that does to pod start times.
+ * <p>
+ * Template pods get a preferred node affinity for the nodes that have their base image, so the
+ * scheduler avoids a pull where it can without ever refusing a node. The time from pod creation
+ * to the lab container running is recorded per pod, tagged with whether the pod asked for such
+ * nodes and whether the node it got had the image before the pod was created.
+ */
+@Slf4j
+@Component
+public class ImageLocality {
+
+    static final String PREFERRED_LABEL = "image-local-preferred";
+
+    // Pods that started before this are not timed, e.g. after a leader change
+    private static final Duration STARTUP_RECORD_WINDOW = Duration.ofMinutes(5);
+
+    /**
+     * Image -> node -> when this replica first saw the image there, for one cluster
+     */
+    private static final class ClusterImages {
+        private final Map<String, Map<String, Instant>> nodesByImage;
+        private final int schedulableNodes;
+        private final Map<String, V1Affinity> affinities = new ConcurrentHashMap<>();
+
+        private ClusterImages(Map<String, Map<String, Instant>> nodesByImage, int schedulableNodes) {
+            this.nodesByImage = nodesByImage;
+            this.schedulableNodes = schedulableNodes;
+        }
+    }
+
+    private final KubernetesClusters clusters;
+    private final KubernetesApiGateway gateway;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, ClusterImages> byCluster = new ConcurrentHashMap<>();
+    // Pod uid -> container start, for pods already recorded within the window
+    private final Map<String, Instant> timedPods = new ConcurrentHashMap<>();
+
+    @Value("${lab.image-locality.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lab.image-locality.affinity-weight:50}")
+    private int affinityWeight;
+
+    public ImageLocality(KubernetesClusters clusters, KubernetesApiGateway gateway, MeterRegistry meterRegistry) {
+        this.clusters = clusters;
+        this.gateway = gateway;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${lab.image-locality.refresh-interval-ms:30000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        for (KubernetesClusters.Cluster cluster : clusters.clusters()) {
+            try {
+                List<V1Node> nodes = gateway.read(cluster.getName(), "node.list",
+                        () -> cluster.getApi().listNode(null, null, null, null, null, null, null, null, null, null)).getItems();
+                byCluster.put(cluster.getName(), index(nodes, byCluster.get(cluster.getName())));
+            } catch (Exception e) {
+                // The previous snapshot stays in use
+                log.warn("Failed to read node images of cluster {}: {}", cluster.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private static ClusterImages index(List<V1Node> nodes, ClusterImages previous) {
+        Instant now = Instant.now();
+        Map<String, Map<String, Instant>> nodesByImage = new HashMap<>();
+        int schedulable = 0;
+        for (V1Node node : nodes) {
+            if (node.getSpec() != null && Boolean.TRUE.equals(node.getSpec().getUnschedulable())) {
+                continue;
+            }
+            schedulable++;
+            if (node.getStatus() == null || node.getStatus().getImages() == null) {
+                continue;
+            }
+            String nodeName = node.getMetadata().getName();
+            for (V1ContainerImage image : node.getStatus().getImages()) {
+                if (image.getNames() == null) {
+                    continue;
+                }
+                for (String name : image.getNames()) {
+                    String normalized = normalize(name);
+                    Instant firstSeen = previous == null ? null
+                            : previous.nodesByImage.getOrDefault(normalized, Map.of()).get(nodeName);
+                    // Whatever the first snapshot finds was there before any pod this replica times
+                    nodesByImage.computeIfAbsent(normalized, key -> new HashMap<>())
+                            .put(nodeName, firstSeen != null ? firstSeen : previous == null ? Instant.EPOCH : now);
+                }
+            }
+        }
+        return new ClusterImages(nodesByImage, schedulable);
+    }
+
+    /**
+     * Preferred affinity for the nodes holding the image, or null when none or every node does
+     */
+    public V1Affinity preferNodesWithImage(String cluster, String image) {
+        ClusterImages images = byCluster.get(cluster);
+        if (!enabled || images == null || image == null) {
+            return null;
+        }
+        return images.affinities.computeIfAbsent(normalize(image), key -> {
+            Collection<String> nodes = images.nodesByImage.getOrDefault(key, Map.of()).keySet();
+            if (nodes.isEmpty() || nodes.size() >= images.schedulableNodes) {
+                return null;
+            }
+            // Shared by every pod built from this snapshot, never mutated
+            return new V1Affinity().nodeAffinity(new V1NodeAffinity()
+                    .preferredDuringSchedulingIgnoredDuringExecution(List.of(new V1PreferredSchedulingTerm()
+                            .weight(affinityWeight)
+                            .preference(new V1NodeSelectorTerm().matchFields(List.of(new V1NodeSelectorRequirement()
+                                    .key("metadata.name")
+                                    .operator("In")
+                                    .values(List.copyOf(nodes))))))));
+        });
+    }
+
+    /**
+     * Records creation-to-running time of template lab pods seen running for the first time
+     */
+    public void recordStartups(String cluster, List<V1Pod> pods) {
+        Instant cutoff = Instant.now().minus(STARTUP_RECORD_WINDOW);
+        timedPods.values().removeIf(started -> started.isBefore(cutoff));
+        for (V1Pod pod : pods) {
+            String uid = pod.getMetadata().getUid();
+            OffsetDateTime created = pod.getMetadata().getCreationTimestamp();
+            OffsetDateTime started = containerStartedAt(pod);
+            if (uid == null || created == null || started == null || started.toInstant().isBefore(cutoff)
+                    || pod.getMetadata().getLabels() == null || !pod.getMetadata().getLabels().containsKey(PREFERRED_LABEL)
+                    || timedPods.putIfAbsent(uid, started.toInstant()) != null) {
+                continue;
+            }
+            String image = pod.getSpec().getContainers().get(0).getImage();
+            ClusterImages images = byCluster.get(cluster);
+            Instant imageSince = images == null || pod.getSpec().getNodeName() == null ? null
+                    : images.nodesByImage.getOrDefault(normalize(image), Map.of()).get(pod.getSpec().getNodeName());
+            boolean cached = imageSince != null && imageSince.isBefore(created.toInstant());
+
+            Timer.builder("lab.pod.time-to-running")
+                    .description("Time from lab pod creation until its container runs")
+                    .tag("cluster", cluster)
+                    .tag("preferred", pod.getMetadata().getLabels().get(PREFERRED_LABEL))
+                    .tag("image", cached ? "cached" : "pulled")
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(Duration.between(created, started).toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static OffsetDateTime containerStartedAt(V1Pod pod) {
+        if (pod.getStatus() == null || pod.getStatus().getContainerStatuses() == null) {
+            return null;
+        }
+        for (V1ContainerStatus status : pod.getStatus().getContainerStatuses()) {
+            if (LabPodPrototypes.CONTAINER_NAME.equals(status.getName()) && status.getState() != null
+                    && status.getState().getRunning() != null) {
+                return status.getState().getRunning().getStartedAt();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Full reference as the kubelet reports it: "ubuntu:20.04" -> "docker.io/library/ubuntu:20.04"
+     */
+    static String normalize(String image) {
+        String name = image;
+        int slash = name.indexOf('/');
+        String first = slash < 0 ? "" : name.substring(0, slash);
+        if (slash < 0) {
+            name = "docker.io/library/" + name;
+        } else if (!first.contains(".") && !first.contains(":") && !"localhost".equals(first)) {
+            name = "docker.io/" + name;
+        }
+        if (!name.contains("@") && name.lastIndexOf(':') < name.lastIndexOf('/')) {
+            name = name + ":latest";
+        }
+        return name;
+    }
+}
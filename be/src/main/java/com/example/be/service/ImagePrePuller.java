@@ -0,0 +1,193 @@
+package com.example.be.service;
+
+import io.kubernetes.client.custom.Quantity;
+import io.kubernetes.client.openapi.apis.AppsV1Api;
+import io.kubernetes.client.openapi.models.V1Container;
+import io.kubernetes.client.openapi.models.V1DaemonSet;
+import io.kubernetes.client.openapi.models.V1DaemonSetSpec;
+import io.kubernetes.client.openapi.models.V1LabelSelector;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1PodSpec;
+import io.kubernetes.client.openapi.models.V1PodTemplateSpec;
+import io.kubernetes.client.openapi.models.V1ResourceRequirements;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.be.model.LabTemplate;
+import com.example.be.repository.LabTemplateRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps one pre-pull DaemonSet per distinct base image (and node selector) of the active
+ * templates in every cluster, so nodes hold the images before the first lab lands on them.
+ * <p>
+ * Each DaemonSet pod pulls the image in an init container that exits at once and then idles in
+ * a pause container. The name is a hash of everything in the spec, so a changed template yields a
+ * new DaemonSet and the old one is deleted; nothing is ever updated in place. Runs on the
+ * maintenance leader when the templates change counter moves, and every {@code resync-minutes}
+ * to repair manual changes. Needs list/create/delete on daemonsets.apps in the namespace.
+ */
+@Slf4j
+@Component
+public class ImagePrePuller {
+
+    private static final String APP_LABEL = "lab-image-prepull";
+
+    private final KubernetesClusters clusters;
+    private final KubernetesApiGateway gateway;
+    private final LabTemplateRepository labTemplateRepository;
+    private final ChangeTracker changeTracker;
+    private final LeaderElection leaderElection;
+
+    private final Map<String, AppsV1Api> appsApis = new ConcurrentHashMap<>();
+    private volatile long syncedVersion = -1;
+    private volatile long nextResyncNanos;
+
+    @Value("${lab.image-prepull.enabled:true}")
+    private boolean enabled;
+
+    // Empty = the first lab namespace of each cluster
+    @Value("${lab.image-prepull.namespace:}")
+    private String namespace;
+
+    @Value("${lab.image-prepull.pause-image:registry.k8s.io/pause:3.9}")
+    private String pauseImage;
+
+    @Value("${lab.image-prepull.resync-minutes:10}")
+    private long resyncMinutes;
+
+    public ImagePrePuller(KubernetesClusters clusters, KubernetesApiGateway gateway,
+                          LabTemplateRepository labTemplateRepository, ChangeTracker changeTracker,
+                          LeaderElection leaderElection) {
+        this.clusters = clusters;
+        this.gateway = gateway;
+        this.labTemplateRepository = labTemplateRepository;
+        this.changeTracker = changeTracker;
+        this.leaderElection = leaderElection;
+    }
+
+    @Scheduled(fixedDelayString = "${lab.image-prepull.check-interval-ms:5000}")
+    public void sync() {
+        if (!enabled || !leaderElection.isLeader(LeaderElection.MAINTENANCE)) {
+            // A new leader starts with a full sync
+            syncedVersion = -1;
+            return;
+        }
+        long version = changeTracker.version(ChangeTracker.TEMPLATES);
+        if (version == syncedVersion && System.nanoTime() - nextResyncNanos < 0) {
+            return;
+        }
+
+        Map<String, V1DaemonSet> desired = new LinkedHashMap<>();
+        for (LabTemplate template : labTemplateRepository.findByIsActiveTrueOrderByCreatedAtDesc()) {
+            if (template.getBaseImage() == null || template.getBaseImage().isBlank()) {
+                continue;
+            }
+            try {
+                V1DaemonSet daemonSet = daemonSet(template.getBaseImage(),
+                        LabPodPrototypes.nodeSelector(template.getNodeSelector()));
+                desired.putIfAbsent(daemonSet.getMetadata().getName(), daemonSet);
+            } catch (IllegalArgumentException e) {
+                log.warn("Not pre-pulling image of template {}: {}", template.getId(), e.getMessage());
+            }
+        }
+
+        boolean allSynced = true;
+        for (KubernetesClusters.Cluster cluster : clusters.clusters()) {
+            try {
+                syncCluster(cluster, desired);
+            } catch (Exception e) {
+                allSynced = false;
+                log.warn("Failed to sync pre-pull DaemonSets in cluster {}: {}", cluster.getName(), e.getMessage());
+            }
+        }
+        if (allSynced) {
+            syncedVersion = version;
+            nextResyncNanos = System.nanoTime() + resyncMinutes * 60_000_000_000L;
+        }
+    }
+
+    private void syncCluster(KubernetesClusters.Cluster cluster, Map<String, V1DaemonSet> desired) throws Exception {
+        String ns = namespace.isBlank() ? cluster.getNamespaces().get(0) : namespace;
+        AppsV1Api apps = appsApis.computeIfAbsent(cluster.getName(), name -> new AppsV1Api(cluster.getApi().getApiClient()));
+
+        Set<String> existing = gateway.read(cluster.getName(), "daemonset.list",
+                        () -> apps.listNamespacedDaemonSet(ns, null, null, null, null, "app=" + APP_LABEL,
+                                null, null, null, null, null))
+                .getItems().stream()
+                .map(daemonSet -> daemonSet.getMetadata().getName())
+                .collect(Collectors.toSet());
+
+        for (Map.Entry<String, V1DaemonSet> entry : desired.entrySet()) {
+            if (!existing.contains(entry.getKey())) {
+                gateway.write(cluster.getName(), "daemonset.create", false,
+                        () -> apps.createNamespacedDaemonSet(ns, entry.getValue(), null, null, null, null));
+                log.info("Created pre-pull DaemonSet {} for {} in {}/{}", entry.getKey(),
+                        entry.getValue().getMetadata().getAnnotations().get("image"), cluster.getName(), ns);
+            }
+        }
+        for (String name : existing) {
+            if (!desired.containsKey(name)) {
+                gateway.write(cluster.getName(), "daemonset.delete", true,
+                        () -> apps.deleteNamespacedDaemonSet(name, ns, null, null, null, null, null, null));
+                log.info("Deleted pre-pull DaemonSet {} in {}/{}", name, cluster.getName(), ns);
+            }
+        }
+    }
+
+    private V1DaemonSet daemonSet(String image, Map<String, String> nodeSelector) {
+        // Sorted, so the name is the same on every replica and restart
+        String selector = nodeSelector == null ? "" : new TreeMap<>(nodeSelector).toString();
+        String name = "lab-prepull-" + hash(image + "|" + selector + "|" + pauseImage);
+        Map<String, String> labels = Map.of("app", APP_LABEL, "prepull", name);
+        V1ResourceRequirements tiny = new V1ResourceRequirements()
+                .requests(Map.of("cpu", new Quantity("1m"), "memory", new Quantity("8Mi")))
+                .limits(Map.of("cpu", new Quantity("50m"), "memory", new Quantity("32Mi")));
+
+        return new V1DaemonSet()
+                .metadata(new V1ObjectMeta()
+                        .name(name)
+                        .labels(Map.of("app", APP_LABEL))
+                        .annotations(Map.of("image", image)))
+                .spec(new V1DaemonSetSpec()
+                        .selector(new V1LabelSelector().matchLabels(labels))
+                        .template(new V1PodTemplateSpec()
+                                .metadata(new V1ObjectMeta().labels(labels))
+                                .spec(new V1PodSpec()
+                                        // Pulling is the whole point; the command only has to exit
+                                        .initContainers(List.of(new V1Container()
+                                                .name("pull")
+                                                .image(image)
+                                                .imagePullPolicy("IfNotPresent")
+                                                .command(List.of("/bin/sh", "-c", "true"))
+                                                .resources(tiny)))
+                                        .containers(List.of(new V1Container()
+                                                .name("pause")
+                                                .image(pauseImage)
+                                                .resources(tiny)))
+                                        .nodeSelector(nodeSelector)
+                                        .terminationGracePeriodSeconds(0L))));
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
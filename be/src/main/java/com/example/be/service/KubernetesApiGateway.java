@@ -0,0 +1,276 @@
+package com.example.be.service;
+
+import io.kubernetes.client.openapi.ApiCallback;
+import io.kubernetes.client.openapi.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for calls to the Kubernetes API servers.
+ * Applies client-side rate limiting per cluster and call class, retries idempotent calls
+ * with jittered exponential backoff and records per-verb latency metrics.
+ */
+@Slf4j
+@Component
+public class KubernetesApiGateway {
+
+    public enum CallClass {
+        READ, WRITE, EXEC
+    }
+
+    @FunctionalInterface
+    public interface ApiCall<T> {
+        T call() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface AsyncApiCall<T> {
+        void call(ApiCallback<T> callback) throws ApiException;
+    }
+
+    // 0 = connection/IO failure wrapped by the client
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(0, 429, 500, 502, 503, 504);
+
+    private final MeterRegistry meterRegistry;
+    // Each cluster's API server gets its own budget
+    private final Map<String, Map<CallClass, TokenBucket>> bucketsByCluster = new ConcurrentHashMap<>();
+    private final Map<CallClass, double[]> limits = new EnumMap<>(CallClass.class);
+
+    @Value("${kubernetes.client.retry.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${kubernetes.client.retry.base-backoff-ms:200}")
+    private long baseBackoffMs;
+
+    @Value("${kubernetes.client.retry.max-backoff-ms:5000}")
+    private long maxBackoffMs;
+
+    public KubernetesApiGateway(MeterRegistry meterRegistry,
+                                @Value("${kubernetes.client.rate-limit.read-qps:50}") double readQps,
+                                @Value("${kubernetes.client.rate-limit.read-burst:100}") int readBurst,
+                                @Value("${kubernetes.client.rate-limit.write-qps:10}") double writeQps,
+                                @Value("${kubernetes.client.rate-limit.write-burst:20}") int writeBurst,
+                                @Value("${kubernetes.client.rate-limit.exec-qps:20}") double execQps,
+                                @Value("${kubernetes.client.rate-limit.exec-burst:40}") int execBurst) {
+        this.meterRegistry = meterRegistry;
+        limits.put(CallClass.READ, new double[]{readQps, readBurst});
+        limits.put(CallClass.WRITE, new double[]{writeQps, writeBurst});
+        limits.put(CallClass.EXEC, new double[]{execQps, execBurst});
+        log.info("Kubernetes rate limits per cluster: read={}qps/{}, write={}qps/{}, exec={}qps/{}",
+                readQps, readBurst, writeQps, writeBurst, execQps, execBurst);
+    }
+
+    /**
+     * Read calls (get/list) are always safe to retry
+     */
+    public <T> T read(String cluster, String verb, ApiCall<T> call) throws Exception {
+        return invoke(cluster, CallClass.READ, verb, true, call);
+    }
+
+    /**
+     * Write calls are only retried on transient errors when the caller marks them idempotent.
+     * A 429 is always retried because the API server rejected the request before applying it.
+     */
+    public <T> T write(String cluster, String verb, boolean idempotent, ApiCall<T> call) throws Exception {
+        return invoke(cluster, CallClass.WRITE, verb, idempotent, call);
+    }
+
+    /**
+     * Async {@link #write}: same rate limit, retries and metrics. Only the first permit is waited
+     * for on the calling thread; retries are scheduled after their backoff instead of sleeping
+     * on the HTTP client's callback thread.
+     */
+    public <T> CompletableFuture<T> writeAsync(String cluster, String verb, boolean idempotent,
+                                               AsyncApiCall<T> call) throws InterruptedException {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        acquire(cluster, CallClass.WRITE);
+        invokeAsync(cluster, verb, idempotent, call, 1, future);
+        return future;
+    }
+
+    /**
+     * Opening an exec stream runs a command, so it is never retried
+     */
+    public <T> T exec(String cluster, String verb, ApiCall<T> call) throws Exception {
+        return invoke(cluster, CallClass.EXEC, verb, false, call);
+    }
+
+    private <T> T invoke(String cluster, CallClass callClass, String verb, boolean idempotent, ApiCall<T> call) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            acquire(cluster, callClass);
+            long start = System.nanoTime();
+            try {
+                T result = call.call();
+                record(cluster, verb, "success", start);
+                return result;
+            } catch (ApiException e) {
+                record(cluster, verb, String.valueOf(e.getCode()), start);
+                if (!isRetryable(e, idempotent) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                long delay = backoffMillis(attempt, retryAfterMillis(e));
+                log.warn("Kubernetes {} on {} failed with status {} (attempt {}/{}), retrying in {}ms",
+                        verb, cluster, e.getCode(), attempt, maxAttempts, delay);
+                Thread.sleep(delay);
+            } catch (Exception e) {
+                record(cluster, verb, "error", start);
+                throw e;
+            }
+        }
+    }
+
+    private <T> void invokeAsync(String cluster, String verb, boolean idempotent, AsyncApiCall<T> call,
+                                 int attempt, CompletableFuture<T> future) {
+        long start = System.nanoTime();
+        try {
+            call.call(new ApiCallback<T>() {
+                @Override
+                public void onFailure(ApiException e, int statusCode, Map<String, List<String>> responseHeaders) {
+                    record(cluster, verb, String.valueOf(statusCode), start);
+                    if (!isRetryable(e, idempotent) || attempt >= maxAttempts) {
+                        future.completeExceptionally(e);
+                        return;
+                    }
+                    long delay = backoffMillis(attempt, retryAfterMillis(e));
+                    log.warn("Kubernetes {} on {} failed with status {} (attempt {}/{}), retrying in {}ms",
+                            verb, cluster, e.getCode(), attempt, maxAttempts, delay);
+                    CompletableFuture.runAsync(() -> {
+                        try {
+                            acquire(cluster, CallClass.WRITE);
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            future.completeExceptionally(ie);
+                            return;
+                        }
+                        invokeAsync(cluster, verb, idempotent, call, attempt + 1, future);
+                    }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+                }
+
+                @Override
+                public void onSuccess(T result, int statusCode, Map<String, List<String>> responseHeaders) {
+                    record(cluster, verb, "success", start);
+                    future.complete(result);
+                }
+
+                @Override
+                public void onUploadProgress(long bytesWritten, long contentLength, boolean done) {
+                }
+
+                @Override
+                public void onDownloadProgress(long bytesRead, long contentLength, boolean done) {
+                }
+            });
+        } catch (Exception e) {
+            record(cluster, verb, "error", start);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Blocks until the call class has capacity
+     */
+    public void acquire(String cluster, CallClass callClass) throws InterruptedException {
+        long waitedNanos = bucketsByCluster.computeIfAbsent(cluster, name -> newBuckets()).get(callClass).acquire();
+        if (waitedNanos > 0) {
+            meterRegistry.timer("kubernetes.client.throttle", "cluster", cluster, "class", callClass.name().toLowerCase())
+                    .record(waitedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void record(String cluster, String verb, String outcome, long startNanos) {
+        Timer.builder("kubernetes.api.requests")
+                .description("Latency of Kubernetes API calls")
+                .tag("cluster", cluster)
+                .tag("verb", verb)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Map<CallClass, TokenBucket> newBuckets() {
+        Map<CallClass, TokenBucket> buckets = new EnumMap<>(CallClass.class);
+        limits.forEach((callClass, limit) -> buckets.put(callClass, new TokenBucket(limit[0], (int) limit[1])));
+        return buckets;
+    }
+
+    private boolean isRetryable(ApiException e, boolean idempotent) {
+        if (e.getCode() == 429) {
+            return true;
+        }
+        return idempotent && RETRYABLE_STATUS.contains(e.getCode());
+    }
+
+    private long backoffMillis(int attempt, long retryAfterMillis) {
+        // Full jitter: uniform in [0, min(max, base * 2^(attempt-1))]
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        long jittered = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        return Math.max(jittered, retryAfterMillis);
+    }
+
+    private long retryAfterMillis(ApiException e) {
+        Map<String, List<String>> headers = e.getResponseHeaders();
+        if (headers == null) {
+            return 0;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if ("Retry-After".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                try {
+                    return Math.min(maxBackoffMs, Long.parseLong(header.getValue().get(0).trim()) * 1000);
+                } catch (NumberFormatException ignored) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Token bucket that lets callers reserve a permit ahead of time and sleep
+     * outside the lock until it becomes available.
+     */
+    static final class TokenBucket {
+
+        private final double permitsPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(double permitsPerSecond, int burst) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, burst);
+            this.tokens = this.capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        /**
+         * @return nanoseconds spent waiting for a permit
+         */
+        long acquire() throws InterruptedException {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+                lastRefillNanos = now;
+                tokens -= 1;
+                waitNanos = tokens >= 0 ? 0 : (long) (-tokens / permitsPerNano);
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            return waitNanos;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.be.service;
+
+import io.kubernetes.client.Exec;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+
+import com.example.be.model.Lab;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The clusters labs can run in, each with its own API and exec clients, and the namespaces
+ * new labs may be placed in. Built by {@link com.example.be.config.KubernetesClientConfig}.
+ * <p>
+ * A lab's cluster and namespace are recorded on the lab, so calls for existing labs go to where
+ * the pod was created even after a namespace is dropped from placement (to drain it).
+ */
+public class KubernetesClusters {
+
+    /**
+     * Where labs created before placement existed live
+     */
+    static final String LEGACY_NAMESPACE = "default";
+
+    /**
+     * Clients of one cluster
+     */
+    public static final class Cluster {
+        private final String name;
+        private final CoreV1Api api;
+        private final Exec exec;
+        private final List<String> namespaces;
+
+        public Cluster(String name, CoreV1Api api, Exec exec, List<String> namespaces) {
+            this.name = name;
+            this.api = api;
+            this.exec = exec;
+            this.namespaces = List.copyOf(namespaces);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public CoreV1Api getApi() {
+            return api;
+        }
+
+        public Exec getExec() {
+            return exec;
+        }
+
+        public List<String> getNamespaces() {
+            return namespaces;
+        }
+    }
+
+    /**
+     * A cluster and namespace a lab pod lives in
+     */
+    public static final class Target {
+        private final String cluster;
+        private final String namespace;
+
+        public Target(String cluster, String namespace) {
+            this.cluster = cluster;
+            this.namespace = namespace;
+        }
+
+        public String getCluster() {
+            return cluster;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Target)) {
+                return false;
+            }
+            Target other = (Target) o;
+            return cluster.equals(other.cluster) && namespace.equals(other.namespace);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cluster, namespace);
+        }
+
+        @Override
+        public String toString() {
+            return cluster + "/" + namespace;
+        }
+    }
+
+    private final Map<String, Cluster> clusters = new LinkedHashMap<>();
+    private final List<Target> targets = new ArrayList<>();
+
+    public KubernetesClusters(List<Cluster> clusters) {
+        if (clusters.isEmpty()) {
+            throw new IllegalArgumentException("At least one Kubernetes cluster must be configured");
+        }
+        for (Cluster cluster : clusters) {
+            this.clusters.put(cluster.getName(), cluster);
+            cluster.getNamespaces().forEach(namespace -> targets.add(new Target(cluster.getName(), namespace)));
+        }
+    }
+
+    public Cluster cluster(String name) {
+        Cluster cluster = clusters.get(name);
+        if (cluster == null) {
+            throw new IllegalStateException("Unknown Kubernetes cluster: " + name);
+        }
+        return cluster;
+    }
+
+    public Collection<Cluster> clusters() {
+        return Collections.unmodifiableCollection(clusters.values());
+    }
+
+    /**
+     * Targets new labs may be placed in
+     */
+    public List<Target> targets() {
+        return Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * Where the lab's pod lives; labs without a recorded target are in the legacy namespace of
+     * the first cluster
+     */
+    public Target targetOf(Lab lab) {
+        return targetOf(lab.getClusterName(), lab.getNamespace());
+    }
+
+    public Target targetOf(String clusterName, String namespace) {
+        return new Target(clusterName == null ? clusters.keySet().iterator().next() : clusterName,
+                namespace == null ? LEGACY_NAMESPACE : namespace);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import com.example.be.dto.CommandResultResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs commands through the Kubernetes exec subresource (API server -> kubelet -> runtime).
+ * Works for every pod, so it is also the fallback when the in-pod agent is not reachable.
+ */
+@Slf4j
+@Component
+public class KubernetesExecCommandExecutor implements CommandExecutor {
+
+    private static final long STREAM_DRAIN_MILLIS = 5000;
+
+    private final KubernetesClusters clusters;
+    private final KubernetesApiGateway gateway;
+
+    public KubernetesExecCommandExecutor(KubernetesClusters clusters, KubernetesApiGateway gateway) {
+        this.clusters = clusters;
+        this.gateway = gateway;
+    }
+
+    @Override
+    public String name() {
+        return "kubernetes-exec";
+    }
+
+    @Override
+    public CommandResultResponse execute(KubernetesClusters.Target target, String podName, String command,
+                                         int timeoutSeconds, String workingDirectory) throws Exception {
+        // Build command with working directory change if needed
+        String fullCommand = command;
+        if (workingDirectory != null && !workingDirectory.equals("/")) {
+            fullCommand = "cd " + workingDirectory + " && " + command;
+        }
+
+        String[] commandParts = {"/bin/sh", "-c", fullCommand};
+
+        // Create output streams to capture result
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        // Execute command with proper stream handling
+        Process proc = gateway.exec(target.getCluster(), "pod.exec", () -> clusters.cluster(target.getCluster()).getExec().exec(
+            target.getNamespace(),
+            podName,
+            commandParts,
+            "lab-container",  // container name
+            false,  // stdin
+            false   // tty - set to false to avoid WebSocket issues
+        ));
+
+        // One scope per exec: both pumps run on virtual threads owned by this call, and closing
+        // the executor waits for them, so nothing outlives the exec whichever way it ends
+        boolean finished = false;
+        try (ExecutorService pumps = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> stdoutPump = pumps.submit(() -> pump(proc.getInputStream(), stdout));
+            Future<?> stderrPump = pumps.submit(() -> pump(proc.getErrorStream(), stderr));
+            try {
+                // Interrupted when the exec is cancelled
+                finished = proc.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+                if (finished) {
+                    // The exit status can arrive before the last output frames
+                    awaitQuietly(stdoutPump, STREAM_DRAIN_MILLIS);
+                    awaitQuietly(stderrPump, STREAM_DRAIN_MILLIS);
+                }
+            } finally {
+                if (!finished) {
+                    // Closes the WebSocket, which ends both streams
+                    proc.destroyForcibly();
+                }
+                closeQuietly(proc.getInputStream());
+                closeQuietly(proc.getErrorStream());
+                // A pump still blocked on a dead stream is interrupted rather than waited for
+                pumps.shutdownNow();
+            }
+        }
+
+        int exitCode = finished ? proc.exitValue() : -1;
+        String output = stdout.toString(StandardCharsets.UTF_8);
+        String error = stderr.toString(StandardCharsets.UTF_8);
+
+        if (!finished) {
+            error = "Command timed out after " + timeoutSeconds + " seconds";
+            exitCode = -1;
+        }
+
+        log.info("Command executed. Exit code: {}, Output length: {}, Error length: {}",
+                exitCode, output.length(), error.length());
+
+        return CommandResultResponse.builder()
+                .command(command)
+                .output(output)
+                .error(error)
+                .exitCode(exitCode)
+                .success(exitCode == 0)
+                .timedOut(!finished)
+                .build();
+    }
+
+    private static void pump(InputStream in, ByteArrayOutputStream out) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.transferTo(out);
+        } catch (IOException e) {
+            // Expected when the exec is torn down mid-stream
+            log.debug("Exec stream closed: {}", e.getMessage());
+        }
+    }
+
+    private static void awaitQuietly(Future<?> pump, long millis) throws InterruptedException {
+        try {
+            pump.get(millis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Exec stream did not drain: {}", e.toString());
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Failed to close exec stream: {}", e.getMessage());
+        }
+    }
+}
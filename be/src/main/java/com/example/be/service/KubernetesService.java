@@ -1,67 +1,142 @@
 package com.example.be.service;
 
-import io.kubernetes.client.Exec;
-import io.kubernetes.client.openapi.ApiClient;
-import io.kubernetes.client.openapi.Configuration;
+import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.apis.CoreV1Api;
 import io.kubernetes.client.openapi.models.*;
-import io.kubernetes.client.util.Config;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.example.be.dto.CreateLabRequest;
 import com.example.be.dto.CommandResultResponse;
+import com.example.be.model.Lab;
 import com.example.be.model.LabTemplate;
+import com.example.be.util.TimeOrderedIds;
 
-import javax.annotation.PostConstruct;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
 public class KubernetesService {
 
-    private CoreV1Api api;
-    private ApiClient client;
-    private static final String NAMESPACE = "default";
-
-    @PostConstruct
-    public void init() throws Exception {
-        client = Config.defaultClient();
-        Configuration.setDefaultApiClient(client);
-        api = new CoreV1Api();
+    private final KubernetesClusters clusters;
+    private final KubernetesApiGateway gateway;
+    private final LabPodPrototypes podPrototypes;
+    private final KubernetesExecCommandExecutor kubernetesExecutor;
+    private final AgentCommandExecutor agentExecutor;
+    private final LabAgentAccess agentAccess;
+    private final LabExecLimiter execLimiter;
+    private final ImageLocality imageLocality;
+
+    @Value("${lab.exec.agent.enabled:false}")
+    private boolean agentEnabled;
+
+    public KubernetesService(KubernetesClusters clusters,
+                             KubernetesApiGateway gateway,
+                             LabPodPrototypes podPrototypes,
+                             KubernetesExecCommandExecutor kubernetesExecutor,
+                             AgentCommandExecutor agentExecutor,
+                             LabAgentAccess agentAccess,
+                             LabExecLimiter execLimiter,
+                             ImageLocality imageLocality) {
+        this.clusters = clusters;
+        this.gateway = gateway;
+        this.podPrototypes = podPrototypes;
+        this.kubernetesExecutor = kubernetesExecutor;
+        this.agentExecutor = agentExecutor;
+        this.agentAccess = agentAccess;
+        this.execLimiter = execLimiter;
+        this.imageLocality = imageLocality;
         log.info("Kubernetes client initialized");
     }
 
-    public String createLabPod(String labId, CreateLabRequest request) throws Exception {
+    /**
+     * Name of a lab's pod. Fixed by the lab id, which makes repeated creates and deletes idempotent.
+     */
+    public static String labPodName(UUID labId) {
+        return TimeOrderedIds.podName("lab", labId);
+    }
+
+    public boolean supportsLabType(String labType) {
+        return labType != null && getLabImages().containsKey(labType);
+    }
+
+    /**
+     * Where the lab's pod lives
+     */
+    public KubernetesClusters.Target targetOf(Lab lab) {
+        return clusters.targetOf(lab);
+    }
+
+    public String createLabPod(KubernetesClusters.Target target, UUID labId, CreateLabRequest request) throws Exception {
         V1Pod pod = buildLabPod(labId, request);
-        V1Pod createdPod = api.createNamespacedPod(NAMESPACE, pod, null, null, null, null);
+        V1Pod createdPod = gateway.write(target.getCluster(), "pod.create", false,
+                () -> api(target).createNamespacedPod(target.getNamespace(), pod, null, null, null, null));
         
         String podName = createdPod.getMetadata().getName();
-        log.info("Pod created: {}", podName);
+        log.info("Pod created: {} in {}", podName, target);
         return podName;
     }
 
-    public String createLabPodFromTemplate(String labId, LabTemplate template) throws Exception {
-        V1Pod pod = buildLabPodFromTemplate(labId, template);
-        V1Pod createdPod = api.createNamespacedPod(NAMESPACE, pod, null, null, null, null);
+    public String createLabPodFromTemplate(KubernetesClusters.Target target, UUID labId, LabTemplate template) throws Exception {
+        V1Pod pod = buildLabPodFromTemplate(target, labId, template);
+        prepareAgent(target, pod);
+        V1Pod createdPod = gateway.write(target.getCluster(), "pod.create", false,
+                () -> api(target).createNamespacedPod(target.getNamespace(), pod, null, null, null, null));
         
         String podName = createdPod.getMetadata().getName();
-        log.info("Pod created from template: {} for lab: {}", template.getName(), podName);
+        log.info("Pod created from template: {} for lab: {} in {}", template.getName(), podName, target);
         return podName;
     }
 
-    public void deletePod(String podName) throws Exception {
-        api.deleteNamespacedPod(podName, NAMESPACE, null, null, null, null, null, null);
-        log.info("Pod deleted: {}", podName);
+    /**
+     * Creates a lab pod through the async API so callers can keep many creates in flight
+     * without holding a thread per request. Completes with the created pod name.
+     */
+    public CompletableFuture<String> createLabPodFromTemplateAsync(KubernetesClusters.Target target, UUID labId,
+                                                                   LabTemplate template) throws Exception {
+        V1Pod pod = buildLabPodFromTemplate(target, labId, template);
+        prepareAgent(target, pod);
+        // A create is not idempotent, so only a 429 (rejected before it was applied) is retried
+        return gateway.<V1Pod>writeAsync(target.getCluster(), "pod.create", false,
+                        callback -> api(target).createNamespacedPodAsync(target.getNamespace(), pod, null, null, null, null, callback))
+                .thenApply(result -> {
+                    log.info("Pod created from template: {} for lab: {} in {}", template.getName(), result.getMetadata().getName(), target);
+                    return result.getMetadata().getName();
+                });
+    }
+
+    public void deletePod(KubernetesClusters.Target target, String podName) throws Exception {
+        agentExecutor.evict(podName);
+        try {
+            gateway.write(target.getCluster(), "pod.delete", true,
+                    () -> api(target).deleteNamespacedPod(podName, target.getNamespace(), null, null, null, null, null, null));
+            log.info("Pod deleted: {} in {}", podName, target);
+        } finally {
+            // Also when the pod was already gone (404)
+            if (agentEnabled) {
+                agentAccess.release(target, podName);
+            }
+        }
+    }
+
+    /**
+     * Lists every lab pod in one namespace with a single call
+     */
+    public List<V1Pod> listLabPods(KubernetesClusters.Target target) throws Exception {
+        V1PodList pods = gateway.read(target.getCluster(), "pod.list",
+                () -> api(target).listNamespacedPod(target.getNamespace(), null, null, null, null, "app=lab", null, null, null, null, null));
+        return pods.getItems();
     }
 
-    public String getPodStatus(String podName) throws Exception {
-        V1Pod pod = api.readNamespacedPod(podName, NAMESPACE, null);
+    public String getPodStatus(KubernetesClusters.Target target, String podName) throws Exception {
+        V1Pod pod = gateway.read(target.getCluster(), "pod.get",
+                () -> api(target).readNamespacedPod(podName, target.getNamespace(), null));
         String phase = pod.getStatus().getPhase();
         
         // Convert Kubernetes phase to user-friendly status
@@ -78,119 +153,86 @@ public class KubernetesService {
         }
     }
 
-    public CommandResultResponse executeCommand(String podName, String command) throws Exception {
-        return executeCommand(podName, command, 30, "/");
+    public CommandResultResponse executeCommand(KubernetesClusters.Target target, String podName, String command) throws Exception {
+        return executeCommand(target, podName, command, LabExecLimiter.Priority.INTERACTIVE);
     }
 
-    public CommandResultResponse executeSetupCommand(String podName, String command, int timeoutSeconds, String workingDirectory) throws Exception {
-        return executeCommand(podName, command, timeoutSeconds, workingDirectory);
+    /**
+     * Runs a short command in the lab's per-pod queue of the given class
+     *
+     * @throws LabExecLimiter.LabBusyException when the lab stays saturated for the class's queue timeout
+     */
+    public CommandResultResponse executeCommand(KubernetesClusters.Target target, String podName, String command,
+                                                LabExecLimiter.Priority priority) throws Exception {
+        try (LabExecLimiter.Permit permit = execLimiter.acquire(podName, priority, 30)) {
+            return executeCommand(target, podName, command, 30, "/");
+        }
     }
 
-    private CommandResultResponse executeCommand(String podName, String command, int timeoutSeconds, String workingDirectory) throws Exception {
+    public CommandResultResponse executeSetupCommand(KubernetesClusters.Target target, String podName, String command,
+                                                     int timeoutSeconds, String workingDirectory) throws Exception {
+        try (LabExecLimiter.Permit permit = execLimiter.acquire(podName, LabExecLimiter.Priority.SETUP, timeoutSeconds)) {
+            return executeCommand(target, podName, command, timeoutSeconds, workingDirectory);
+        }
+    }
+
+    private CommandResultResponse executeCommand(KubernetesClusters.Target target, String podName, String command,
+                                                 int timeoutSeconds, String workingDirectory) throws Exception {
         log.info("Executing command '{}' in pod '{}' with timeout {}s", command, podName, timeoutSeconds);
+
+        // Prefer the in-pod agent; it skips the API server entirely
+        if (agentEnabled) {
+            try {
+                return agentExecutor.execute(target, podName, command, timeoutSeconds, workingDirectory);
+            } catch (AgentCommandExecutor.AgentUnavailableException e) {
+                log.debug("Lab agent unavailable for pod {}, falling back to Kubernetes exec: {}", podName, e.getMessage());
+            } catch (Exception e) {
+                log.error("Failed to execute command through agent in pod {}: {}", podName, e.getMessage(), e);
+                return failedResult(command, "Failed to execute command: " + e.getMessage());
+            }
+        }
         
         // Check if pod is running
-        V1Pod pod = api.readNamespacedPod(podName, NAMESPACE, null);
+        V1Pod pod = gateway.read(target.getCluster(), "pod.get",
+                () -> api(target).readNamespacedPod(podName, target.getNamespace(), null));
         if (!"Running".equals(pod.getStatus().getPhase())) {
-            return CommandResultResponse.builder()
-                    .command(command)
-                    .output("")
-                    .error("Pod is not in running state. Current status: " + pod.getStatus().getPhase())
-                    .exitCode(-1)
-                    .success(false)
-                    .build();
+            return failedResult(command, "Pod is not in running state. Current status: " + pod.getStatus().getPhase());
         }
 
         try {
-            Exec exec = new Exec();
-            
-            // Build command with working directory change if needed
-            String fullCommand = command;
-            if (workingDirectory != null && !workingDirectory.equals("/")) {
-                fullCommand = "cd " + workingDirectory + " && " + command;
-            }
-            
-            String[] commandParts = {"/bin/sh", "-c", fullCommand};
-            
-            // Create output streams to capture result
-            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
-            
-            // Execute command with proper stream handling
-            Process proc = exec.exec(
-                NAMESPACE, 
-                podName, 
-                commandParts, 
-                "lab-container",  // container name
-                false,  // stdin
-                false   // tty - set to false to avoid WebSocket issues
-            );
-
-            // Use separate threads to read streams to avoid blocking
-            Thread stdoutThread = new Thread(() -> {
-                try {
-                    if (proc.getInputStream() != null) {
-                        proc.getInputStream().transferTo(stdout);
-                    }
-                } catch (IOException e) {
-                    log.warn("Error reading stdout: {}", e.getMessage());
-                }
-            });
-
-            Thread stderrThread = new Thread(() -> {
-                try {
-                    if (proc.getErrorStream() != null) {
-                        proc.getErrorStream().transferTo(stderr);
-                    }
-                } catch (IOException e) {
-                    log.warn("Error reading stderr: {}", e.getMessage());
-                }
-            });
-
-            stdoutThread.start();
-            stderrThread.start();
-            
-            // Wait for completion with timeout
-            boolean finished = proc.waitFor(timeoutSeconds, TimeUnit.SECONDS);
-            
-            // Wait for stream reading to complete
-            stdoutThread.join(5000);
-            stderrThread.join(5000);
-            
-            int exitCode = finished ? proc.exitValue() : -1;
-            String output = stdout.toString("UTF-8");
-            String error = stderr.toString("UTF-8");
-            
-            if (!finished) {
-                proc.destroyForcibly();
-                error = "Command timed out after " + timeoutSeconds + " seconds";
-                exitCode = -1;
-            }
-            
-            log.info("Command executed. Exit code: {}, Output length: {}, Error length: {}", 
-                    exitCode, output.length(), error.length());
-            
-            return CommandResultResponse.builder()
-                    .command(command)
-                    .output(output)
-                    .error(error)
-                    .exitCode(exitCode)
-                    .success(exitCode == 0)
-                    .build();
-                    
+            return kubernetesExecutor.execute(target, podName, command, timeoutSeconds, workingDirectory);
         } catch (Exception e) {
             log.error("Failed to execute command in pod {}: {}", podName, e.getMessage(), e);
-            return CommandResultResponse.builder()
-                    .command(command)
-                    .output("")
-                    .error("Failed to execute command: " + e.getMessage())
-                    .exitCode(-1)
-                    .success(false)
-                    .build();
+            return failedResult(command, "Failed to execute command: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The pod's agent token Secret has to exist before the kubelet can start the sidecar
+     */
+    private void prepareAgent(KubernetesClusters.Target target, V1Pod pod) throws Exception {
+        String podName = pod.getMetadata().getName();
+        agentExecutor.evict(podName);
+        if (agentEnabled) {
+            agentAccess.prepare(target, podName);
         }
     }
 
-    private V1Pod buildLabPod(String labId, CreateLabRequest request) {
+    private CoreV1Api api(KubernetesClusters.Target target) {
+        return clusters.cluster(target.getCluster()).getApi();
+    }
+
+    private CommandResultResponse failedResult(String command, String error) {
+        return CommandResultResponse.builder()
+                .command(command)
+                .output("")
+                .error(error)
+                .exitCode(-1)
+                .success(false)
+                .build();
+    }
+
+    private V1Pod buildLabPod(UUID labId, CreateLabRequest request) {
         Map<String, String> labImages = getLabImages();
         String image = labImages.get(request.getLabType());
         
@@ -205,7 +247,7 @@ public class KubernetesService {
                 .env(List.of(
                         new V1EnvVar().name("LAB_TYPE").value(request.getLabType()),
                         new V1EnvVar().name("USER_ID").value(request.getUserId()),
-                        new V1EnvVar().name("LAB_ID").value(labId)
+                        new V1EnvVar().name("LAB_ID").value(labId.toString())
                 ));
 
         // Add volume mounts for docker labs
@@ -231,90 +273,28 @@ public class KubernetesService {
         labels.put("app", "lab");
         labels.put("userId", request.getUserId());
         labels.put("labType", request.getLabType());
-        labels.put("labId", labId);
+        labels.put("labId", labId.toString());
 
         return new V1Pod()
                 .metadata(new V1ObjectMeta()
-                        .name(labId)
+                        .name(labPodName(labId))
                         .labels(labels))
                 .spec(spec);
     }
 
    
 
-private V1Pod buildLabPodFromTemplate(String labId, LabTemplate template) {
-    V1Container container = new V1Container()
-            .name("lab-container")
-            .image(template.getBaseImage())
-            .command(getTemplateContainerCommand(template.getLabType()))
-            .env(List.of(
-                    new V1EnvVar().name("LAB_TYPE").value(template.getLabType()),
-                    new V1EnvVar().name("LAB_ID").value(labId),
-                    new V1EnvVar().name("TEMPLATE_ID").value(template.getId()),
-                    // Add environment variables for JohnDoe template
-                    new V1EnvVar().name("DEBIAN_FRONTEND").value("noninteractive")
-            ))
-            .resources(new V1ResourceRequirements()
-                    .putLimitsItem("memory", new io.kubernetes.client.custom.Quantity("1Gi"))  // Increased for JohnDoe
-                    .putLimitsItem("cpu", new io.kubernetes.client.custom.Quantity("500m"))
-                    .putRequestsItem("memory", new io.kubernetes.client.custom.Quantity("512Mi"))
-                    .putRequestsItem("cpu", new io.kubernetes.client.custom.Quantity("200m")));
-
-    // Add workspace volume mount
-    container.addVolumeMountsItem(new V1VolumeMount()
-            .name("workspace")
-            .mountPath("/workspace"));
-
-    // Add volume mounts for docker labs
-    if ("docker".equals(template.getLabType())) {
-        container.addVolumeMountsItem(new V1VolumeMount()
-                .name("docker-sock")
-                .mountPath("/var/run/docker.sock"));
+    /**
+     * The template's prototype, preferring nodes of the target cluster that already hold the base image
+     */
+    private V1Pod buildLabPodFromTemplate(KubernetesClusters.Target target, UUID labId, LabTemplate template) {
+        V1Pod pod = podPrototypes.instantiate(labId, template);
+        V1Affinity affinity = imageLocality.preferNodesWithImage(target.getCluster(), template.getBaseImage());
+        pod.getSpec().setAffinity(affinity);
+        pod.getMetadata().getLabels().put(ImageLocality.PREFERRED_LABEL, String.valueOf(affinity != null));
+        return pod;
     }
 
-    // Special configuration for JohnDoe template
-    if ("johndoe".equals(template.getLabType())) {
-        // Add privileged access for user management
-        container.securityContext(new V1SecurityContext()
-                .privileged(false)
-                .runAsUser(0L)  // Run as root initially to create users
-                .allowPrivilegeEscalation(true));
-    }
-
-    V1PodSpec spec = new V1PodSpec()
-            .containers(List.of(container))
-            .restartPolicy("Never")
-            .activeDeadlineSeconds((long) (template.getDurationMinutes() * 60));
-
-    // Add workspace volume
-    spec.addVolumesItem(new V1Volume()
-            .name("workspace")
-            .emptyDir(new V1EmptyDirVolumeSource()));
-
-    // Add volumes for docker labs
-    if ("docker".equals(template.getLabType())) {
-        spec.addVolumesItem(new V1Volume()
-                .name("docker-sock")
-                .hostPath(new V1HostPathVolumeSource().path("/var/run/docker.sock")));
-    }
-
-    Map<String, String> labels = new HashMap<>();
-    labels.put("app", "lab");
-    labels.put("template", template.getId());
-    labels.put("labType", template.getLabType());
-    labels.put("labId", labId);
-
-    return new V1Pod()
-            .metadata(new V1ObjectMeta()
-                    .name(labId)
-                    .labels(labels))
-            .spec(spec);
-}
-
-
-
-
-
     private Map<String, String> getLabImages() {
         Map<String, String> images = new HashMap<>();
         images.put("docker", "ubuntu:20.04");
@@ -338,28 +318,4 @@ private V1Pod buildLabPodFromTemplate(String labId, LabTemplate template) {
                 return List.of("/bin/sh", "-c", "sleep 7200");
         }
     }
-
-   
-    private List<String> getTemplateContainerCommand(String labType) {
-    // Keep container alive while setup process runs
-    switch (labType) {
-        case "docker":
-            return List.of("/bin/bash", "-c", "sleep infinity");
-        case "python":
-            return List.of("/bin/sh", "-c", "sleep infinity");
-        case "nodejs":
-            return List.of("/bin/sh", "-c", "sleep infinity");
-        case "johndoe":
-            // For JohnDoe template, we want to ensure the container starts properly and keeps running
-            return List.of("/bin/bash", "-c", 
-                "apt-get update -y && " +
-                "apt-get install -y sudo adduser && " +
-                "service ssh start 2>/dev/null || true && " +
-                "tail -f /dev/null");
-        case "kubernetes":
-            return List.of("/bin/sh", "-c", "sleep infinity");
-        default:
-            return List.of("/bin/sh", "-c", "sleep infinity");
-    }
 }
-}
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.example.be.service;
+
+import io.kubernetes.client.custom.IntOrString;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.apis.NetworkingV1Api;
+import io.kubernetes.client.openapi.models.V1LabelSelector;
+import io.kubernetes.client.openapi.models.V1NetworkPolicy;
+import io.kubernetes.client.openapi.models.V1NetworkPolicyIngressRule;
+import io.kubernetes.client.openapi.models.V1NetworkPolicyPeer;
+import io.kubernetes.client.openapi.models.V1NetworkPolicyPort;
+import io.kubernetes.client.openapi.models.V1NetworkPolicySpec;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Credentials and network access of the lab agent.
+ * <p>
+ * Every lab pod gets its own token, HMAC-SHA256 of the pod name under {@code token-key}, so any
+ * replica can compute it without storing it and a token read inside one lab is useless against
+ * another. The token lives in a per-pod Secret that is mounted into the agent sidecar only.
+ * A NetworkPolicy per lab namespace admits the agent port from the backend pods alone and leaves
+ * every other port of the lab pods open as before.
+ */
+@Slf4j
+@Component
+public class LabAgentAccess {
+
+    static final String TOKEN_KEY = "token";
+    private static final String POLICY_NAME = "lab-agent-ingress";
+
+    private final KubernetesClusters clusters;
+    private final KubernetesApiGateway gateway;
+
+    private final Map<String, NetworkingV1Api> networkingApis = new ConcurrentHashMap<>();
+    private final Set<KubernetesClusters.Target> policiesEnsured = ConcurrentHashMap.newKeySet();
+
+    @Value("${lab.exec.agent.enabled:false}")
+    private boolean enabled;
+
+    @Value("${lab.exec.agent.port:7070}")
+    private int port;
+
+    // Backend-only secret the per-lab tokens are derived from; the same on every replica
+    @Value("${lab.exec.agent.token-key:}")
+    private String tokenKey;
+
+    // "key=value,..." labels of the backend pods, the only peers allowed on the agent port
+    @Value("${lab.exec.agent.backend-pod-labels:app=lab-backend}")
+    private String backendPodLabels;
+
+    // Namespace of the backend pods; empty = the lab namespace itself
+    @Value("${lab.exec.agent.backend-namespace:}")
+    private String backendNamespace;
+
+    public LabAgentAccess(KubernetesClusters clusters, KubernetesApiGateway gateway) {
+        this.clusters = clusters;
+        this.gateway = gateway;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled && tokenKey.isBlank()) {
+            throw new IllegalStateException("lab.exec.agent.token-key must be set when the lab agent is enabled");
+        }
+    }
+
+    /**
+     * Name of the Secret holding a pod's agent token
+     */
+    public static String secretName(String podName) {
+        return podName + "-agent";
+    }
+
+    public String tokenFor(String podName) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(tokenKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(podName.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates the pod's token Secret and, once per namespace, the agent NetworkPolicy. Both are
+     * idempotent, so a repeated create after a crash or a 409 on the pod is harmless.
+     */
+    public void prepare(KubernetesClusters.Target target, String podName) throws Exception {
+        ensureNetworkPolicy(target);
+        V1Secret secret = new V1Secret()
+                .metadata(new V1ObjectMeta()
+                        .name(secretName(podName))
+                        .labels(Map.of("app", "lab", "lab-agent", "true")))
+                .type("Opaque")
+                .stringData(Map.of(TOKEN_KEY, tokenFor(podName)));
+        try {
+            gateway.write(target.getCluster(), "secret.create", false,
+                    () -> clusters.cluster(target.getCluster()).getApi()
+                            .createNamespacedSecret(target.getNamespace(), secret, null, null, null, null));
+        } catch (ApiException e) {
+            // Same pod name, same token
+            if (e.getCode() != 409) {
+                throw e;
+            }
+        }
+    }
+
+    public void release(KubernetesClusters.Target target, String podName) throws Exception {
+        try {
+            gateway.write(target.getCluster(), "secret.delete", true,
+                    () -> clusters.cluster(target.getCluster()).getApi().deleteNamespacedSecret(
+                            secretName(podName), target.getNamespace(), null, null, null, null, null, null));
+        } catch (ApiException e) {
+            if (e.getCode() != 404) {
+                throw e;
+            }
+        }
+    }
+
+    private void ensureNetworkPolicy(KubernetesClusters.Target target) {
+        if (policiesEnsured.contains(target)) {
+            return;
+        }
+        NetworkingV1Api networking = networkingApis.computeIfAbsent(target.getCluster(),
+                name -> new NetworkingV1Api(clusters.cluster(name).getApi().getApiClient()));
+        try {
+            gateway.write(target.getCluster(), "networkpolicy.create", false,
+                    () -> networking.createNamespacedNetworkPolicy(target.getNamespace(), networkPolicy(), null, null, null, null));
+            log.info("Created NetworkPolicy {} in {}", POLICY_NAME, target);
+            policiesEnsured.add(target);
+        } catch (ApiException e) {
+            if (e.getCode() == 409) {
+                policiesEnsured.add(target);
+            } else {
+                // Tokens still keep labs apart; retried with the next pod
+                log.warn("Failed to create NetworkPolicy {} in {}: HTTP {}", POLICY_NAME, target, e.getCode());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to create NetworkPolicy {} in {}: {}", POLICY_NAME, target, e.getMessage());
+        }
+    }
+
+    private V1NetworkPolicy networkPolicy() {
+        V1NetworkPolicyPeer backend = new V1NetworkPolicyPeer()
+                .podSelector(new V1LabelSelector().matchLabels(labels(backendPodLabels)));
+        if (!backendNamespace.isBlank()) {
+            backend.namespaceSelector(new V1LabelSelector()
+                    .matchLabels(Map.of("kubernetes.io/metadata.name", backendNamespace)));
+        }
+
+        // Policies only ever add allowed traffic, so "everything but the agent port" is spelled out
+        List<V1NetworkPolicyPort> otherPorts = new ArrayList<>();
+        if (port > 1) {
+            otherPorts.add(portRange("TCP", 1, port - 1));
+        }
+        if (port < 65535) {
+            otherPorts.add(portRange("TCP", port + 1, 65535));
+        }
+        otherPorts.add(portRange("UDP", 1, 65535));
+
+        return new V1NetworkPolicy()
+                .metadata(new V1ObjectMeta().name(POLICY_NAME))
+                .spec(new V1NetworkPolicySpec()
+                        .podSelector(new V1LabelSelector().matchLabels(Map.of("lab-agent", "true")))
+                        .policyTypes(List.of("Ingress"))
+                        .ingress(List.of(
+                                new V1NetworkPolicyIngressRule()
+                                        .from(List.of(backend))
+                                        .ports(List.of(new V1NetworkPolicyPort().protocol("TCP").port(new IntOrString(port)))),
+                                new V1NetworkPolicyIngressRule().ports(otherPorts))));
+    }
+
+    private static V1NetworkPolicyPort portRange(String protocol, int from, int to) {
+        V1NetworkPolicyPort range = new V1NetworkPolicyPort().protocol(protocol).port(new IntOrString(from));
+        return from == to ? range : range.endPort(to);
+    }
+
+    private static Map<String, String> labels(String value) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        for (String pair : value.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Invalid backend pod label: " + pair);
+            }
+            labels.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+        }
+        return labels;
+    }
+}
@@ -11,12 +11,17 @@ import org.springframework.stereotype.Service;
 public class LabCleanupScheduler {
 
     private final LabService labService;
+    private final LeaderElection leaderElection;
 
     /**
      * Cleanup expired labs every 5 minutes
      */
     @Scheduled(fixedRate = 300000) // 5 minutes in milliseconds
     public void cleanupExpiredLabs() {
+        if (!leaderElection.isLeader(LeaderElection.MAINTENANCE)) {
+            log.debug("Skipping scheduled cleanup, another replica is leader");
+            return;
+        }
         try {
             log.debug("Running scheduled cleanup of expired labs...");
             labService.cleanupExpiredLabs();
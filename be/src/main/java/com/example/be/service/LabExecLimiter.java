@@ -0,0 +1,258 @@
+package com.example.be.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps concurrent execs per lab pod, on top of the cluster-wide exec rate limit in
+ * {@link KubernetesApiGateway}.
+ * <p>
+ * Waiting execs are admitted by priority class: a free slot always goes to a waiting setup
+ * command before grading, and to grading before interactive commands. Interactive commands may
+ * only use part of the slots, so a user hammering the terminal can never starve setup, and they
+ * wait only briefly before being rejected with {@link LabBusyException}.
+ * <p>
+ * The queue above orders the execs of this replica. Once admitted here, an exec also takes one of
+ * the lab's slots in {@link LabExecSlots}, which every replica shares, so {@code max-concurrent-per-lab}
+ * and {@code max-interactive-per-lab} hold for the lab as a whole. Across replicas the classes are
+ * kept apart by slot number rather than by queue order. If the database is unreachable the shared
+ * check is skipped and only the per-replica limit applies.
+ */
+@Slf4j
+@Component
+public class LabExecLimiter {
+
+    /**
+     * Ordered from highest to lowest priority
+     */
+    public enum Priority {
+        SETUP, GRADING, INTERACTIVE
+    }
+
+    /**
+     * Thrown when no slot became free within the class's queue timeout; the command was not started
+     */
+    public static class LabBusyException extends RuntimeException {
+        public LabBusyException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Held for the duration of one exec
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final long SLOT_LEASE_MARGIN_MS = 30000;
+    private static final long MIN_SLOT_BACKOFF_MS = 25;
+    private static final long MAX_SLOT_BACKOFF_MS = 500;
+
+    private final MeterRegistry meterRegistry;
+    private final LabExecSlots sharedSlots;
+    private final Map<String, LabSlots> slotsByPod = new ConcurrentHashMap<>();
+
+    @Value("${lab.exec.max-concurrent-per-lab:3}")
+    private int maxConcurrent;
+
+    @Value("${lab.exec.max-interactive-per-lab:2}")
+    private int maxInteractive;
+
+    @Value("${lab.exec.queue-timeout-ms.setup:120000}")
+    private long setupQueueTimeoutMs;
+
+    @Value("${lab.exec.queue-timeout-ms.grading:30000}")
+    private long gradingQueueTimeoutMs;
+
+    @Value("${lab.exec.queue-timeout-ms.interactive:250}")
+    private long interactiveQueueTimeoutMs;
+
+    @Value("${lab.exec.shared-limit.enabled:true}")
+    private boolean sharedLimitEnabled;
+
+    public LabExecLimiter(MeterRegistry meterRegistry, LabExecSlots sharedSlots) {
+        this.meterRegistry = meterRegistry;
+        this.sharedSlots = sharedSlots;
+    }
+
+    /**
+     * @param timeoutSeconds exec timeout, bounds how long a shared slot is held if this replica dies
+     */
+    public Permit acquire(String podName, Priority priority, int timeoutSeconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs(priority));
+        while (true) {
+            LabSlots slots = slotsByPod.computeIfAbsent(podName, name -> new LabSlots());
+            Boolean acquired = slots.acquire(priority, deadline);
+            if (acquired == null) {
+                // Retired by its last user between lookup and lock, take the replacement
+                continue;
+            }
+            if (!acquired) {
+                throw rejected(podName, priority);
+            }
+            LabExecSlots.Claim claim;
+            try {
+                claim = claimShared(podName, priority, timeoutSeconds, deadline);
+            } catch (RuntimeException | InterruptedException e) {
+                release(podName, slots, priority);
+                throw e;
+            }
+            return () -> {
+                if (claim != null) {
+                    sharedSlots.release(claim);
+                }
+                release(podName, slots, priority);
+            };
+        }
+    }
+
+    /**
+     * @return the shared slot, or null when the shared limit is off or the database is unreachable
+     */
+    private LabExecSlots.Claim claimShared(String podName, Priority priority, int timeoutSeconds, long deadline)
+            throws InterruptedException {
+        if (!sharedLimitEnabled) {
+            return null;
+        }
+        long leaseMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds) + SLOT_LEASE_MARGIN_MS;
+        long backoffMs = MIN_SLOT_BACKOFF_MS;
+        while (true) {
+            LabExecSlots.Claim claim;
+            try {
+                claim = sharedSlots.tryClaim(podName, priority, maxConcurrent, maxInteractive, leaseMillis);
+            } catch (Exception e) {
+                log.warn("Shared exec slots unavailable, limiting pod {} on this replica only: {}", podName, e.getMessage());
+                return null;
+            }
+            if (claim != null) {
+                return claim;
+            }
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                throw rejected(podName, priority);
+            }
+            Thread.sleep(Math.min(backoffMs, remainingMs));
+            backoffMs = Math.min(backoffMs * 2, MAX_SLOT_BACKOFF_MS);
+        }
+    }
+
+    private LabBusyException rejected(String podName, Priority priority) {
+        meterRegistry.counter("lab.exec.rejected", "priority", priority.name()).increment();
+        log.warn("Rejected {} exec in pod {}: {} execs already running", priority, podName, maxConcurrent);
+        return new LabBusyException("Lab is busy running other commands, try again shortly");
+    }
+
+    private void release(String podName, LabSlots slots, Priority priority) {
+        if (slots.release(priority)) {
+            slotsByPod.remove(podName, slots);
+        }
+    }
+
+    private long queueTimeoutMs(Priority priority) {
+        switch (priority) {
+            case SETUP:
+                return setupQueueTimeoutMs;
+            case GRADING:
+                return gradingQueueTimeoutMs;
+            default:
+                return interactiveQueueTimeoutMs;
+        }
+    }
+
+    private final class LabSlots {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final int[] waiting = new int[Priority.values().length];
+        private int running;
+        private int runningInteractive;
+        private boolean retired;
+
+        /**
+         * @return true when admitted, false on timeout, null when this instance was retired
+         */
+        private Boolean acquire(Priority priority, long deadline) throws InterruptedException {
+            lock.lock();
+            try {
+                if (retired) {
+                    return null;
+                }
+                waiting[priority.ordinal()]++;
+                try {
+                    while (!canRun(priority)) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        changed.awaitNanos(remaining);
+                    }
+                } finally {
+                    waiting[priority.ordinal()]--;
+                    // Lower classes may have been held back only by this waiter
+                    changed.signalAll();
+                }
+                running++;
+                if (priority == Priority.INTERACTIVE) {
+                    runningInteractive++;
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return true when the lab is idle and this instance was retired
+         */
+        private boolean release(Priority priority) {
+            lock.lock();
+            try {
+                running--;
+                if (priority == Priority.INTERACTIVE) {
+                    runningInteractive--;
+                }
+                if (running == 0 && !hasWaiters()) {
+                    retired = true;
+                    return true;
+                }
+                changed.signalAll();
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean canRun(Priority priority) {
+            if (running >= maxConcurrent) {
+                return false;
+            }
+            if (priority == Priority.INTERACTIVE && runningInteractive >= maxInteractive) {
+                return false;
+            }
+            for (int higher = 0; higher < priority.ordinal(); higher++) {
+                if (waiting[higher] > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasWaiters() {
+            for (int count : waiting) {
+                if (count > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
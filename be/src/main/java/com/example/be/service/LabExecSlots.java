@@ -0,0 +1,85 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.be.repository.LabExecSlotRepository;
+
+import java.util.UUID;
+
+/**
+ * Exec slots of lab pods held in the database, so the per-lab limit of {@link LabExecLimiter}
+ * holds across all replicas instead of once per replica.
+ * <p>
+ * A slot is a row keyed by pod and slot number, taken with INSERT IGNORE and released by deleting
+ * it. Interactive commands may only take the lowest {@code maxInteractive} slots, which caps them
+ * exactly without counting rows; the other classes take slots from the top down and leave those
+ * for interactive use as long as they can. Rows carry a lease of the exec timeout plus a margin,
+ * so the slots of a replica that died mid-exec free themselves.
+ */
+@Slf4j
+@Component
+public class LabExecSlots {
+
+    /**
+     * A held slot, released by {@link #release}
+     */
+    public static final class Claim {
+        private final String id;
+        private final String owner;
+
+        private Claim(String id, String owner) {
+            this.id = id;
+            this.owner = owner;
+        }
+    }
+
+    private final LabExecSlotRepository labExecSlotRepository;
+    private final ReplicaIdentity replicaIdentity;
+
+    public LabExecSlots(LabExecSlotRepository labExecSlotRepository, ReplicaIdentity replicaIdentity) {
+        this.labExecSlotRepository = labExecSlotRepository;
+        this.replicaIdentity = replicaIdentity;
+    }
+
+    /**
+     * @return the claimed slot, or null when every slot the class may use is taken
+     */
+    public Claim tryClaim(String podName, LabExecLimiter.Priority priority, int maxConcurrent, int maxInteractive,
+                          long leaseMillis) {
+        labExecSlotRepository.deleteExpired(podName);
+        String owner = replicaIdentity.getId() + "/" + UUID.randomUUID();
+        boolean interactive = priority == LabExecLimiter.Priority.INTERACTIVE;
+        int slots = interactive ? Math.min(maxInteractive, maxConcurrent) : maxConcurrent;
+        for (int i = 0; i < slots; i++) {
+            int slot = interactive ? i : maxConcurrent - 1 - i;
+            String id = podName + "#" + slot;
+            if (labExecSlotRepository.tryClaim(id, podName, owner, priority.name(), leaseMillis) == 1) {
+                return new Claim(id, owner);
+            }
+        }
+        return null;
+    }
+
+    public void release(Claim claim) {
+        try {
+            labExecSlotRepository.release(claim.id, claim.owner);
+        } catch (Exception e) {
+            // The lease frees it
+            log.warn("Failed to release exec slot {}: {}", claim.id, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelay = 600000)
+    public void purgeExpired() {
+        try {
+            int purged = labExecSlotRepository.purgeExpired();
+            if (purged > 0) {
+                log.info("Purged {} expired exec slots", purged);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to purge expired exec slots: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.be.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.be.model.Lab;
+import com.example.be.repository.LabRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the cluster and namespace for new labs.
+ * <p>
+ * {@code least-loaded} puts each lab in the target with the fewest active labs, counting the
+ * labs placed earlier in the same call, so a classroom is spread evenly. {@code consistent-hash}
+ * uses rendezvous hashing on the user id: a user's labs land in the same target, and adding or
+ * removing a target only moves the users hashed to it.
+ */
+@Service
+public class LabPlacementService {
+
+    private static final Set<Lab.LabStatus> ACTIVE_STATUSES =
+            EnumSet.of(Lab.LabStatus.CREATING, Lab.LabStatus.READY, Lab.LabStatus.RUNNING);
+
+    private final KubernetesClusters clusters;
+    private final LabRepository labRepository;
+
+    @Value("${kubernetes.placement.policy:least-loaded}")
+    private String policy;
+
+    public LabPlacementService(KubernetesClusters clusters, LabRepository labRepository) {
+        this.clusters = clusters;
+        this.labRepository = labRepository;
+    }
+
+    public KubernetesClusters.Target place(String userId) {
+        return place(List.of(userId)).get(0);
+    }
+
+    /**
+     * One target per user, in order
+     */
+    public List<KubernetesClusters.Target> place(List<String> userIds) {
+        List<KubernetesClusters.Target> targets = clusters.targets();
+        if (targets.isEmpty()) {
+            throw new IllegalStateException("No namespaces configured for lab placement");
+        }
+        List<KubernetesClusters.Target> placed = new ArrayList<>(userIds.size());
+        if (targets.size() == 1) {
+            userIds.forEach(userId -> placed.add(targets.get(0)));
+            return placed;
+        }
+
+        if ("consistent-hash".equals(policy)) {
+            userIds.forEach(userId -> placed.add(highestRandomWeight(targets, userId)));
+            return placed;
+        }
+
+        Map<KubernetesClusters.Target, Long> load = new HashMap<>();
+        for (LabRepository.PlacementLoad row : labRepository.countByPlacement(ACTIVE_STATUSES)) {
+            load.merge(clusters.targetOf(row.getClusterName(), row.getNamespace()), row.getLabs(), Long::sum);
+        }
+        for (String userId : userIds) {
+            KubernetesClusters.Target best = null;
+            long bestLoad = Long.MAX_VALUE;
+            for (KubernetesClusters.Target target : targets) {
+                long targetLoad = load.getOrDefault(target, 0L);
+                if (targetLoad < bestLoad) {
+                    best = target;
+                    bestLoad = targetLoad;
+                }
+            }
+            load.merge(best, 1L, Long::sum);
+            placed.add(best);
+        }
+        return placed;
+    }
+
+    private static KubernetesClusters.Target highestRandomWeight(List<KubernetesClusters.Target> targets, String key) {
+        KubernetesClusters.Target best = null;
+        long bestScore = Long.MIN_VALUE;
+        for (KubernetesClusters.Target target : targets) {
+            long score = hash(key + "\n" + target);
+            if (best == null || score > bestScore) {
+                best = target;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 64-bit FNV-1a with a murmur3 finalizer, so similar keys still spread over all targets
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.be.service;
+
+import io.kubernetes.client.custom.Quantity;
+import io.kubernetes.client.openapi.models.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.be.model.LabTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles each template version into an immutable pod prototype once, so creating a lab only
+ * copies the few objects that carry lab-specific fields (name, labels, LAB_ID, the agent token
+ * volume) and shares the rest (volumes, resources, scheduling rules, sidecars) with the prototype.
+ * <p>
+ * Prototype lists and maps are unmodifiable and shared objects are never mutated after compilation.
+ * {@link #instantiate} copies exactly the fields {@link #compile} sets, so both must change together.
+ */
+@Slf4j
+@Component
+public class LabPodPrototypes {
+
+    static final String CONTAINER_NAME = "lab-container";
+
+    // Set on pods that run the agent sidecar; other pods are only reached through Kubernetes exec
+    static final String AGENT_LABEL = "lab-agent";
+
+    private static final String AGENT_CONTAINER_NAME = "lab-agent";
+    private static final String AGENT_TOKEN_VOLUME = "lab-agent-token";
+    private static final String AGENT_TOKEN_DIR = "/var/run/lab-agent";
+
+    private final PackageCache packageCache;
+    private final Map<String, V1Pod> prototypes = new ConcurrentHashMap<>();
+
+    @Value("${lab.exec.agent.enabled:false}")
+    private boolean agentEnabled;
+
+    @Value("${lab.exec.agent.image:lab-agent:latest}")
+    private String agentImage;
+
+    @Value("${lab.exec.agent.port:7070}")
+    private int agentPort;
+
+    // Used for templates that do not declare their own resource profile
+    @Value("${lab.pod.default-cpu-request:200m}")
+    private String defaultCpuRequest;
+
+    @Value("${lab.pod.default-cpu-limit:500m}")
+    private String defaultCpuLimit;
+
+    @Value("${lab.pod.default-memory-request:512Mi}")
+    private String defaultMemoryRequest;
+
+    @Value("${lab.pod.default-memory-limit:1Gi}")
+    private String defaultMemoryLimit;
+
+    @Value("${lab.pod.default-topology-key:kubernetes.io/hostname}")
+    private String defaultTopologyKey;
+
+    public LabPodPrototypes(PackageCache packageCache) {
+        this.packageCache = packageCache;
+    }
+
+    public V1Pod instantiate(UUID labId, LabTemplate template) {
+        String key = key(template);
+        V1Pod prototype = prototypes.get(key);
+        if (prototype == null) {
+            // First use of this version: older versions of the template will not be asked for again
+            evict(template.getId());
+            prototype = prototypes.computeIfAbsent(key, k -> compile(template));
+        }
+        V1PodSpec protoSpec = prototype.getSpec();
+        V1Container protoContainer = protoSpec.getContainers().get(0);
+
+        List<V1EnvVar> env = new ArrayList<>(protoContainer.getEnv().size() + 1);
+        env.add(new V1EnvVar().name("LAB_ID").value(labId.toString()));
+        env.addAll(protoContainer.getEnv());
+
+        V1Container container = new V1Container()
+                .name(protoContainer.getName())
+                .image(protoContainer.getImage())
+                .command(protoContainer.getCommand())
+                .env(env)
+                .resources(protoContainer.getResources())
+                .volumeMounts(protoContainer.getVolumeMounts())
+                .ports(protoContainer.getPorts())
+                .securityContext(protoContainer.getSecurityContext());
+
+        List<V1Container> containers = new ArrayList<>(protoSpec.getContainers());
+        containers.set(0, container);
+
+        V1PodSpec spec = new V1PodSpec()
+                .containers(containers)
+                .initContainers(protoSpec.getInitContainers())
+                .volumes(agentEnabled ? withAgentToken(protoSpec.getVolumes(), labId) : protoSpec.getVolumes())
+                .shareProcessNamespace(protoSpec.getShareProcessNamespace())
+                .restartPolicy(protoSpec.getRestartPolicy())
+                .activeDeadlineSeconds(protoSpec.getActiveDeadlineSeconds())
+                .nodeSelector(protoSpec.getNodeSelector())
+                .topologySpreadConstraints(protoSpec.getTopologySpreadConstraints());
+
+        Map<String, String> labels = new HashMap<>(prototype.getMetadata().getLabels());
+        labels.put("labId", labId.toString());
+
+        return new V1Pod()
+                .metadata(new V1ObjectMeta()
+                        .name(KubernetesService.labPodName(labId))
+                        .labels(labels))
+                .spec(spec);
+    }
+
+    /**
+     * Drops every compiled version of a template
+     */
+    public void evict(String templateId) {
+        prototypes.keySet().removeIf(key -> key.startsWith(templateId + "@"));
+    }
+
+    private String key(LabTemplate template) {
+        return template.getId() + "@" + template.getVersion();
+    }
+
+    private V1Pod compile(LabTemplate template) {
+        log.info("Compiling pod prototype for template {} version {}", template.getId(), template.getVersion());
+
+        List<V1EnvVar> env = new ArrayList<>(List.of(
+                new V1EnvVar().name("LAB_TYPE").value(template.getLabType()),
+                new V1EnvVar().name("TEMPLATE_ID").value(template.getId()),
+                new V1EnvVar().name("DEBIAN_FRONTEND").value("noninteractive")));
+        List<V1VolumeMount> mounts = new ArrayList<>();
+        List<V1ContainerPort> ports = new ArrayList<>();
+        List<V1Volume> volumes = new ArrayList<>();
+        List<V1Container> initContainers = new ArrayList<>();
+        List<String> command = getTemplateContainerCommand(template.getLabType());
+
+        mounts.add(new V1VolumeMount().name("workspace").mountPath("/workspace"));
+        volumes.add(new V1Volume().name("workspace").emptyDir(new V1EmptyDirVolumeSource()));
+
+        if ("docker".equals(template.getLabType())) {
+            mounts.add(new V1VolumeMount().name("docker-sock").mountPath("/var/run/docker.sock"));
+            volumes.add(new V1Volume()
+                    .name("docker-sock")
+                    .hostPath(new V1HostPathVolumeSource().path("/var/run/docker.sock")));
+        }
+
+        // Shared apt/pip/npm cache
+        if (Boolean.TRUE.equals(template.getPackageCacheEnabled())) {
+            mounts.add(packageCache.volumeMount());
+            env.addAll(packageCache.env());
+            volumes.add(packageCache.volume());
+        }
+
+        // In-pod exec agent: a sidecar that runs commands inside the lab container through the
+        // shared process namespace. Its per-lab token is mounted into the sidecar only, so nothing
+        // a student runs in the lab container can read it.
+        List<V1Container> sidecars = new ArrayList<>();
+        if (agentEnabled) {
+            sidecars.add(agentSidecar());
+            // Secret name is per lab, filled in by instantiate
+            volumes.add(new V1Volume().name(AGENT_TOKEN_VOLUME).secret(new V1SecretVolumeSource()));
+        }
+
+        V1SecurityContext securityContext = null;
+        if ("johndoe".equals(template.getLabType())) {
+            // Run as root initially to create users
+            securityContext = new V1SecurityContext()
+                    .privileged(false)
+                    .runAsUser(0L)
+                    .allowPrivilegeEscalation(true);
+        }
+
+        V1Container container = new V1Container()
+                .name(CONTAINER_NAME)
+                .image(template.getBaseImage())
+                .command(List.copyOf(command))
+                .env(List.copyOf(env))
+                .resources(resources(template))
+                .volumeMounts(List.copyOf(mounts))
+                .ports(ports.isEmpty() ? null : List.copyOf(ports))
+                .securityContext(securityContext);
+        List<V1Container> containers = new ArrayList<>();
+        containers.add(container);
+        containers.addAll(sidecars);
+
+        Map<String, String> labels = new HashMap<>();
+        labels.put("app", "lab");
+        labels.put("template", template.getId());
+        labels.put("labType", template.getLabType());
+        if (agentEnabled) {
+            labels.put(AGENT_LABEL, "true");
+        }
+
+        V1PodSpec spec = new V1PodSpec()
+                .containers(List.copyOf(containers))
+                .initContainers(initContainers.isEmpty() ? null : List.copyOf(initContainers))
+                .volumes(List.copyOf(volumes))
+                .shareProcessNamespace(agentEnabled ? Boolean.TRUE : null)
+                .restartPolicy("Never")
+                .activeDeadlineSeconds((long) (template.getDurationMinutes() * 60))
+                .nodeSelector(nodeSelector(template.getNodeSelector()))
+                .topologySpreadConstraints(topologySpread(template));
+
+        return new V1Pod()
+                .metadata(new V1ObjectMeta().labels(Map.copyOf(labels)))
+                .spec(spec);
+    }
+
+    private V1ResourceRequirements resources(LabTemplate template) {
+        return new V1ResourceRequirements()
+                .requests(Map.of(
+                        "cpu", new Quantity(orDefault(template.getCpuRequest(), defaultCpuRequest)),
+                        "memory", new Quantity(orDefault(template.getMemoryRequest(), defaultMemoryRequest))))
+                .limits(Map.of(
+                        "cpu", new Quantity(orDefault(template.getCpuLimit(), defaultCpuLimit)),
+                        "memory", new Quantity(orDefault(template.getMemoryLimit(), defaultMemoryLimit))));
+    }
+
+    /**
+     * Spreads a template's labs across nodes (or zones) so one node does not end up with a whole
+     * classroom. ScheduleAnyway keeps it a preference, labs still start when the cluster is uneven.
+     */
+    private List<V1TopologySpreadConstraint> topologySpread(LabTemplate template) {
+        if (template.getTopologySpreadMaxSkew() == null || template.getTopologySpreadMaxSkew() <= 0) {
+            return null;
+        }
+        return List.of(new V1TopologySpreadConstraint()
+                .maxSkew(template.getTopologySpreadMaxSkew())
+                .topologyKey(orDefault(template.getTopologySpreadKey(), defaultTopologyKey))
+                .whenUnsatisfiable("ScheduleAnyway")
+                .labelSelector(new V1LabelSelector()
+                        .matchLabels(Map.of("app", "lab", "template", template.getId()))));
+    }
+
+    /**
+     * Parses "key=value,key=value" as stored on the template
+     */
+    static Map<String, String> nodeSelector(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Map<String, String> selector = new LinkedHashMap<>();
+        for (String pair : value.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Invalid node selector entry: " + pair);
+            }
+            selector.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+        }
+        return Map.copyOf(selector);
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value;
+    }
+
+    private V1Container agentSidecar() {
+        return new V1Container()
+                .name(AGENT_CONTAINER_NAME)
+                .image(agentImage)
+                .command(List.of("/lab-agent",
+                        "--port", String.valueOf(agentPort),
+                        "--token-file", AGENT_TOKEN_DIR + "/" + LabAgentAccess.TOKEN_KEY,
+                        "--target-container", CONTAINER_NAME))
+                .ports(List.of(new V1ContainerPort().name("agent").containerPort(agentPort)))
+                .volumeMounts(List.of(new V1VolumeMount().name(AGENT_TOKEN_VOLUME).mountPath(AGENT_TOKEN_DIR).readOnly(true)))
+                .resources(new V1ResourceRequirements()
+                        .requests(Map.of("cpu", new Quantity("10m"), "memory", new Quantity("16Mi")))
+                        .limits(Map.of("cpu", new Quantity("200m"), "memory", new Quantity("64Mi"))))
+                // Entering the lab container's namespaces needs these; the lab container has neither
+                .securityContext(new V1SecurityContext()
+                        .capabilities(new V1Capabilities().add(List.of("SYS_ADMIN", "SYS_PTRACE"))));
+    }
+
+    /**
+     * The prototype's volumes with the token volume pointing at the lab's own Secret
+     */
+    private static List<V1Volume> withAgentToken(List<V1Volume> volumes, UUID labId) {
+        String secretName = LabAgentAccess.secretName(KubernetesService.labPodName(labId));
+        List<V1Volume> copy = new ArrayList<>(volumes.size());
+        for (V1Volume volume : volumes) {
+            copy.add(AGENT_TOKEN_VOLUME.equals(volume.getName())
+                    ? new V1Volume().name(AGENT_TOKEN_VOLUME).secret(new V1SecretVolumeSource().secretName(secretName))
+                    : volume);
+        }
+        return copy;
+    }
+
+    private List<String> getTemplateContainerCommand(String labType) {
+        // Keep container alive while setup process runs
+        switch (labType) {
+            case "docker":
+                return List.of("/bin/bash", "-c", "sleep infinity");
+            case "python":
+                return List.of("/bin/sh", "-c", "sleep infinity");
+            case "nodejs":
+                return List.of("/bin/sh", "-c", "sleep infinity");
+            case "johndoe":
+                // For JohnDoe template, we want to ensure the container starts properly and keeps running
+                return List.of("/bin/bash", "-c",
+                    "apt-get update -y && " +
+                    "apt-get install -y sudo adduser && " +
+                    "service ssh start 2>/dev/null || true && " +
+                    "tail -f /dev/null");
+            case "kubernetes":
+                return List.of("/bin/sh", "-c", "sleep infinity");
+            default:
+                return List.of("/bin/sh", "-c", "sleep infinity");
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.be.service;
+
+import io.kubernetes.client.openapi.models.V1ContainerStatus;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.be.model.Lab;
+import com.example.be.repository.LabRepository;
+import com.example.be.util.TimeOrderedIds;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically syncs lab state with the clusters in one pass: a single pod list call per
+ * namespace in use, a diff against the active labs in the database and one batched status update.
+ * Catches pods that died from activeDeadlineSeconds, OOM or eviction without anyone
+ * calling the status endpoint. Labs that end go through {@link LabStateTransitions} instead of
+ * the batch, so their pod delete is queued with the status change.
+ */
+@Slf4j
+@Service
+public class LabReconciler {
+
+    private static final Set<Lab.LabStatus> ACTIVE_STATUSES =
+            EnumSet.of(Lab.LabStatus.CREATING, Lab.LabStatus.READY, Lab.LabStatus.RUNNING);
+
+    private static final String UPDATE_STATUS_SQL =
+            "UPDATE lab_instances SET status = ?, version = version + 1 WHERE id = ? AND status = ?";
+
+    private final KubernetesService kubernetesService;
+    private final LabRepository labRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final LeaderElection leaderElection;
+    private final ChangeTracker changeTracker;
+    private final KubernetesClusters clusters;
+    private final ImageLocality imageLocality;
+    private final LabStateTransitions labStateTransitions;
+    private final Timer cycleTimer;
+
+    private final AtomicInteger orphanedPods = new AtomicInteger();
+    private final AtomicInteger missingPods = new AtomicInteger();
+
+    // Labs younger than this may not have their pod yet (bulk creates, slow API server)
+    @Value("${lab.reconciler.missing-pod-grace-seconds:120}")
+    private long missingPodGraceSeconds;
+
+    public LabReconciler(KubernetesService kubernetesService, LabRepository labRepository,
+                         JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry, LeaderElection leaderElection,
+                         ChangeTracker changeTracker, KubernetesClusters clusters, ImageLocality imageLocality,
+                         LabStateTransitions labStateTransitions) {
+        this.kubernetesService = kubernetesService;
+        this.labRepository = labRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.leaderElection = leaderElection;
+        this.changeTracker = changeTracker;
+        this.clusters = clusters;
+        this.imageLocality = imageLocality;
+        this.labStateTransitions = labStateTransitions;
+        this.cycleTimer = Timer.builder("lab.reconcile.duration")
+                .description("Time spent in one reconciliation cycle")
+                .register(meterRegistry);
+        meterRegistry.gauge("lab.reconcile.orphaned.pods", orphanedPods);
+        meterRegistry.gauge("lab.reconcile.missing.pods", missingPods);
+    }
+
+    @Scheduled(fixedDelayString = "${lab.reconciler.interval-ms:30000}",
+               initialDelayString = "${lab.reconciler.initial-delay-ms:30000}")
+    public void reconcile() {
+        if (!leaderElection.isLeader(LeaderElection.MAINTENANCE)) {
+            return;
+        }
+        try {
+            cycleTimer.record(this::reconcileOnce);
+        } catch (Exception e) {
+            log.error("Lab reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void reconcileOnce() {
+        long start = System.nanoTime();
+
+        List<Lab> activeLabs = labRepository.findByStatusIn(ACTIVE_STATUSES);
+
+        // Placement targets plus wherever active labs still live (legacy or drained namespaces)
+        Set<KubernetesClusters.Target> targets = new LinkedHashSet<>(clusters.targets());
+        activeLabs.forEach(lab -> targets.add(kubernetesService.targetOf(lab)));
+
+        List<V1Pod> pods = new ArrayList<>();
+        Set<KubernetesClusters.Target> unlisted = new HashSet<>();
+        for (KubernetesClusters.Target target : targets) {
+            try {
+                List<V1Pod> listed = kubernetesService.listLabPods(target);
+                imageLocality.recordStartups(target.getCluster(), listed);
+                pods.addAll(listed);
+            } catch (Exception e) {
+                // Labs there are left alone this cycle rather than reported as missing
+                unlisted.add(target);
+                log.warn("Failed to list lab pods in {}: {}", target, e.getMessage());
+            }
+        }
+        if (unlisted.size() == targets.size()) {
+            throw new IllegalStateException("Failed to list lab pods in every namespace");
+        }
+        long listedAt = System.nanoTime();
+
+        // Pod names embed the lab id, so they are unique across targets
+        Map<String, V1Pod> podsByName = pods.stream()
+                .collect(Collectors.toMap(pod -> pod.getMetadata().getName(), Function.identity(), (a, b) -> a));
+
+        List<Object[]> updates = new ArrayList<>();
+        List<Lab> ended = new ArrayList<>();
+        Map<UUID, Lab.LabStatus> endStatuses = new HashMap<>();
+        Set<String> changedScopes = new HashSet<>();
+        List<UUID> missing = new ArrayList<>();
+        LocalDateTime graceCutoff = LocalDateTime.now().minusSeconds(missingPodGraceSeconds);
+
+        for (Lab lab : activeLabs) {
+            if (unlisted.contains(kubernetesService.targetOf(lab))) {
+                continue;
+            }
+            V1Pod pod = lab.getPodName() == null ? null : podsByName.remove(lab.getPodName());
+            Lab.LabStatus desired;
+            if (pod == null) {
+                if (lab.getCreatedAt() != null && lab.getCreatedAt().isAfter(graceCutoff)) {
+                    continue;
+                }
+                missing.add(lab.getId());
+                desired = Lab.LabStatus.STOPPED;
+            } else {
+                desired = desiredStatus(lab, pod);
+            }
+
+            if (desired != lab.getStatus()) {
+                log.info("Reconciling lab {}: {} -> {}", lab.getId(), lab.getStatus(), desired);
+                if (!ACTIVE_STATUSES.contains(desired)) {
+                    ended.add(lab);
+                    endStatuses.put(lab.getId(), desired);
+                    continue;
+                }
+                updates.add(new Object[]{desired.name(), TimeOrderedIds.toBytes(lab.getId()), lab.getStatus().name()});
+                changedScopes.add(ChangeTracker.userLabs(lab.getUserId()));
+            }
+        }
+
+        // Whatever is left has no active row
+        List<String> orphaned = new ArrayList<>(podsByName.keySet());
+
+        int applied = 0;
+        if (!updates.isEmpty()) {
+            for (int count : jdbcTemplate.batchUpdate(UPDATE_STATUS_SQL, updates)) {
+                // Drivers may report SUCCESS_NO_INFO (-2) for rewritten batches
+                applied += count == -2 ? 1 : count;
+            }
+            changeTracker.changed(changedScopes);
+        }
+        for (Lab lab : ended) {
+            try {
+                Lab.LabStatus status = endStatuses.get(lab.getId());
+                if (status == Lab.LabStatus.EXPIRED ? labStateTransitions.expire(lab) : labStateTransitions.end(lab, status)) {
+                    applied++;
+                }
+            } catch (Exception e) {
+                log.warn("Failed to end lab {}: {}", lab.getId(), e.getMessage());
+            }
+        }
+
+        orphanedPods.set(orphaned.size());
+        missingPods.set(missing.size());
+        meterRegistry.counter("lab.reconcile.transitions").increment(applied);
+
+        if (!orphaned.isEmpty()) {
+            log.warn("Found {} lab pods without an active lab row: {}", orphaned.size(), orphaned);
+        }
+        if (!missing.isEmpty()) {
+            log.warn("Found {} active labs without a pod: {}", missing.size(), missing);
+        }
+        log.debug("Reconciled {} pods against {} active labs: {} transitions applied (list {}ms, total {}ms)",
+                pods.size(), activeLabs.size(), applied,
+                (listedAt - start) / 1_000_000, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Lab.LabStatus desiredStatus(Lab lab, V1Pod pod) {
+        if (pod.getMetadata().getDeletionTimestamp() != null) {
+            return Lab.LabStatus.STOPPED;
+        }
+
+        String phase = pod.getStatus() == null ? null : pod.getStatus().getPhase();
+        if (phase == null) {
+            return lab.getStatus();
+        }
+
+        switch (phase) {
+            case "Running":
+                // Template labs only become RUNNING once their setup has finished
+                if (lab.getStatus() == Lab.LabStatus.CREATING && lab.getSetupStatus() == Lab.SetupStatus.READY) {
+                    return Lab.LabStatus.RUNNING;
+                }
+                return lab.getStatus();
+            case "Succeeded":
+                return Lab.LabStatus.STOPPED;
+            case "Failed":
+                return failedStatus(pod);
+            default:
+                // Pending keeps its current state, Unknown usually means the node is unreachable
+                return lab.getStatus();
+        }
+    }
+
+    private Lab.LabStatus failedStatus(V1Pod pod) {
+        String reason = pod.getStatus().getReason();
+        if ("DeadlineExceeded".equals(reason)) {
+            return Lab.LabStatus.EXPIRED;
+        }
+        if ("Evicted".equals(reason)) {
+            return Lab.LabStatus.ERROR;
+        }
+
+        List<V1ContainerStatus> containerStatuses = pod.getStatus().getContainerStatuses();
+        if (containerStatuses != null) {
+            for (V1ContainerStatus status : containerStatuses) {
+                if (status.getState() != null && status.getState().getTerminated() != null
+                        && "OOMKilled".equals(status.getState().getTerminated().getReason())) {
+                    return Lab.LabStatus.ERROR;
+                }
+            }
+        }
+        return Lab.LabStatus.STOPPED;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.be.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.be.model.Lab;
+import com.example.be.model.SetupExecutionLog;
+import com.example.be.repository.LabRepository;
+import com.example.be.repository.SetupExecutionLogRepository;
+import com.example.be.repository.SetupJobRepository;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps lab_instances and setup_execution_logs small by moving finished labs out of them.
+ * <p>
+ * Labs that ended (STOPPED/EXPIRED, or ERROR which is kept longer for debugging) longer ago than
+ * their TTL are written with their setup logs to a gzip JSON-lines file, one file per run, and then
+ * deleted in batches. Each batch is flushed and synced to disk before its rows are deleted, so a
+ * crash can at worst archive a batch twice, never lose it.
+ * <p>
+ * Time partitioning was not an option: InnoDB does not allow foreign keys on partitioned tables.
+ */
+@Slf4j
+@Service
+public class LabRetentionService {
+
+    private static final Set<Lab.LabStatus> ENDED = EnumSet.of(Lab.LabStatus.STOPPED, Lab.LabStatus.EXPIRED);
+    private static final Set<Lab.LabStatus> FAILED = EnumSet.of(Lab.LabStatus.ERROR);
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final LabRepository labRepository;
+    private final SetupExecutionLogRepository setupExecutionLogRepository;
+    private final SetupJobRepository setupJobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final LeaderElection leaderElection;
+    private final ChangeTracker changeTracker;
+    private final Counter archivedLabs;
+
+    @Value("${lab.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lab.retention.ended-ttl-days:30}")
+    private int endedTtlDays;
+
+    @Value("${lab.retention.error-ttl-days:90}")
+    private int errorTtlDays;
+
+    @Value("${lab.retention.batch-size:200}")
+    private int batchSize;
+
+    @Value("${lab.retention.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    @Value("${lab.retention.archive-dir:./lab-archive}")
+    private String archiveDir;
+
+    public LabRetentionService(LabRepository labRepository,
+                               SetupExecutionLogRepository setupExecutionLogRepository,
+                               SetupJobRepository setupJobRepository,
+                               TransactionTemplate transactionTemplate,
+                               ObjectMapper objectMapper,
+                               LeaderElection leaderElection,
+                               ChangeTracker changeTracker,
+                               MeterRegistry meterRegistry) {
+        this.labRepository = labRepository;
+        this.setupExecutionLogRepository = setupExecutionLogRepository;
+        this.setupJobRepository = setupJobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.leaderElection = leaderElection;
+        this.changeTracker = changeTracker;
+        this.archivedLabs = Counter.builder("lab.retention.archived")
+                .description("Labs moved from the database to archive files")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${lab.retention.interval-ms:3600000}",
+               initialDelayString = "${lab.retention.initial-delay-ms:300000}")
+    public void run() {
+        if (!enabled || !leaderElection.isLeader(LeaderElection.MAINTENANCE)) {
+            return;
+        }
+        try {
+            int archived = archive(ENDED, endedTtlDays) + archive(FAILED, errorTtlDays);
+            if (archived > 0) {
+                log.info("Archived {} finished labs to {}", archived, archiveDir);
+            }
+        } catch (Exception e) {
+            log.error("Lab retention run failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private int archive(Set<Lab.LabStatus> statuses, int ttlDays) throws IOException {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(ttlDays);
+        List<Lab> batch = labRepository.findRetentionCandidates(statuses, cutoff, Pageable.ofSize(batchSize));
+        if (batch.isEmpty() || !stillLeader()) {
+            return 0;
+        }
+
+        Path dir = Paths.get(archiveDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve("labs-" + statuses.iterator().next().name().toLowerCase()
+                + "-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jsonl.gz");
+
+        int archived = 0;
+        try (FileOutputStream fileOut = new FileOutputStream(file.toFile());
+             GZIPOutputStream gzip = new GZIPOutputStream(fileOut, 64 * 1024, true)) {
+            for (int round = 0; round < maxBatchesPerRun && !batch.isEmpty(); round++) {
+                // A run can outlast the lease; another leader would archive the same labs
+                if (round > 0 && !stillLeader()) {
+                    break;
+                }
+                List<UUID> labIds = batch.stream().map(Lab::getId).collect(Collectors.toList());
+                Map<UUID, List<SetupExecutionLog>> logsByLab = setupExecutionLogRepository.findWithLabByLabIds(labIds)
+                        .stream()
+                        .collect(Collectors.groupingBy(entry -> entry.getLabInstance().getId()));
+
+                for (Lab lab : batch) {
+                    gzip.write(objectMapper.writeValueAsBytes(toRecord(lab, logsByLab.getOrDefault(lab.getId(), List.of()))));
+                    gzip.write('\n');
+                }
+                // Make the batch durable before its rows go away
+                gzip.flush();
+                fileOut.getFD().sync();
+
+                Set<String> userScopes = batch.stream()
+                        .map(lab -> ChangeTracker.userLabs(lab.getUserId()))
+                        .collect(Collectors.toSet());
+                transactionTemplate.executeWithoutResult(status -> {
+                    setupJobRepository.deleteByLabIds(labIds);
+                    setupExecutionLogRepository.deleteByLabIds(labIds);
+                    labRepository.deleteAllByIdInBatch(labIds);
+                    changeTracker.changed(userScopes);
+                });
+                archived += batch.size();
+                archivedLabs.increment(batch.size());
+
+                if (batch.size() < batchSize) {
+                    break;
+                }
+                batch = labRepository.findRetentionCandidates(statuses, cutoff, Pageable.ofSize(batchSize));
+            }
+        }
+        return archived;
+    }
+
+    private boolean stillLeader() {
+        if (leaderElection.isLeader(LeaderElection.MAINTENANCE)) {
+            return true;
+        }
+        log.warn("Lost leadership during a retention run, stopping");
+        return false;
+    }
+
+    private Map<String, Object> toRecord(Lab lab, List<SetupExecutionLog> logs) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", lab.getId().toString());
+        record.put("userId", lab.getUserId());
+        record.put("templateId", lab.getTemplateId());
+        record.put("labType", lab.getLabType());
+        record.put("status", lab.getStatus());
+        record.put("setupStatus", lab.getSetupStatus());
+        record.put("createdAt", lab.getCreatedAt());
+        record.put("setupStartedAt", lab.getSetupStartedAt());
+        record.put("setupCompletedAt", lab.getSetupCompletedAt());
+        record.put("expiresAt", lab.getExpiresAt());
+        record.put("podName", lab.getPodName());
+        record.put("clusterName", lab.getClusterName());
+        record.put("namespace", lab.getNamespace());
+        record.put("duration", lab.getDuration());
+
+        List<Map<String, Object>> logRecords = new ArrayList<>();
+        for (SetupExecutionLog entry : logs) {
+            Map<String, Object> logRecord = new LinkedHashMap<>();
+            logRecord.put("id", entry.getId().toString());
+            logRecord.put("stepOrder", entry.getStepOrder());
+            logRecord.put("stepTitle", entry.getStepTitle());
+            logRecord.put("command", entry.getCommand());
+            logRecord.put("status", entry.getStatus());
+            logRecord.put("output", entry.getOutput());
+            logRecord.put("errorMessage", entry.getErrorMessage());
+            logRecord.put("exitCode", entry.getExitCode());
+            logRecord.put("executionTimeMs", entry.getExecutionTimeMs());
+            logRecord.put("attemptNumber", entry.getAttemptNumber());
+            logRecord.put("startedAt", entry.getStartedAt());
+            logRecord.put("completedAt", entry.getCompletedAt());
+            logRecords.add(logRecord);
+        }
+        record.put("setupLogs", logRecords);
+        return record;
+    }
+}
@@ -7,14 +7,16 @@ import org.springframework.transaction.annotation.Transactional;
 import com.example.be.dto.CreateLabRequest;
 import com.example.be.dto.ExecuteCommandRequest;
 import com.example.be.dto.CommandResultResponse;
+import com.example.be.dto.ExecBenchmarkResponse;
 import com.example.be.dto.LabResponse;
 import com.example.be.model.Lab;
 import com.example.be.repository.LabRepository;
+import com.example.be.util.TimeOrderedIds;
 
-import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -23,27 +25,37 @@ public class LabService {
 
     private final KubernetesService kubernetesService;
     private final LabRepository labRepository;
+    private final ExecTransportBenchmark execTransportBenchmark;
+    private final ExecRegistry execRegistry;
+    private final CommandResultCache commandResultCache;
+    private final LabPlacementService labPlacementService;
+    private final PodOutbox podOutbox;
+    private final LabStateTransitions labStateTransitions;
 
-    public LabService(KubernetesService kubernetesService, LabRepository labRepository) {
+    public LabService(KubernetesService kubernetesService, LabRepository labRepository,
+                      ExecTransportBenchmark execTransportBenchmark,
+                      ExecRegistry execRegistry, CommandResultCache commandResultCache,
+                      LabPlacementService labPlacementService, PodOutbox podOutbox,
+                      LabStateTransitions labStateTransitions) {
         this.kubernetesService = kubernetesService;
         this.labRepository = labRepository;
-    }
-
-    @PostConstruct
-    public void init() {
-        log.info("LabService initialized");
-        // Clean up any orphaned labs on startup
-        cleanupExpiredLabs();
+        this.execTransportBenchmark = execTransportBenchmark;
+        this.execRegistry = execRegistry;
+        this.commandResultCache = commandResultCache;
+        this.labPlacementService = labPlacementService;
+        this.podOutbox = podOutbox;
+        this.labStateTransitions = labStateTransitions;
     }
 
     @Transactional
-    public LabResponse createLab(CreateLabRequest request) throws Exception {
-        String labId = generateLabId(request.getUserId());
-        
-        // Create Kubernetes pod
-        String podName = kubernetesService.createLabPod(labId, request);
+    public LabResponse createLab(CreateLabRequest request) {
+        if (!kubernetesService.supportsLabType(request.getLabType())) {
+            throw new IllegalArgumentException("Unsupported lab type: " + request.getLabType());
+        }
+        UUID labId = TimeOrderedIds.newId();
+        KubernetesClusters.Target target = labPlacementService.place(request.getUserId());
         
-        // Create lab entity
+        // The pod is created by the outbox once this commits
         Lab lab = Lab.builder()
                 .id(labId)
                 .userId(request.getUserId())
@@ -53,16 +65,20 @@ public class LabService {
                 .createdAt(LocalDateTime.now())
                 .expiresAt(LocalDateTime.now().plusSeconds(request.getDuration()))
                 .accessUrl(generateAccessUrl(labId))
-                .podName(podName)
+                .podName(KubernetesService.labPodName(labId))
+                .clusterName(target.getCluster())
+                .namespace(target.getNamespace())
                 .duration(request.getDuration())
                 .build();
 
         lab = labRepository.save(lab);
+        podOutbox.createPod(lab);
         log.info("Lab created: {}", labId);
         
         return convertToResponse(lab);
     }
 
+    @Transactional(readOnly = true)
     public List<LabResponse> getUserLabs(String userId) {
         return labRepository.findByUserIdOrderByCreatedAtDesc(userId)
                 .stream()
@@ -70,6 +86,7 @@ public class LabService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public List<LabResponse> getAllLabs() {
         return labRepository.findAll()
                 .stream()
@@ -78,26 +95,22 @@ public class LabService {
     }
 
     @Transactional
-    public void deleteLab(String labId) throws Exception {
-        Optional<Lab> labOpt = labRepository.findById(labId);
+    public void deleteLab(String labId) {
+        Optional<Lab> labOpt = labRepository.findById(TimeOrderedIds.parse(labId));
         if (labOpt.isEmpty()) {
             throw new IllegalArgumentException("Lab not found: " + labId);
         }
 
         Lab lab = labOpt.get();
-        try {
-            kubernetesService.deletePod(lab.getPodName());
-        } catch (Exception e) {
-            log.warn("Failed to delete pod for lab {}: {}", labId, e.getMessage());
-        }
-        
         labRepository.delete(lab);
+        podOutbox.deletePod(lab);
+        commandResultCache.forget(lab.getId());
         log.info("Lab deleted: {}", labId);
     }
 
-    @Transactional
-    public String getLabStatus(String labId) throws Exception {
-        Optional<Lab> labOpt = labRepository.findById(labId);
+    // No transaction: the pod lookup must not hold a connection, each transition commits on its own
+    public String getLabStatus(String labId) {
+        Optional<Lab> labOpt = labRepository.findById(TimeOrderedIds.parse(labId));
         if (labOpt.isEmpty()) {
             throw new IllegalArgumentException("Lab not found: " + labId);
         }
@@ -106,13 +119,12 @@ public class LabService {
         
         // Check if lab is expired
         if (lab.getExpiresAt().isBefore(LocalDateTime.now())) {
-            lab.setStatus(Lab.LabStatus.EXPIRED);
-            labRepository.save(lab);
+            labStateTransitions.expire(lab);
             return "EXPIRED";
         }
 
         try {
-            String podStatus = kubernetesService.getPodStatus(lab.getPodName());
+            String podStatus = kubernetesService.getPodStatus(kubernetesService.targetOf(lab), lab.getPodName());
             
             // Update lab status based on pod status
             Lab.LabStatus newStatus;
@@ -131,20 +143,27 @@ public class LabService {
                     break;
             }
             
-            lab.setStatus(newStatus);
-            labRepository.save(lab);
-            
-            return newStatus.toString();
+            return syncStatus(lab, newStatus);
         } catch (Exception e) {
             log.error("Failed to get pod status for lab {}: {}", labId, e.getMessage());
-            lab.setStatus(Lab.LabStatus.ERROR);
-            labRepository.save(lab);
-            return "ERROR";
+            return syncStatus(lab, Lab.LabStatus.ERROR);
+        }
+    }
+
+    /**
+     * @return the new status, or the stored one when the lab moved on meanwhile (e.g. expired)
+     */
+    private String syncStatus(Lab lab, Lab.LabStatus status) {
+        if (lab.getStatus() == status || labStateTransitions.syncStatus(lab, status)) {
+            return status.toString();
         }
+        return labRepository.findById(lab.getId())
+                .map(current -> current.getStatus().toString())
+                .orElseThrow(() -> new IllegalArgumentException("Lab not found: " + lab.getId()));
     }
 
     public CommandResultResponse executeCommand(ExecuteCommandRequest request) throws Exception {
-        Optional<Lab> labOpt = labRepository.findById(request.getLabId());
+        Optional<Lab> labOpt = labRepository.findById(TimeOrderedIds.parse(request.getLabId()));
         if (labOpt.isEmpty()) {
             throw new IllegalArgumentException("Lab not found: " + request.getLabId());
         }
@@ -175,7 +194,64 @@ public class LabService {
                     .build();
         }
 
-        return kubernetesService.executeCommand(lab.getPodName(), request.getCommand());
+        // Allowlisted read-only commands may be answered without touching the pod
+        CommandResultResponse cachedResult = commandResultCache.get(lab.getId(), lab.getExecGeneration(), request.getCommand());
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
+        boolean cacheable = commandResultCache.begin(lab.getId(), request.getCommand());
+        CommandResultResponse result = null;
+        try (ExecRegistry.RunningExec exec = execRegistry.start(request.getLabId(), request.getExecId())) {
+            try {
+                result = kubernetesService.executeCommand(kubernetesService.targetOf(lab), lab.getPodName(), request.getCommand());
+            } catch (InterruptedException e) {
+                if (!exec.isCancelled()) {
+                    throw e;
+                }
+            }
+            // The transports turn the cancel interrupt into an ordinary failure, report it as what it was
+            if (exec.isCancelled()) {
+                result = CommandResultResponse.builder()
+                        .command(request.getCommand())
+                        .output("")
+                        .error("Command cancelled")
+                        .exitCode(-1)
+                        .success(false)
+                        .build();
+            }
+            result.setExecId(exec.getId());
+            return result;
+        } finally {
+            commandResultCache.complete(lab.getId(), lab.getExecGeneration(), request.getCommand(), cacheable,
+                    result, lab.getExpiresAt());
+        }
+    }
+
+    /**
+     * @return false when the exec already finished or never existed
+     */
+    public boolean cancelExec(String labId, String execId) {
+        return execRegistry.cancel(labId, execId);
+    }
+
+    public ExecBenchmarkResponse benchmarkExecTransports(String labId, String command, int iterations) {
+        Lab lab = labRepository.findById(TimeOrderedIds.parse(labId))
+                .orElseThrow(() -> new IllegalArgumentException("Lab not found: " + labId));
+
+        if (lab.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Lab has expired: " + labId);
+        }
+        if (!isCommandSafe(command)) {
+            throw new IllegalArgumentException("Command not allowed for security reasons");
+        }
+
+        return ExecBenchmarkResponse.builder()
+                .labId(labId)
+                .command(command)
+                .iterations(iterations)
+                .results(execTransportBenchmark.run(kubernetesService.targetOf(lab), lab.getPodName(), command, iterations))
+                .build();
     }
 
     @Transactional
@@ -184,21 +260,15 @@ public class LabService {
         List<Lab> expiredLabs = labRepository.findExpiredLabs();
         
         for (Lab lab : expiredLabs) {
-            try {
-                log.info("Cleaning up expired lab: {}", lab.getId());
-                kubernetesService.deletePod(lab.getPodName());
-                lab.setStatus(Lab.LabStatus.EXPIRED);
-                labRepository.save(lab);
-            } catch (Exception e) {
-                log.warn("Failed to cleanup expired lab {}: {}", lab.getId(), e.getMessage());
-            }
+            log.info("Cleaning up expired lab: {}", lab.getId());
+            labStateTransitions.expire(lab);
         }
         
         log.info("Cleaned up {} expired labs", expiredLabs.size());
     }
 
     public Optional<Lab> getLabById(String labId) {
-        return labRepository.findById(labId);
+        return labRepository.findById(TimeOrderedIds.parse(labId));
     }
 
     public Optional<Lab> getLabByPodName(String podName) {
@@ -224,17 +294,13 @@ public class LabService {
         return true;
     }
 
-    private String generateLabId(String userId) {
-        return "lab-" + userId + "-" + System.currentTimeMillis();
-    }
-
-    private String generateAccessUrl(String labId) {
+    private String generateAccessUrl(UUID labId) {
         return "http://192.168.122.93:30000/" + labId;
     }
 
     private LabResponse convertToResponse(Lab lab) {
         return LabResponse.builder()
-                .id(lab.getId())
+                .id(lab.getId().toString())
                 .userId(lab.getUserId())
                 .labType(lab.getLabType())
                 .status(lab.getStatus().toString())
@@ -0,0 +1,157 @@
+package com.example.be.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.be.model.Lab;
+import com.example.be.repository.LabRepository;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Lab status changes written as conditional single-row updates instead of full entity saves.
+ * <p>
+ * The setup worker, the status endpoint and expiry all hold their own copy of a lab; saving one
+ * of them wrote back every column and could undo a transition made in between, e.g. turn an
+ * EXPIRED lab back into RUNNING. Each method here only applies while the lab is in a state the
+ * transition is allowed from and that it actually changes, bumps the version and returns whether
+ * it applied. EXPIRED is final. When the transition applied, the passed lab is refreshed if it is
+ * managed by the current persistence context and updated in memory otherwise; nothing else in the
+ * caller's persistence context is touched.
+ */
+@Slf4j
+@Service
+public class LabStateTransitions {
+
+    private static final Set<Lab.LabStatus> NOT_EXPIRED = EnumSet.complementOf(EnumSet.of(Lab.LabStatus.EXPIRED));
+
+    private static final Set<Lab.LabStatus> CREATING = EnumSet.of(Lab.LabStatus.CREATING);
+
+    private static final Set<Lab.LabStatus> ACTIVE =
+            EnumSet.of(Lab.LabStatus.CREATING, Lab.LabStatus.READY, Lab.LabStatus.RUNNING);
+
+    private final LabRepository labRepository;
+    private final ChangeTracker changeTracker;
+    private final PodOutbox podOutbox;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public LabStateTransitions(LabRepository labRepository, ChangeTracker changeTracker, PodOutbox podOutbox) {
+        this.labRepository = labRepository;
+        this.changeTracker = changeTracker;
+        this.podOutbox = podOutbox;
+    }
+
+    /**
+     * Also queues the pod delete, once, whichever path expires the lab first
+     */
+    @Transactional
+    public boolean expire(Lab lab) {
+        if (!status(lab, NOT_EXPIRED, Lab.LabStatus.EXPIRED)) {
+            return false;
+        }
+        podOutbox.deletePod(lab);
+        return true;
+    }
+
+    /**
+     * Ends an active lab whose pod stopped or failed, STOPPED or ERROR, and queues the pod delete
+     * so nothing is left behind in the namespace
+     */
+    @Transactional
+    public boolean end(Lab lab, Lab.LabStatus status) {
+        if (status != Lab.LabStatus.STOPPED && status != Lab.LabStatus.ERROR) {
+            throw new IllegalArgumentException("Not an end status: " + status);
+        }
+        if (!status(lab, ACTIVE, status)) {
+            return false;
+        }
+        podOutbox.deletePod(lab);
+        return true;
+    }
+
+    /**
+     * Mirrors the pod status onto a lab that has not expired. Writes nothing, and leaves the version
+     * and the lab list ETag alone, when the lab already has that status.
+     */
+    @Transactional
+    public boolean syncStatus(Lab lab, Lab.LabStatus status) {
+        if (lab.getStatus() == status) {
+            return false;
+        }
+        return status(lab, NOT_EXPIRED, status);
+    }
+
+    /**
+     * The pod was created and setup is about to be queued
+     */
+    @Transactional
+    public boolean startSetup(Lab lab) {
+        LocalDateTime now = LocalDateTime.now();
+        if (labRepository.startSetup(lab.getId(), now) == 0) {
+            return skipped(lab, "start setup");
+        }
+        lab.setSetupStatus(Lab.SetupStatus.SETTING_UP);
+        lab.setSetupStartedAt(now);
+        return changed(lab);
+    }
+
+    /**
+     * Ends a running setup: RUNNING on success, ERROR otherwise
+     */
+    @Transactional
+    public boolean finishSetup(Lab lab, boolean success) {
+        Lab.LabStatus status = success ? Lab.LabStatus.RUNNING : Lab.LabStatus.ERROR;
+        Lab.SetupStatus setupStatus = success ? Lab.SetupStatus.READY : Lab.SetupStatus.FAILED;
+        LocalDateTime now = LocalDateTime.now();
+        if (labRepository.finishSetup(lab.getId(), NOT_EXPIRED, status, setupStatus, now) == 0) {
+            return skipped(lab, "finish setup as " + setupStatus);
+        }
+        lab.setStatus(status);
+        lab.setSetupStatus(setupStatus);
+        lab.setSetupCompletedAt(now);
+        return changed(lab);
+    }
+
+    /**
+     * The pod could not be created; only applies while the lab is still being created
+     */
+    @Transactional
+    public boolean failCreate(Lab lab) {
+        if (labRepository.transitionStatusAndSetup(lab.getId(), CREATING,
+                Lab.LabStatus.ERROR, Lab.SetupStatus.FAILED) == 0) {
+            return skipped(lab, "fail creation");
+        }
+        lab.setStatus(Lab.LabStatus.ERROR);
+        lab.setSetupStatus(Lab.SetupStatus.FAILED);
+        return changed(lab);
+    }
+
+    private boolean status(Lab lab, Set<Lab.LabStatus> expected, Lab.LabStatus status) {
+        if (labRepository.transitionStatus(lab.getId(), expected, status) == 0) {
+            return skipped(lab, "move to " + status);
+        }
+        lab.setStatus(status);
+        return changed(lab);
+    }
+
+    private boolean changed(Lab lab) {
+        // The update bypassed the persistence context; a managed copy would carry a stale version
+        if (entityManager.contains(lab)) {
+            entityManager.refresh(lab);
+        }
+        changeTracker.changed(ChangeTracker.userLabs(lab.getUserId()));
+        return true;
+    }
+
+    private boolean skipped(Lab lab, String transition) {
+        log.debug("Lab {} not in a state to {} or already there, left unchanged", lab.getId(), transition);
+        return false;
+    }
+}
@@ -8,18 +8,24 @@ import org.springframework.transaction.annotation.Transactional;
 import com.example.be.dto.CreateLabFromTemplateRequest;
 import com.example.be.dto.LabTemplateResponse;
 import com.example.be.dto.SetupStepResponse;
+import com.example.be.dto.TemplateSearchResponse;
 import com.example.be.model.Lab;
 import com.example.be.model.LabTemplate;
+import com.example.be.model.SetupJob;
 import com.example.be.model.SetupStep;
 import com.example.be.model.SetupExecutionLog;
 import com.example.be.repository.LabTemplateRepository;
 import com.example.be.repository.SetupStepRepository;
 import com.example.be.repository.LabRepository;
 import com.example.be.repository.SetupExecutionLogRepository;
+import com.example.be.util.CompressedText;
+import com.example.be.util.TimeOrderedIds;
 
-import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -28,13 +34,25 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class LabTemplateService {
 
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     private final LabTemplateRepository labTemplateRepository;
     private final SetupStepRepository setupStepRepository;
     private final LabRepository labRepository;
     private final SetupExecutionLogRepository setupExecutionLogRepository;
     private final KubernetesService kubernetesService;
-
-    @PostConstruct
+    private final PackageCache packageCache;
+    private final SetupJobService setupJobService;
+    private final SetupStepTimings setupStepTimings;
+    private final CommandResultCache commandResultCache;
+    private final TemplateSearchIndex templateSearchIndex;
+    private final LabPlacementService labPlacementService;
+    private final PodOutbox podOutbox;
+    private final LabStateTransitions labStateTransitions;
+
+    /**
+     * Seeds the default templates into an empty database; run by {@link com.example.be.config.DataInitializer}
+     */
     public void initializeDefaultTemplates() {
         if (labTemplateRepository.count() == 0) {
             createDefaultTemplates();
@@ -74,6 +92,12 @@ public class LabTemplateService {
                 .successCriteria("johndoe user created and environment ready with development tools")
                 .createdBy("system")
                 .isActive(true)
+                .packageCacheEnabled(true)
+                .cpuRequest("300m")
+                .cpuLimit("1")
+                .memoryRequest("768Mi")
+                .memoryLimit("1536Mi")
+                .topologySpreadMaxSkew(1)
                 .build();
 
         labTemplateRepository.save(johnDoeTemplate);
@@ -156,6 +180,12 @@ public class LabTemplateService {
                 .successCriteria("Python environment ready with pip, jupyter, and common packages installed")
                 .createdBy("system")
                 .isActive(true)
+                .packageCacheEnabled(true)
+                .cpuRequest("250m")
+                .cpuLimit("1")
+                .memoryRequest("256Mi")
+                .memoryLimit("768Mi")
+                .topologySpreadMaxSkew(1)
                 .build();
 
         labTemplateRepository.save(pythonTemplate);
@@ -193,6 +223,11 @@ public class LabTemplateService {
                 .successCriteria("Docker daemon running and able to build/run containers")
                 .createdBy("system")
                 .isActive(true)
+                .cpuRequest("300m")
+                .cpuLimit("1500m")
+                .memoryRequest("768Mi")
+                .memoryLimit("2Gi")
+                .topologySpreadMaxSkew(1)
                 .build();
 
         labTemplateRepository.save(dockerTemplate);
@@ -233,6 +268,12 @@ public class LabTemplateService {
                 .successCriteria("Node.js environment ready with npm packages and sample app")
                 .createdBy("system")
                 .isActive(true)
+                .packageCacheEnabled(true)
+                .cpuRequest("100m")
+                .cpuLimit("500m")
+                .memoryRequest("192Mi")
+                .memoryLimit("512Mi")
+                .topologySpreadMaxSkew(1)
                 .build();
 
         labTemplateRepository.save(nodejsTemplate);
@@ -257,7 +298,7 @@ public class LabTemplateService {
     private void createSetupStep(String templateId, int stepOrder, String title, String description, 
                                 String command, int expectedExitCode, int timeoutSeconds) {
         SetupStep step = SetupStep.builder()
-                .id(UUID.randomUUID().toString())
+                .id(TimeOrderedIds.newId())
                 .stepOrder(stepOrder)
                 .title(title)
                 .description(description)
@@ -269,14 +310,14 @@ public class LabTemplateService {
                 .workingDirectory("/")
                 .build();
         
-        // Set template reference
-        LabTemplate template = labTemplateRepository.findById(templateId).orElse(null);
-        step.setTemplate(template);
+        // Reference proxy, the template row itself is not needed
+        step.setTemplate(labTemplateRepository.getReferenceById(templateId));
         
         setupStepRepository.save(step);
     }
 
     // Rest of the methods remain the same...
+    @Transactional(readOnly = true)
     public List<LabTemplateResponse> getAllActiveTemplates() {
         return labTemplateRepository.findByIsActiveTrueOrderByCreatedAtDesc()
                 .stream()
@@ -284,6 +325,7 @@ public class LabTemplateService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public List<LabTemplateResponse> getTemplatesByType(String labType) {
         return labTemplateRepository.findByLabTypeAndIsActiveTrue(labType)
                 .stream()
@@ -291,12 +333,44 @@ public class LabTemplateService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Ranked search over active templates, served from the in-memory index; only the
+     * templates on the requested page are read from the database.
+     */
+    @Transactional(readOnly = true)
+    public TemplateSearchResponse searchTemplates(String query, String labType, String difficulty, int page, int size) {
+        if (page < 0 || size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid page or size (size 1-" + MAX_SEARCH_PAGE_SIZE + ")");
+        }
+        LabTemplate.Difficulty difficultyFilter = difficulty == null || difficulty.isBlank()
+                ? null : LabTemplate.Difficulty.valueOf(difficulty.toUpperCase());
+        String labTypeFilter = labType == null || labType.isBlank() ? null : labType;
+
+        TemplateSearchIndex.SearchPage result = templateSearchIndex.search(query, labTypeFilter, difficultyFilter, page, size);
+        Map<String, LabTemplate> byId = labTemplateRepository.findAllById(result.getTemplateIds())
+                .stream()
+                .collect(Collectors.toMap(LabTemplate::getId, template -> template));
+
+        return TemplateSearchResponse.builder()
+                .templates(result.getTemplateIds().stream()
+                        .map(byId::get)
+                        .filter(Objects::nonNull)
+                        .map(this::convertToResponse)
+                        .collect(Collectors.toList()))
+                .page(page)
+                .size(size)
+                .total(result.getTotal())
+                .build();
+    }
+
+    @Transactional(readOnly = true)
     public LabTemplateResponse getTemplateById(String templateId) {
         LabTemplate template = labTemplateRepository.findById(templateId)
                 .orElseThrow(() -> new IllegalArgumentException("Template not found: " + templateId));
         return convertToResponse(template);
     }
 
+    @Transactional(readOnly = true)
     public List<SetupStepResponse> getTemplateSteps(String templateId) {
         return setupStepRepository.findByTemplateIdOrderByStepOrder(templateId)
                 .stream()
@@ -305,16 +379,35 @@ public class LabTemplateService {
     }
 
     @Transactional
-    public Lab createLabFromTemplate(CreateLabFromTemplateRequest request) throws Exception {
+    public Lab createLabFromTemplate(CreateLabFromTemplateRequest request) {
         LabTemplate template = labTemplateRepository.findById(request.getTemplateId())
                 .orElseThrow(() -> new IllegalArgumentException("Template not found: " + request.getTemplateId()));
 
-        String labId = "lab-" + request.getUserId() + "-" + System.currentTimeMillis();
-        
         // Create lab instance
-        Lab lab = Lab.builder()
+        Lab lab = newLabFromTemplate(request.getUserId(), template);
+        KubernetesClusters.Target target = labPlacementService.place(request.getUserId());
+        lab.setClusterName(target.getCluster());
+        lab.setNamespace(target.getNamespace());
+        lab.setPodName(KubernetesService.labPodName(lab.getId()));
+
+        labRepository.save(lab);
+
+        // The outbox creates the pod after commit and then queues the setup job
+        podOutbox.createPod(lab);
+
+        log.info("Lab created from template: {} for user: {}", template.getName(), request.getUserId());
+        return lab;
+    }
+
+    /**
+     * Builds a new, unsaved lab instance for the given user from a template
+     */
+    Lab newLabFromTemplate(String userId, LabTemplate template) {
+        UUID labId = TimeOrderedIds.newId();
+
+        return Lab.builder()
                 .id(labId)
-                .userId(request.getUserId())
+                .userId(userId)
                 .templateId(template.getId())
                 .labType(template.getLabType())
                 .status(Lab.LabStatus.CREATING)
@@ -324,70 +417,107 @@ public class LabTemplateService {
                 .accessUrl(generateAccessUrl(labId))
                 .duration(template.getDurationMinutes() * 60) // Convert to seconds
                 .build();
+    }
 
-        labRepository.save(lab);
+    /**
+     * Queues the template setup as a durable job picked up by any replica's worker.
+     * A start delay lets bulk provisioning stage setup across a group of labs.
+     */
+    void executeTemplateSetup(Lab lab, LabTemplate template, long startDelayMillis) {
+        setupJobService.enqueue(lab, template, startDelayMillis);
+    }
 
-        // Create Kubernetes pod with template configuration
-        String podName = kubernetesService.createLabPodFromTemplate(labId, template);
-        lab.setPodName(podName);
-        lab.setSetupStatus(Lab.SetupStatus.SETTING_UP);
-        lab.setSetupStartedAt(LocalDateTime.now());
-        labRepository.save(lab);
+    /**
+     * Runs a claimed setup job, resuming after the last checkpointed step
+     */
+    public void runSetupJob(SetupJob job) {
+        Lab lab = labRepository.findById(job.getLabId()).orElse(null);
+        LabTemplate template = labTemplateRepository.findById(job.getTemplateId()).orElse(null);
+        if (lab == null || template == null) {
+            log.warn("Dropping setup job {}: lab or template no longer exists", job.getId());
+            setupJobService.fail(job, "Lab or template no longer exists");
+            return;
+        }
 
-        // Start asynchronous setup process
-        executeTemplateSetup(lab, template);
+        try {
+            waitForPodRunning(lab, 300); 
+            List<SetupStep> steps = setupStepRepository.findByTemplateIdOrderByStepOrder(template.getId());
+            boolean allSuccess = true;
+            boolean useCache = Boolean.TRUE.equals(template.getPackageCacheEnabled());
 
-        log.info("Lab created from template: {} for user: {}", template.getName(), request.getUserId());
-        return lab;
-    }
+            if (job.getLastCompletedStep() > 0) {
+                log.info("Resuming setup for lab {} after step {}", lab.getId(), job.getLastCompletedStep());
+            }
 
-    private void executeTemplateSetup(Lab lab, LabTemplate template) {
-        // Execute setup steps asynchronously
-        new Thread(() -> {
-            try {
-                waitForPodRunning(lab.getPodName(), 300); 
-                List<SetupStep> steps = setupStepRepository.findByTemplateIdOrderByStepOrder(template.getId());
-                boolean allSuccess = true;
-
-                for (SetupStep step : steps) {
-                    boolean stepSuccess = executeSetupStep(lab, step);
-                    if (!stepSuccess && !step.getContinueOnFailure()) {
-                        allSuccess = false;
-                        break;
-                    }
-                }
+            if (useCache) {
+                runPackageCacheCommand(lab, packageCache.prepareCommand());
+            }
 
-                // Update lab status
-                if (allSuccess) {
-                    lab.setSetupStatus(Lab.SetupStatus.READY);
-                    lab.setStatus(Lab.LabStatus.RUNNING);
-                    lab.setSetupCompletedAt(LocalDateTime.now());
-                } else {
-                    lab.setSetupStatus(Lab.SetupStatus.FAILED);
-                    lab.setStatus(Lab.LabStatus.ERROR);
+            for (SetupStep step : steps) {
+                if (step.getStepOrder() <= job.getLastCompletedStep()) {
+                    continue;
                 }
-                
-                labRepository.save(lab);
-                log.info("Template setup completed for lab: {} with status: {}", lab.getId(), lab.getSetupStatus());
+                // Setup changes the lab, so nothing cached before or during a step stays valid
+                commandResultCache.invalidate(lab.getId());
+                boolean stepSuccess = executeSetupStep(lab, step, useCache);
+                commandResultCache.invalidate(lab.getId());
+                if (Thread.currentThread().isInterrupted()) {
+                    // Shutting down: the lease is released and another replica resumes from the checkpoint
+                    return;
+                }
+                if (!stepSuccess && !step.getContinueOnFailure()) {
+                    allSuccess = false;
+                    break;
+                }
+                if (!setupJobService.checkpoint(job, step.getStepOrder())) {
+                    return;
+                }
+            }
 
-            } catch (Exception e) {
-                log.error("Template setup failed for lab: {}", lab.getId(), e);
-                lab.setSetupStatus(Lab.SetupStatus.FAILED);
-                lab.setStatus(Lab.LabStatus.ERROR);
-                labRepository.save(lab);
+            if (useCache) {
+                runPackageCacheCommand(lab, packageCache.publishCommand());
             }
-        }).start();
+
+            // Update lab status; a lab that expired meanwhile stays expired
+            if (allSuccess) {
+                setupJobService.complete(job);
+            } else {
+                setupJobService.fail(job, "Setup step failed");
+            }
+            labStateTransitions.finishSetup(lab, allSuccess);
+            log.info("Template setup completed for lab: {} with status: {}", lab.getId(), lab.getSetupStatus());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Setup for lab {} interrupted, leaving job {} to be resumed", lab.getId(), job.getId());
+        } catch (Exception e) {
+            log.error("Template setup failed for lab: {}", lab.getId(), e);
+            labStateTransitions.finishSetup(lab, false);
+            setupJobService.fail(job, e.getMessage());
+        }
     }
 
-    private void waitForPodRunning(String podName, int timeoutSeconds) throws Exception {
+    /**
+     * Gives up on a job that keeps getting stranded and fails its lab
+     */
+    public void abandonSetupJob(SetupJob job, String reason) {
+        log.error("Abandoning setup job {} for lab {}: {}", job.getId(), job.getLabId(), reason);
+        setupJobService.fail(job, reason);
+        labRepository.findById(job.getLabId()).ifPresent(lab -> labStateTransitions.finishSetup(lab, false));
+    }
+
+    private void waitForPodRunning(Lab lab, int timeoutSeconds) throws Exception {
+        String podName = lab.getPodName();
         for (int i = 0; i < timeoutSeconds; i += 10) {
             try {
-                String status = kubernetesService.getPodStatus(podName);
+                String status = kubernetesService.getPodStatus(kubernetesService.targetOf(lab), podName);
                 if ("Running".equals(status)) {
                     log.info("Pod {} is now running", podName);
                     return;
                 }
                 Thread.sleep(10000); // Wait 10 seconds
+            } catch (InterruptedException e) {
+                throw e;
             } catch (Exception e) {
                 log.warn("Error checking pod status: {}", e.getMessage());
             }
@@ -395,39 +525,57 @@ public class LabTemplateService {
         throw new RuntimeException("Pod did not reach running state within timeout");
     }
 
-    private boolean executeSetupStep(Lab lab, SetupStep step) {
-        String logId = UUID.randomUUID().toString();
+    private void runPackageCacheCommand(Lab lab, String command) {
+        // The cache only speeds setup up, so failures here never fail the lab
+        try {
+            var result = kubernetesService.executeSetupCommand(kubernetesService.targetOf(lab), lab.getPodName(), command, 120, "/");
+            if (result.getExitCode() != 0) {
+                log.warn("Package cache command failed for lab {}: {}", lab.getId(), result.getError());
+            }
+        } catch (Exception e) {
+            log.warn("Package cache command failed for lab {}: {}", lab.getId(), e.getMessage());
+        }
+    }
+
+    private boolean executeSetupStep(Lab lab, SetupStep step, boolean useCache) {
+        UUID logId = TimeOrderedIds.newId();
         LocalDateTime startTime = LocalDateTime.now();
 
         SetupExecutionLog executionLog = SetupExecutionLog.builder()
                 .id(logId)
                 .stepOrder(step.getStepOrder())
                 .stepTitle(step.getTitle())
-                .command(step.getSetupCommand())
                 .status(SetupExecutionLog.ExecutionStatus.RUNNING)
                 .attemptNumber(1)
                 .startedAt(startTime)
                 .labInstance(lab)
                 .setupStep(step)
                 .build();
+        executionLog.setCommand(step.getSetupCommand());
 
         setupExecutionLogRepository.save(executionLog);
 
         for (int attempt = 1; attempt <= step.getRetryCount(); attempt++) {
             try {
-                log.info("Executing step {} (attempt {}) for lab {}: {}", 
-                        step.getStepOrder(), attempt, lab.getId(), step.getTitle());
+                int timeoutSeconds = setupStepTimings.timeoutSeconds(step, attempt);
+                log.info("Executing step {} (attempt {}, timeout {}s) for lab {}: {}", 
+                        step.getStepOrder(), attempt, timeoutSeconds, lab.getId(), step.getTitle());
 
-                // Execute command in pod
-                var result = kubernetesService.executeSetupCommand(lab.getPodName(), step.getSetupCommand(), 
-                        step.getTimeoutSeconds(), step.getWorkingDirectory());
+                // Execute command in pod, timing this attempt only so the history stays clean
+                LocalDateTime attemptStart = LocalDateTime.now();
+                var result = kubernetesService.executeSetupCommand(kubernetesService.targetOf(lab), lab.getPodName(),
+                        step.getSetupCommand(), timeoutSeconds, step.getWorkingDirectory());
 
                 LocalDateTime endTime = LocalDateTime.now();
-                long executionTime = java.time.Duration.between(startTime, endTime).toMillis();
+                long executionTime = java.time.Duration.between(attemptStart, endTime).toMillis();
 
                 executionLog.setCompletedAt(endTime);
                 executionLog.setExecutionTimeMs(executionTime);
-                executionLog.setOutput(result.getOutput());
+                String cacheReport = useCache ? packageCache.hitRateReport(result.getOutput()) : null;
+                if (cacheReport != null) {
+                    log.info("Step {} for lab {}: {}", step.getStepOrder(), lab.getId(), cacheReport);
+                }
+                executionLog.setOutput(cacheReport == null ? result.getOutput() : result.getOutput() + "\n" + cacheReport);
                 executionLog.setErrorMessage(result.getError());
                 executionLog.setExitCode(result.getExitCode());
                 executionLog.setAttemptNumber(attempt);
@@ -439,18 +587,24 @@ public class LabTemplateService {
                     return true;
                 } else {
                     if (attempt == step.getRetryCount()) {
-                        executionLog.setStatus(SetupExecutionLog.ExecutionStatus.FAILED);
+                        // A timeout tells SetupStepTimings the step needs longer than this attempt had
+                        executionLog.setStatus(result.isTimedOut()
+                                ? SetupExecutionLog.ExecutionStatus.TIMEOUT : SetupExecutionLog.ExecutionStatus.FAILED);
                         setupExecutionLogRepository.save(executionLog);
                         log.error("Step {} failed after {} attempts for lab {}", 
                                 step.getStepOrder(), attempt, lab.getId());
                         return false;
                     } else {
-                        log.warn("Step {} failed (attempt {}), retrying for lab {}", 
-                                step.getStepOrder(), attempt, lab.getId());
-                        Thread.sleep(2000); // Wait before retry
+                        long delay = setupStepTimings.retryDelayMillis(attempt);
+                        log.warn("Step {} failed (attempt {}), retrying in {}ms for lab {}", 
+                                step.getStepOrder(), attempt, delay, lab.getId());
+                        Thread.sleep(delay);
                     }
                 }
 
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             } catch (Exception e) {
                 log.error("Error executing step {} (attempt {}) for lab {}: {}", 
                         step.getStepOrder(), attempt, lab.getId(), e.getMessage());
@@ -462,17 +616,47 @@ public class LabTemplateService {
                     setupExecutionLogRepository.save(executionLog);
                     return false;
                 }
+                try {
+                    Thread.sleep(setupStepTimings.retryDelayMillis(attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
             }
         }
 
         return false;
     }
 
+    @Transactional(readOnly = true)
     public List<SetupExecutionLog> getLabSetupLogs(String labId) {
-        return setupExecutionLogRepository.findByLabInstanceIdOrderByStepOrder(labId);
+        return setupExecutionLogRepository.findByLabInstanceIdOrderByStepOrder(TimeOrderedIds.parse(labId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<SetupExecutionLogRepository.Summary> getLabSetupLogSummaries(String labId) {
+        return setupExecutionLogRepository.findSummariesByLabInstanceId(TimeOrderedIds.parse(labId));
+    }
+
+    /**
+     * Output (or error message) of one setup log entry, read without the other columns
+     */
+    @Transactional(readOnly = true)
+    public String getSetupLogText(String labId, String logId, boolean errorMessage) {
+        UUID labUuid = TimeOrderedIds.parse(labId);
+        UUID logUuid = TimeOrderedIds.parse(logId);
+        Optional<byte[]> compressed = errorMessage
+                ? setupExecutionLogRepository.findErrorMessage(labUuid, logUuid)
+                : setupExecutionLogRepository.findOutput(labUuid, logUuid);
+        // An empty result is either a missing row or a NULL column
+        if (compressed.isEmpty() && !setupExecutionLogRepository.existsByIdAndLabInstanceId(logUuid, labUuid)) {
+            throw new IllegalArgumentException("Setup log not found: " + logId);
+        }
+        String text = CompressedText.decompress(compressed.orElse(null));
+        return text == null ? "" : text;
     }
 
-    private String generateAccessUrl(String labId) {
+    private String generateAccessUrl(UUID labId) {
         return "http://192.168.122.93:30000/" + labId;
     }
 
@@ -490,12 +674,13 @@ public class LabTemplateService {
                 .createdAt(template.getCreatedAt())
                 .createdBy(template.getCreatedBy())
                 .isActive(template.getIsActive())
+                .packageCacheEnabled(template.getPackageCacheEnabled())
                 .build();
     }
 
     private SetupStepResponse convertStepToResponse(SetupStep step) {
         return SetupStepResponse.builder()
-                .id(step.getId())
+                .id(step.getId().toString())
                 .stepOrder(step.getStepOrder())
                 .title(step.getTitle())
                 .description(step.getDescription())
@@ -0,0 +1,107 @@
+package com.example.be.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.be.config.SchedulingConfig;
+import com.example.be.repository.SchedulerLeaseRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Database-lease leader election for background loops, so that with several replicas
+ * cleanup, expiry and reconciliation run on exactly one of them.
+ * <p>
+ * The leader renews its lease well before it expires; if it dies, another replica
+ * takes over within one lease period. Leadership is checked locally against the
+ * time of the last successful renewal, minus a safety margin, so callers never act
+ * on a lease that may already have passed to someone else.
+ */
+@Slf4j
+@Service
+public class LeaderElection {
+
+    /**
+     * Lease covering lab cleanup, expiry and reconciliation
+     */
+    public static final String MAINTENANCE = "lab-maintenance";
+
+    private final SchedulerLeaseRepository schedulerLeaseRepository;
+    private final ReplicaIdentity replicaIdentity;
+    private final TransactionTemplate transactionTemplate;
+
+    // Lease name -> System.nanoTime() until which this replica may act as leader
+    private final Map<String, Long> heldUntil = new ConcurrentHashMap<>();
+
+    @Value("${lab.leader.lease-ms:15000}")
+    private long leaseMillis;
+
+    public LeaderElection(SchedulerLeaseRepository schedulerLeaseRepository, ReplicaIdentity replicaIdentity,
+                          TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.schedulerLeaseRepository = schedulerLeaseRepository;
+        this.replicaIdentity = replicaIdentity;
+        this.transactionTemplate = transactionTemplate;
+        meterRegistry.gauge("lab.leader", this, election -> election.isLeader(MAINTENANCE) ? 1 : 0);
+    }
+
+    public boolean isLeader(String lease) {
+        Long until = heldUntil.get(lease);
+        return until != null && System.nanoTime() < until;
+    }
+
+    /**
+     * Tries to take or renew the lease right now
+     */
+    public boolean tryAcquire(String lease) {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                schedulerLeaseRepository.createIfMissing(lease);
+                return schedulerLeaseRepository.tryAcquire(lease, replicaIdentity.getId(), leaseMillis) == 1;
+            }));
+        } catch (Exception e) {
+            log.warn("Failed to renew lease {}: {}", lease, e.getMessage());
+            acquired = false;
+        }
+
+        boolean wasLeader = isLeader(lease);
+        if (acquired) {
+            // Keep a third of the lease as margin for the time the renewal itself took
+            heldUntil.put(lease, start + (leaseMillis * 2 / 3) * 1_000_000);
+            if (!wasLeader) {
+                log.info("Replica {} is now leader for {}", replicaIdentity.getId(), lease);
+            }
+        } else {
+            heldUntil.remove(lease);
+            if (wasLeader) {
+                log.warn("Replica {} lost leadership for {}", replicaIdentity.getId(), lease);
+            }
+        }
+        return acquired;
+    }
+
+    @Scheduled(fixedDelayString = "${lab.leader.renew-interval-ms:5000}", scheduler = SchedulingConfig.LEASE_SCHEDULER)
+    public void renew() {
+        tryAcquire(MAINTENANCE);
+    }
+
+    @PreDestroy
+    public void release() {
+        if (heldUntil.remove(MAINTENANCE) != null) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        schedulerLeaseRepository.release(MAINTENANCE, replicaIdentity.getId()));
+                log.info("Released lease {}", MAINTENANCE);
+            } catch (Exception e) {
+                log.warn("Failed to release lease {}: {}", MAINTENANCE, e.getMessage());
+            }
+        }
+    }
+}
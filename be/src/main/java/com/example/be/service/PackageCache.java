@@ -0,0 +1,151 @@
+package com.example.be.service;
+
+import io.kubernetes.client.openapi.models.V1EnvVar;
+import io.kubernetes.client.openapi.models.V1HostPathVolumeSource;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeClaimVolumeSource;
+import io.kubernetes.client.openapi.models.V1Volume;
+import io.kubernetes.client.openapi.models.V1VolumeMount;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Shared apt/pip/npm package cache for template labs.
+ * <p>
+ * The cache lives on a node hostPath (or a ReadWriteMany PVC) mounted at {@link #MOUNT_PATH}.
+ * pip and npm write their caches with atomic renames, so they use the shared directories directly.
+ * apt locks its archives directory, so each lab keeps a private archives directory that is seeded
+ * with symlinks to the shared .deb files and new downloads are published back with copy + rename.
+ */
+@Component
+public class PackageCache {
+
+    public static final String VOLUME_NAME = "package-cache";
+    public static final String MOUNT_PATH = "/var/cache/lab-packages";
+
+    private static final String APT_DIR = MOUNT_PATH + "/apt";
+    private static final String PIP_DIR = MOUNT_PATH + "/pip";
+    private static final String NPM_DIR = MOUNT_PATH + "/npm";
+
+    private static final Pattern APT_NEED_TO_GET =
+            Pattern.compile("Need to get ([\\d.,]+) (B|kB|MB|GB)(?:/([\\d.,]+) (B|kB|MB|GB))? of archives");
+
+    @Value("${lab.package-cache.host-path:/var/cache/lab-packages}")
+    private String hostPath;
+
+    // When set, a ReadWriteMany claim is used instead of the node-local hostPath
+    @Value("${lab.package-cache.pvc-claim:}")
+    private String pvcClaim;
+
+    public V1Volume volume() {
+        V1Volume volume = new V1Volume().name(VOLUME_NAME);
+        if (pvcClaim != null && !pvcClaim.isBlank()) {
+            return volume.persistentVolumeClaim(new V1PersistentVolumeClaimVolumeSource().claimName(pvcClaim));
+        }
+        return volume.hostPath(new V1HostPathVolumeSource().path(hostPath).type("DirectoryOrCreate"));
+    }
+
+    public V1VolumeMount volumeMount() {
+        return new V1VolumeMount().name(VOLUME_NAME).mountPath(MOUNT_PATH);
+    }
+
+    public List<V1EnvVar> env() {
+        return List.of(
+                new V1EnvVar().name("PIP_CACHE_DIR").value(PIP_DIR),
+                new V1EnvVar().name("npm_config_cache").value(NPM_DIR));
+    }
+
+    /**
+     * Run once before the setup steps. Also writes global pip/npm config because
+     * steps that use "su - user" start with a clean environment.
+     */
+    public String prepareCommand() {
+        return "mkdir -p " + APT_DIR + " " + PIP_DIR + " " + NPM_DIR + " && " +
+               "chmod 1777 " + PIP_DIR + " " + NPM_DIR + " && " +
+               "printf '[global]\\ncache-dir = " + PIP_DIR + "\\n' > /etc/pip.conf && " +
+               "(command -v npm >/dev/null 2>&1 && npm config set cache " + NPM_DIR + " --global || true) && " +
+               "if [ -d /etc/apt ]; then " +
+               "rm -f /etc/apt/apt.conf.d/docker-clean && " +
+               "echo 'Binary::apt::APT::Keep-Downloaded-Packages \"true\";' > /etc/apt/apt.conf.d/01keep-debs && " +
+               "mkdir -p /var/cache/apt/archives && " +
+               "for f in " + APT_DIR + "/*.deb; do [ -e \"$f\" ] && ln -sf \"$f\" /var/cache/apt/archives/; done; " +
+               "fi; echo 'Package cache ready'";
+    }
+
+    /**
+     * Run once after the setup steps. Copies newly downloaded .deb files into the shared
+     * cache through a temp file and rename so concurrent labs never see partial files.
+     */
+    public String publishCommand() {
+        return "if [ -d /var/cache/apt/archives ]; then " +
+               "for f in /var/cache/apt/archives/*.deb; do " +
+               "[ -f \"$f\" ] && [ ! -L \"$f\" ] || continue; " +
+               "n=$(basename \"$f\"); [ -e \"" + APT_DIR + "/$n\" ] && continue; " +
+               "cp \"$f\" \"" + APT_DIR + "/.$n.$$\" && mv -f \"" + APT_DIR + "/.$n.$$\" \"" + APT_DIR + "/$n\"; " +
+               "done; fi; echo 'Package cache published'";
+    }
+
+    /**
+     * Summarises cache effectiveness from a step's output. apt reports how much of the
+     * archive set still had to be downloaded and pip reports cached vs downloaded files.
+     * npm does not report cache hits in its output, so it is not counted.
+     *
+     * @return a one-line report, or null when the step did not install packages
+     */
+    public String hitRateReport(String output) {
+        if (output == null || output.isEmpty()) {
+            return null;
+        }
+        List<String> parts = new ArrayList<>();
+
+        Matcher apt = APT_NEED_TO_GET.matcher(output);
+        double needed = 0;
+        double total = 0;
+        while (apt.find()) {
+            double toGet = toBytes(apt.group(1), apt.group(2));
+            needed += toGet;
+            total += apt.group(3) != null ? toBytes(apt.group(3), apt.group(4)) : toGet;
+        }
+        if (total > 0) {
+            double cached = total - needed;
+            parts.add(String.format(Locale.ROOT, "apt %.1f MB of %.1f MB from cache (%.0f%%)",
+                    cached / 1_000_000, total / 1_000_000, cached * 100 / total));
+        }
+
+        int pipHits = count(output, "Using cached ");
+        int pipMisses = count(output, "Downloading ");
+        if (pipHits + pipMisses > 0) {
+            parts.add(String.format(Locale.ROOT, "pip %d of %d files from cache (%.0f%%)",
+                    pipHits, pipHits + pipMisses, pipHits * 100.0 / (pipHits + pipMisses)));
+        }
+
+        return parts.isEmpty() ? null : "[package-cache] " + String.join("; ", parts);
+    }
+
+    private static double toBytes(String value, String unit) {
+        double amount = Double.parseDouble(value.replace(",", ""));
+        switch (unit) {
+            case "kB":
+                return amount * 1_000;
+            case "MB":
+                return amount * 1_000_000;
+            case "GB":
+                return amount * 1_000_000_000;
+            default:
+                return amount;
+        }
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.be.model.Lab;
+import com.example.be.model.PodOutboxEntry;
+import com.example.be.repository.PodOutboxRepository;
+import com.example.be.util.TimeOrderedIds;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for pod creates and deletes.
+ * <p>
+ * Callers record the intent inside their own (short) transaction, so it commits or rolls back
+ * together with the lab row and no API server round-trip holds a database connection. The
+ * dispatcher claims entries like setup jobs (SKIP LOCKED plus a lease) and runs them afterwards.
+ * Pod names are derived from the lab id, so repeating a create or delete after a crash is
+ * harmless: 409 on create and 404 on delete count as done.
+ */
+@Slf4j
+@Service
+public class PodOutbox {
+
+    private final PodOutboxRepository podOutboxRepository;
+    private final ReplicaIdentity replicaIdentity;
+    private final KubernetesClusters clusters;
+    // The dispatcher depends on the lab services, which depend on this
+    private final ObjectProvider<PodOutboxDispatcher> dispatcher;
+
+    @Value("${lab.pod-outbox.lease-seconds:120}")
+    private long leaseSeconds;
+
+    public PodOutbox(PodOutboxRepository podOutboxRepository, ReplicaIdentity replicaIdentity,
+                     KubernetesClusters clusters, ObjectProvider<PodOutboxDispatcher> dispatcher) {
+        this.podOutboxRepository = podOutboxRepository;
+        this.replicaIdentity = replicaIdentity;
+        this.clusters = clusters;
+        this.dispatcher = dispatcher;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void createPod(Lab lab) {
+        enqueue(lab, PodOutboxEntry.Operation.CREATE_POD);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deletePod(Lab lab) {
+        if (lab.getPodName() != null) {
+            enqueue(lab, PodOutboxEntry.Operation.DELETE_POD);
+        }
+    }
+
+    private void enqueue(Lab lab, PodOutboxEntry.Operation operation) {
+        KubernetesClusters.Target target = clusters.targetOf(lab);
+        PodOutboxEntry entry = podOutboxRepository.save(PodOutboxEntry.builder()
+                .id(TimeOrderedIds.newId())
+                .labId(lab.getId())
+                .operation(operation)
+                .clusterName(target.getCluster())
+                .namespace(target.getNamespace())
+                .podName(lab.getPodName())
+                .status(PodOutboxEntry.EntryStatus.PENDING)
+                .build());
+        log.debug("Outbox {} {} for lab {}", entry.getId(), operation, lab.getId());
+
+        // Dispatch right after commit instead of waiting for the next poll
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.getResource(this) == null) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PodOutbox.this);
+                    if (status == STATUS_COMMITTED) {
+                        dispatcher.getObject().dispatchSoon();
+                    }
+                }
+            });
+        }
+    }
+
+    @Transactional
+    public List<PodOutboxEntry> claim(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        List<UUID> ids = new ArrayList<>();
+        for (PodOutboxEntry entry : podOutboxRepository.lockClaimable(limit)) {
+            if (entry.getStatus() == PodOutboxEntry.EntryStatus.RUNNING) {
+                log.warn("Outbox entry {} lease held by {} expired, retrying {}",
+                        entry.getId(), entry.getLeaseOwner(), entry.getOperation());
+            }
+            ids.add(entry.getId());
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        podOutboxRepository.claim(ids.stream().map(TimeOrderedIds::toBytes).collect(Collectors.toList()),
+                replicaIdentity.getId(), leaseSeconds * 1000);
+        // Re-read in lock order, which is entry id order
+        Map<UUID, PodOutboxEntry> claimed = podOutboxRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(PodOutboxEntry::getId, Function.identity()));
+        return ids.stream().map(claimed::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Joins the caller's transaction, so follow-up lab changes commit together with it
+     */
+    @Transactional
+    public void complete(PodOutboxEntry entry) {
+        podOutboxRepository.finish(entry.getId(), replicaIdentity.getId(), entry.getAttempts(),
+                PodOutboxEntry.EntryStatus.DONE, null, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void fail(PodOutboxEntry entry, String error) {
+        podOutboxRepository.finish(entry.getId(), replicaIdentity.getId(), entry.getAttempts(),
+                PodOutboxEntry.EntryStatus.FAILED, error, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void retryLater(PodOutboxEntry entry, String error, long delayMillis) {
+        podOutboxRepository.reschedule(TimeOrderedIds.toBytes(entry.getId()), replicaIdentity.getId(), entry.getAttempts(),
+                error, delayMillis);
+    }
+
+    /**
+     * Restarts the lease of a claimed entry
+     *
+     * @return false when the lease ran out and the entry may already be claimed again
+     */
+    @Transactional
+    public boolean renew(PodOutboxEntry entry) {
+        return podOutboxRepository.renewLease(TimeOrderedIds.toBytes(entry.getId()), replicaIdentity.getId(),
+                entry.getAttempts(), leaseSeconds * 1000) > 0;
+    }
+
+    @Transactional
+    public int purgeDone(LocalDateTime cutoff) {
+        return podOutboxRepository.purge(PodOutboxEntry.EntryStatus.DONE, cutoff);
+    }
+
+    /**
+     * Failed entries are kept longer than done ones, for the orphan pods and labs they explain
+     */
+    @Transactional
+    public int purgeFailed(LocalDateTime cutoff) {
+        return podOutboxRepository.purge(PodOutboxEntry.EntryStatus.FAILED, cutoff);
+    }
+}
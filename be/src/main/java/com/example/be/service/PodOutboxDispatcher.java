@@ -0,0 +1,296 @@
+package com.example.be.service;
+
+import io.kubernetes.client.openapi.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.be.dto.CreateLabRequest;
+import com.example.be.model.Lab;
+import com.example.be.model.LabTemplate;
+import com.example.be.model.PodOutboxEntry;
+import com.example.be.repository.LabRepository;
+import com.example.be.repository.LabTemplateRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carries out claimed {@link PodOutbox} entries on a bounded pool, outside any database
+ * transaction. The follow-up lab change (setup queued, or the lab failed) commits in the same
+ * short transaction that marks the entry done, so a crash in between only repeats the call.
+ * Transient API errors are retried with backoff; anything else fails the entry.
+ * <p>
+ * Polls run on their own thread and claim only as many entries as there are idle workers, so a
+ * claimed entry never waits in a queue; its lease is restarted when a worker picks it up, and an
+ * entry whose lease ran out meanwhile is left to whoever claimed it again.
+ */
+@Slf4j
+@Component
+public class PodOutboxDispatcher {
+
+    // 0 = connection/IO failure wrapped by the client
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(0, 429, 500, 502, 503, 504);
+
+    private final PodOutbox podOutbox;
+    private final KubernetesService kubernetesService;
+    private final KubernetesClusters clusters;
+    private final LabRepository labRepository;
+    private final LabTemplateRepository labTemplateRepository;
+    private final LabTemplateService labTemplateService;
+    private final LabStateTransitions labStateTransitions;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final AtomicBoolean pollRequested = new AtomicBoolean();
+    private Semaphore idleWorkers;
+    private ExecutorService executor;
+    private ExecutorService poller;
+
+    @Value("${lab.pod-outbox.worker-threads:8}")
+    private int workerThreads;
+
+    @Value("${lab.pod-outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${lab.pod-outbox.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${lab.pod-outbox.max-retry-backoff-ms:60000}")
+    private long maxRetryBackoffMs;
+
+    @Value("${lab.pod-outbox.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${lab.pod-outbox.failed-retention-hours:168}")
+    private long failedRetentionHours;
+
+    public PodOutboxDispatcher(PodOutbox podOutbox, KubernetesService kubernetesService, KubernetesClusters clusters,
+                               LabRepository labRepository, LabTemplateRepository labTemplateRepository,
+                               LabTemplateService labTemplateService, LabStateTransitions labStateTransitions,
+                               TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.podOutbox = podOutbox;
+        this.kubernetesService = kubernetesService;
+        this.clusters = clusters;
+        this.labRepository = labRepository;
+        this.labTemplateRepository = labTemplateRepository;
+        this.labTemplateService = labTemplateService;
+        this.labStateTransitions = labStateTransitions;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("lab.pod.outbox.in-flight", running, Set::size);
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        idleWorkers = new Semaphore(workerThreads);
+        // Never more tasks than workers, see poll(); the queue only covers a worker finishing its last one
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerThreads), runnable -> {
+            Thread thread = new Thread(runnable, "pod-outbox-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pod-outbox-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Pod outbox dispatcher started with {} threads", workerThreads);
+    }
+
+    /**
+     * Polls now, off the caller's thread; called after a transaction that wrote entries commits
+     */
+    public void dispatchSoon() {
+        // One queued poll covers any number of commits
+        if (pollRequested.compareAndSet(false, true)) {
+            poller.execute(() -> {
+                pollRequested.set(false);
+                poll();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lab.pod-outbox.poll-interval-ms:1000}")
+    public void poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        int reserved = idleWorkers.drainPermits();
+        try {
+            List<PodOutboxEntry> entries = podOutbox.claim(reserved);
+            for (PodOutboxEntry entry : entries) {
+                running.add(entry.getId());
+                executor.execute(() -> {
+                    try {
+                        if (podOutbox.renew(entry)) {
+                            dispatch(entry);
+                        } else {
+                            log.warn("Outbox entry {} lease ran out before dispatch, leaving it to its new claim", entry.getId());
+                        }
+                    } catch (Exception e) {
+                        // The lease runs out and the entry is claimed again
+                        log.error("Failed to renew lease of outbox entry {}: {}", entry.getId(), e.getMessage());
+                    } finally {
+                        running.remove(entry.getId());
+                        idleWorkers.release();
+                    }
+                });
+                reserved--;
+            }
+        } catch (Exception e) {
+            log.error("Failed to claim pod outbox entries: {}", e.getMessage(), e);
+        } finally {
+            idleWorkers.release(reserved);
+            polling.set(false);
+        }
+    }
+
+    private void dispatch(PodOutboxEntry entry) {
+        meterRegistry.timer("lab.pod.outbox.lag", "operation", entry.getOperation().name())
+                .record(Duration.between(entry.getCreatedAt(), LocalDateTime.now()));
+        KubernetesClusters.Target target = clusters.targetOf(entry.getClusterName(), entry.getNamespace());
+        try {
+            if (entry.getOperation() == PodOutboxEntry.Operation.CREATE_POD) {
+                createPod(entry, target);
+            } else {
+                deletePod(entry, target);
+            }
+            record(entry, "done");
+        } catch (ApiException e) {
+            handleFailure(entry, e.getCode(), "HTTP " + e.getCode() + ": " + e.getMessage());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // Bad lab or template data, repeating the call cannot help
+            handleFailure(entry, -1, e.getMessage());
+        } catch (Exception e) {
+            handleFailure(entry, 0, e.getMessage());
+        }
+    }
+
+    private void createPod(PodOutboxEntry entry, KubernetesClusters.Target target) throws Exception {
+        Lab lab = labRepository.findById(entry.getLabId()).orElse(null);
+        if (lab == null) {
+            // Deleted before its pod was created; the delete entry behind this one finds nothing
+            podOutbox.complete(entry);
+            return;
+        }
+
+        LabTemplate template = null;
+        try {
+            if (lab.getTemplateId() != null) {
+                template = labTemplateRepository.findById(lab.getTemplateId())
+                        .orElseThrow(() -> new IllegalStateException("Template " + lab.getTemplateId() + " no longer exists"));
+                kubernetesService.createLabPodFromTemplate(target, lab.getId(), template);
+            } else {
+                kubernetesService.createLabPod(target, lab.getId(), requestOf(lab));
+            }
+        } catch (ApiException e) {
+            if (e.getCode() != 409) {
+                throw e;
+            }
+            log.info("Pod {} for lab {} already exists, treating create as done", entry.getPodName(), lab.getId());
+        }
+
+        LabTemplate setupTemplate = template;
+        transactionTemplate.executeWithoutResult(status -> {
+            // Skipped when the lab was deleted, expired or already set up meanwhile
+            if (setupTemplate != null && labStateTransitions.startSetup(lab)) {
+                labTemplateService.executeTemplateSetup(lab, setupTemplate, 0);
+            }
+            podOutbox.complete(entry);
+        });
+    }
+
+    private void deletePod(PodOutboxEntry entry, KubernetesClusters.Target target) throws Exception {
+        try {
+            kubernetesService.deletePod(target, entry.getPodName());
+        } catch (ApiException e) {
+            if (e.getCode() != 404) {
+                throw e;
+            }
+            log.debug("Pod {} already gone, treating delete as done", entry.getPodName());
+        }
+        podOutbox.complete(entry);
+    }
+
+    private void handleFailure(PodOutboxEntry entry, int status, String error) {
+        try {
+            if (RETRYABLE_STATUS.contains(status) && entry.getAttempts() < maxAttempts) {
+                long delay = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(entry.getAttempts() - 1, 20));
+                log.warn("Outbox {} for lab {} failed (attempt {}/{}), retrying in {}ms: {}",
+                        entry.getOperation(), entry.getLabId(), entry.getAttempts(), maxAttempts, delay, error);
+                podOutbox.retryLater(entry, error, delay);
+                record(entry, "retry");
+                return;
+            }
+
+            log.error("Outbox {} for lab {} failed permanently: {}", entry.getOperation(), entry.getLabId(), error);
+            transactionTemplate.executeWithoutResult(tx -> {
+                if (entry.getOperation() == PodOutboxEntry.Operation.CREATE_POD) {
+                    labRepository.findById(entry.getLabId()).ifPresent(labStateTransitions::failCreate);
+                }
+                // A failed delete leaves an orphan pod, reported by the reconciler
+                podOutbox.fail(entry, error);
+            });
+            record(entry, "failed");
+        } catch (Exception e) {
+            // The lease runs out and the entry is claimed again
+            log.error("Failed to record outcome of outbox entry {}: {}", entry.getId(), e.getMessage(), e);
+        }
+    }
+
+    private void record(PodOutboxEntry entry, String outcome) {
+        meterRegistry.counter("lab.pod.outbox.dispatched", "operation", entry.getOperation().name(), "outcome", outcome)
+                .increment();
+    }
+
+    private static CreateLabRequest requestOf(Lab lab) {
+        CreateLabRequest request = new CreateLabRequest();
+        request.setUserId(lab.getUserId());
+        request.setLabType(lab.getLabType());
+        request.setDuration(lab.getDuration());
+        return request;
+    }
+
+    @Scheduled(fixedDelay = 3600000)
+    public void purgeFinished() {
+        try {
+            int done = podOutbox.purgeDone(LocalDateTime.now().minusHours(retentionHours));
+            int failed = podOutbox.purgeFailed(LocalDateTime.now().minusHours(failedRetentionHours));
+            if (done + failed > 0) {
+                log.info("Purged {} dispatched and {} failed pod outbox entries", done, failed);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to purge pod outbox: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Entries cut off here keep their lease until it expires, then another replica repeats them
+        poller.shutdownNow();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * Identifies this backend replica when it takes leases on shared work
+ */
+@Slf4j
+@Component
+public class ReplicaIdentity {
+
+    private final String id;
+
+    public ReplicaIdentity(@Value("${lab.replica-id:}") String configuredId) {
+        this.id = configuredId.isBlank() ? defaultId() : configuredId;
+        log.info("Backend replica id: {}", id);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    private static String defaultId() {
+        // Hostname is the pod name in Kubernetes; the suffix keeps restarts distinguishable
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "backend";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.be.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.be.model.Lab;
+import com.example.be.model.LabTemplate;
+import com.example.be.model.SetupJob;
+import com.example.be.repository.SetupJobRepository;
+import com.example.be.util.TimeOrderedIds;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Durable queue of template setup jobs shared by all backend replicas.
+ * Jobs are claimed with SELECT ... FOR UPDATE SKIP LOCKED and held through a lease
+ * that the owning replica renews; an expired lease makes the job claimable again,
+ * and the new owner resumes after the last checkpointed step. Lease times come from
+ * the database clock, see {@link SetupJobRepository}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SetupJobService {
+
+    private final SetupJobRepository setupJobRepository;
+    private final ReplicaIdentity replicaIdentity;
+
+    @Value("${lab.setup.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${lab.setup.max-claim-attempts:3}")
+    private int maxClaimAttempts;
+
+    @Transactional
+    public SetupJob enqueue(Lab lab, LabTemplate template, long startDelayMillis) {
+        SetupJob job = SetupJob.builder()
+                .id(TimeOrderedIds.newId())
+                .labId(lab.getId())
+                .templateId(template.getId())
+                .status(SetupJob.JobStatus.PENDING)
+                .availableAt(LocalDateTime.now().plusNanos(startDelayMillis * 1_000_000))
+                .build();
+        job = setupJobRepository.save(job);
+        log.info("Setup job {} queued for lab {}", job.getId(), lab.getId());
+        return job;
+    }
+
+    /**
+     * Claims up to {@code limit} jobs for this replica. Jobs that were already claimed
+     * too many times (e.g. they keep crashing their worker) are failed instead.
+     */
+    @Transactional
+    public List<SetupJob> claim(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        List<UUID> ids = new ArrayList<>();
+        for (SetupJob job : setupJobRepository.lockClaimable(limit)) {
+            if (job.getStatus() == SetupJob.JobStatus.RUNNING) {
+                log.warn("Setup job {} lease held by {} expired, taking over at step {}",
+                        job.getId(), job.getLeaseOwner(), job.getLastCompletedStep() + 1);
+            }
+            ids.add(job.getId());
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        setupJobRepository.claim(toBytes(ids), replicaIdentity.getId(), leaseSeconds * 1000);
+        return setupJobRepository.findAllById(ids);
+    }
+
+    public boolean exceededAttempts(SetupJob job) {
+        return job.getAttempts() > maxClaimAttempts;
+    }
+
+    /**
+     * Records a finished step and extends the lease.
+     *
+     * @return false when this replica no longer owns the job and must stop working on it
+     */
+    @Transactional
+    public boolean checkpoint(SetupJob job, int stepOrder) {
+        int updated = setupJobRepository.checkpoint(TimeOrderedIds.toBytes(job.getId()), replicaIdentity.getId(), stepOrder,
+                leaseSeconds * 1000);
+        if (updated == 0) {
+            log.warn("Lost lease on setup job {} for lab {}", job.getId(), job.getLabId());
+            return false;
+        }
+        job.setLastCompletedStep(stepOrder);
+        return true;
+    }
+
+    @Transactional
+    public void renewLeases(Collection<UUID> jobIds) {
+        if (!jobIds.isEmpty()) {
+            setupJobRepository.renewLeases(toBytes(jobIds), replicaIdentity.getId(), leaseSeconds * 1000);
+        }
+    }
+
+    /**
+     * Expires this replica's leases right away so another replica can resume the jobs
+     */
+    @Transactional
+    public void releaseLeases(Collection<UUID> jobIds) {
+        if (!jobIds.isEmpty()) {
+            setupJobRepository.releaseLeases(toBytes(jobIds), replicaIdentity.getId());
+        }
+    }
+
+    @Transactional
+    public void complete(SetupJob job) {
+        setupJobRepository.finish(job.getId(), replicaIdentity.getId(), SetupJob.JobStatus.COMPLETED, null, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void fail(SetupJob job, String error) {
+        setupJobRepository.finish(job.getId(), replicaIdentity.getId(), SetupJob.JobStatus.FAILED, error, LocalDateTime.now());
+    }
+
+    private static List<byte[]> toBytes(Collection<UUID> ids) {
+        return ids.stream().map(TimeOrderedIds::toBytes).collect(Collectors.toList());
+    }
+}
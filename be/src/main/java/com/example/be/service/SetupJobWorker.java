@@ -0,0 +1,102 @@
+package com.example.be.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.be.config.SchedulingConfig;
+import com.example.be.model.SetupJob;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the setup job queue and runs claimed jobs on a bounded pool.
+ * Every replica runs one worker, so setup capacity grows with the number of replicas.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SetupJobWorker {
+
+    private final SetupJobService setupJobService;
+    private final LabTemplateService labTemplateService;
+
+    private final Set<UUID> runningJobs = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+
+    @Value("${lab.setup.worker-threads:16}")
+    private int workerThreads;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "setup-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Setup job worker started with {} threads", workerThreads);
+    }
+
+    @Scheduled(fixedDelayString = "${lab.setup.poll-interval-ms:2000}")
+    public void poll() {
+        int free = workerThreads - runningJobs.size();
+        if (free <= 0) {
+            return;
+        }
+
+        List<SetupJob> jobs;
+        try {
+            jobs = setupJobService.claim(free);
+        } catch (Exception e) {
+            log.error("Failed to claim setup jobs: {}", e.getMessage(), e);
+            return;
+        }
+
+        for (SetupJob job : jobs) {
+            if (setupJobService.exceededAttempts(job)) {
+                labTemplateService.abandonSetupJob(job, "Setup job exceeded " + (job.getAttempts() - 1) + " claim attempts");
+                continue;
+            }
+            runningJobs.add(job.getId());
+            executor.submit(() -> {
+                try {
+                    labTemplateService.runSetupJob(job);
+                } catch (Exception e) {
+                    log.error("Setup job {} crashed: {}", job.getId(), e.getMessage(), e);
+                } finally {
+                    runningJobs.remove(job.getId());
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lab.setup.lease-renew-interval-ms:15000}", scheduler = SchedulingConfig.LEASE_SCHEDULER)
+    public void renewLeases() {
+        try {
+            setupJobService.renewLeases(Set.copyOf(runningJobs));
+        } catch (Exception e) {
+            log.error("Failed to renew setup job leases: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Set<UUID> inFlight = Set.copyOf(runningJobs);
+        executor.shutdownNow();
+        if (!inFlight.isEmpty()) {
+            log.info("Releasing {} setup job leases on shutdown", inFlight.size());
+            setupJobService.releaseLeases(inFlight);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.be.model.LabTemplate;
+import com.example.be.model.SetupExecutionLog;
+import com.example.be.model.SetupStep;
+import com.example.be.repository.LabTemplateRepository;
+import com.example.be.repository.SetupExecutionLogRepository;
+import com.example.be.repository.SetupStepRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Learns how long setup steps really take from the recorded execution logs.
+ * <p>
+ * A step with enough history gets a timeout of p99 times a safety margin, capped by its configured
+ * timeout, so a hung apt-get fails after ~40s instead of the full 240s when it normally needs 20s.
+ * Each retry doubles the learned timeout (still capped), which gives a slow but healthy run
+ * (cold package mirror) room to finish. Template setup estimates are the sum of the step medians.
+ * <p>
+ * Attempts that timed out are censored samples: the step needed longer than they ran. They count
+ * as samples at their duration, and p99 never drops below the longest of them, so the learned
+ * timeout always exceeds the last one that was too short instead of repeating it.
+ */
+@Slf4j
+@Component
+public class SetupStepTimings {
+
+    private final SetupExecutionLogRepository setupExecutionLogRepository;
+    private final SetupStepRepository setupStepRepository;
+    private final LabTemplateRepository labTemplateRepository;
+    private final LeaderElection leaderElection;
+    private final ChangeTracker changeTracker;
+
+    private volatile Map<UUID, StepTiming> timings = Map.of();
+
+    @Value("${lab.setup.timing.window-days:14}")
+    private int windowDays;
+
+    @Value("${lab.setup.timing.min-samples:20}")
+    private int minSamples;
+
+    @Value("${lab.setup.timing.margin:2.0}")
+    private double margin;
+
+    @Value("${lab.setup.timing.min-timeout-seconds:10}")
+    private int minTimeoutSeconds;
+
+    @Value("${lab.setup.retry-backoff-base-ms:2000}")
+    private long backoffBaseMs;
+
+    @Value("${lab.setup.retry-backoff-max-ms:30000}")
+    private long backoffMaxMs;
+
+    public SetupStepTimings(SetupExecutionLogRepository setupExecutionLogRepository,
+                            SetupStepRepository setupStepRepository,
+                            LabTemplateRepository labTemplateRepository,
+                            LeaderElection leaderElection,
+                            ChangeTracker changeTracker) {
+        this.setupExecutionLogRepository = setupExecutionLogRepository;
+        this.setupStepRepository = setupStepRepository;
+        this.labTemplateRepository = labTemplateRepository;
+        this.leaderElection = leaderElection;
+        this.changeTracker = changeTracker;
+    }
+
+    /**
+     * Timeout for one attempt of a step: the learned timeout doubled per retry, never above
+     * the step's configured timeout. Steps without enough history use the configured value.
+     */
+    public int timeoutSeconds(SetupStep step, int attempt) {
+        int configured = step.getTimeoutSeconds();
+        StepTiming timing = timings.get(step.getId());
+        if (timing == null) {
+            return configured;
+        }
+        long learned = (long) Math.ceil(timing.p99Ms * margin / 1000.0) << Math.min(attempt - 1, 10);
+        return (int) Math.min(configured, Math.max(minTimeoutSeconds, learned));
+    }
+
+    /**
+     * Drops what this replica learned about the steps, e.g. after their command changed; the others
+     * drop it with their next refresh, once the steps' execution logs are gone
+     */
+    public void forget(Collection<UUID> stepIds) {
+        Map<UUID, StepTiming> remaining = new HashMap<>(timings);
+        remaining.keySet().removeAll(stepIds);
+        timings = Map.copyOf(remaining);
+    }
+
+    /**
+     * Delay before retry number {@code attempt} (1 = first retry): exponential, randomised over the
+     * upper half of the window so labs that failed on the same mirror hiccup do not retry in lockstep.
+     */
+    public long retryDelayMillis(int attempt) {
+        long ceiling = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    @Scheduled(fixedDelayString = "${lab.setup.timing.refresh-interval-ms:300000}", initialDelay = 10000)
+    public void refresh() {
+        try {
+            Map<UUID, List<Long>> samples = new HashMap<>();
+            Map<UUID, Long> longestTimeout = new HashMap<>();
+            Map<UUID, String> templateOfStep = new HashMap<>();
+            for (Object[] row : setupExecutionLogRepository.findStepTimings(LocalDateTime.now().minusDays(windowDays))) {
+                UUID stepId = (UUID) row[0];
+                long durationMs = (Long) row[2];
+                templateOfStep.put(stepId, (String) row[1]);
+                samples.computeIfAbsent(stepId, id -> new ArrayList<>()).add(durationMs);
+                if (row[3] == SetupExecutionLog.ExecutionStatus.TIMEOUT) {
+                    longestTimeout.merge(stepId, durationMs, Math::max);
+                }
+            }
+
+            Map<UUID, StepTiming> updated = new HashMap<>();
+            samples.forEach((stepId, durations) -> {
+                if (durations.size() >= minSamples) {
+                    long[] sorted = durations.stream().mapToLong(Long::longValue).toArray();
+                    Arrays.sort(sorted);
+                    long p99 = Math.max(percentile(sorted, 0.99), longestTimeout.getOrDefault(stepId, 0L));
+                    updated.put(stepId, new StepTiming(percentile(sorted, 0.50), p99));
+                }
+            });
+            timings = Map.copyOf(updated);
+            log.debug("Learned timings for {} setup steps", updated.size());
+
+            if (leaderElection.isLeader(LeaderElection.MAINTENANCE)) {
+                updateSetupEstimates(updated, templateOfStep);
+            }
+        } catch (Exception e) {
+            log.error("Failed to refresh setup step timings: {}", e.getMessage(), e);
+        }
+    }
+
+    private void updateSetupEstimates(Map<UUID, StepTiming> learned, Map<UUID, String> templateOfStep) {
+        Map<String, Long> medianSums = new HashMap<>();
+        Map<String, Integer> stepsWithData = new HashMap<>();
+        learned.forEach((stepId, timing) -> {
+            String templateId = templateOfStep.get(stepId);
+            medianSums.merge(templateId, timing.p50Ms, Long::sum);
+            stepsWithData.merge(templateId, 1, Integer::sum);
+        });
+
+        for (LabTemplate template : labTemplateRepository.findAll()) {
+            Long sumMs = medianSums.get(template.getId());
+            // Only replace the hand-written estimate once every step has history
+            if (sumMs == null || stepsWithData.get(template.getId()) < setupStepRepository.countStepsByTemplateId(template.getId())) {
+                continue;
+            }
+            int seconds = (int) Math.ceil(sumMs / 1000.0);
+            if (!Integer.valueOf(seconds).equals(template.getTotalSetupTime())) {
+                labTemplateRepository.updateTotalSetupTime(template.getId(), seconds);
+                changeTracker.changed(ChangeTracker.TEMPLATES);
+                log.info("Setup estimate for template {}: {}s -> {}s", template.getId(), template.getTotalSetupTime(), seconds);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static final class StepTiming {
+        private final long p50Ms;
+        private final long p99Ms;
+
+        private StepTiming(long p50Ms, long p99Ms) {
+            this.p50Ms = p50Ms;
+            this.p99Ms = p99Ms;
+        }
+    }
+}
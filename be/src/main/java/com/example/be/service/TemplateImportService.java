@@ -0,0 +1,337 @@
+package com.example.be.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import io.kubernetes.client.custom.Quantity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.be.dto.TemplateBundleRequest;
+import com.example.be.dto.TemplateImportResponse;
+import com.example.be.model.LabTemplate;
+import com.example.be.model.SetupJob;
+import com.example.be.model.SetupStep;
+import com.example.be.repository.LabTemplateRepository;
+import com.example.be.repository.SetupJobRepository;
+import com.example.be.repository.SetupStepRepository;
+import com.example.be.util.TimeOrderedIds;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Imports template bundles (JSON or YAML) in one transaction.
+ * <p>
+ * The whole bundle is validated before anything is written. Templates whose definition hash
+ * matches the stored one are skipped. New rows are persisted directly, with steps pointing at a
+ * reference proxy of their template, so Hibernate sends them as JDBC batches without re-reading
+ * anything.
+ * <p>
+ * Existing steps are matched by their {@code key} in the bundle, or by a hash of their command when
+ * they have none, and updated in place, so inserting or reordering steps keeps each step's execution
+ * history and learned timings with it. When a keyed step's command changes, its history no longer
+ * describes it: the old step is retired and a new one takes its place, which resets its learned
+ * timings. Steps left unmatched are retired too. Retired steps are never deleted, so labs keep
+ * their setup logs.
+ * <p>
+ * Setup jobs checkpoint the order of the last step they completed, so a step list can only be
+ * renumbered, extended or cut while no setup job of that template is pending or running.
+ */
+@Slf4j
+@Service
+public class TemplateImportService {
+
+    private static final Pattern TEMPLATE_ID = Pattern.compile("[a-z0-9][a-z0-9-]{0,62}");
+    private static final Pattern STEP_KEY = TEMPLATE_ID;
+    private static final int MAX_STEPS = 100;
+    private static final int MAX_TIMEOUT_SECONDS = 3600;
+    private static final int MAX_RETRIES = 10;
+    private static final Set<SetupJob.JobStatus> ACTIVE_JOBS = EnumSet.of(SetupJob.JobStatus.PENDING, SetupJob.JobStatus.RUNNING);
+
+    private final LabTemplateRepository labTemplateRepository;
+    private final SetupStepRepository setupStepRepository;
+    private final SetupJobRepository setupJobRepository;
+    private final SetupStepTimings setupStepTimings;
+    private final ObjectReader jsonReader;
+    private final ObjectReader yamlReader;
+    // Sorted properties keep the hash stable when fields are reordered in the DTO
+    private final ObjectMapper hashMapper = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .build();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public TemplateImportService(LabTemplateRepository labTemplateRepository,
+                                 SetupStepRepository setupStepRepository,
+                                 SetupJobRepository setupJobRepository,
+                                 SetupStepTimings setupStepTimings,
+                                 ObjectMapper objectMapper) {
+        this.labTemplateRepository = labTemplateRepository;
+        this.setupStepRepository = setupStepRepository;
+        this.setupJobRepository = setupJobRepository;
+        this.setupStepTimings = setupStepTimings;
+        // Unknown keys are rejected: a typo in a bundle should fail the import, not be dropped
+        this.jsonReader = objectMapper.readerFor(TemplateBundleRequest.class)
+                .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.yamlReader = new YAMLMapper().readerFor(TemplateBundleRequest.class)
+                .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    public TemplateBundleRequest parse(byte[] content, boolean yaml) {
+        try {
+            return (yaml ? yamlReader : jsonReader).readValue(content);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid template bundle: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid template bundle: " + e.getMessage(), e);
+        }
+    }
+
+    @Transactional
+    public List<TemplateImportResponse> importBundle(TemplateBundleRequest bundle) {
+        validate(bundle);
+
+        List<TemplateImportResponse> results = new ArrayList<>();
+        for (TemplateBundleRequest.TemplateDefinition definition : bundle.getTemplates()) {
+            results.add(importTemplate(definition));
+        }
+        return results;
+    }
+
+    private TemplateImportResponse importTemplate(TemplateBundleRequest.TemplateDefinition definition) {
+        String hash = contentHash(definition);
+        LabTemplate template = labTemplateRepository.findById(definition.getId()).orElse(null);
+
+        String status;
+        if (template == null) {
+            template = LabTemplate.builder()
+                    .id(definition.getId())
+                    .createdBy("bundle-import")
+                    .build();
+            apply(template, definition, hash);
+            entityManager.persist(template);
+            status = "CREATED";
+        } else if (hash.equals(template.getContentHash())) {
+            return result(definition, "UNCHANGED", hash);
+        } else {
+            apply(template, definition, hash);
+            status = "UPDATED";
+        }
+
+        List<SetupStep> existing = setupStepRepository.findByTemplateIdOrderByStepOrder(definition.getId());
+        List<TemplateBundleRequest.StepDefinition> steps = definition.getSteps();
+        LabTemplate reference = labTemplateRepository.getReferenceById(definition.getId());
+
+        // Equal commands without a key are matched in order
+        Map<String, Deque<SetupStep>> unmatched = new HashMap<>();
+        for (SetupStep step : existing) {
+            unmatched.computeIfAbsent(stepKey(step.getStepKey(), step.getSetupCommand()), key -> new ArrayDeque<>()).add(step);
+        }
+        List<SetupStep> retired = new ArrayList<>();
+        boolean renumbered = false;
+        for (int i = 0; i < steps.size(); i++) {
+            TemplateBundleRequest.StepDefinition stepDefinition = steps.get(i);
+            Deque<SetupStep> candidates = unmatched.get(stepKey(stepDefinition.getKey(), stepDefinition.getSetupCommand()));
+            SetupStep step = candidates == null ? null : candidates.poll();
+            if (step != null && !step.getSetupCommand().equals(stepDefinition.getSetupCommand())) {
+                retired.add(step);
+                step = null;
+            }
+            if (step == null) {
+                step = SetupStep.builder()
+                        .id(TimeOrderedIds.newId())
+                        .template(reference)
+                        .build();
+                applyStep(step, stepDefinition, i + 1);
+                entityManager.persist(step);
+                renumbered = true;
+            } else {
+                renumbered |= step.getStepOrder() != i + 1;
+                applyStep(step, stepDefinition, i + 1);
+            }
+        }
+        unmatched.values().forEach(retired::addAll);
+
+        if ((renumbered || !retired.isEmpty())
+                && setupJobRepository.existsByTemplateIdAndStatusIn(definition.getId(), ACTIVE_JOBS)) {
+            throw new TemplateInUseException("Template " + definition.getId()
+                    + " has setup jobs in progress; its steps can be changed once they finish");
+        }
+        if (!retired.isEmpty()) {
+            retired.forEach(step -> step.setRetired(true));
+            log.info("Template {}: retired {} changed or removed steps", definition.getId(), retired.size());
+            // Applies only if the import commits; forgetting too early just means configured timeouts meanwhile
+            setupStepTimings.forget(retired.stream().map(SetupStep::getId).collect(Collectors.toList()));
+        }
+
+        log.info("Template {} {} with {} steps", definition.getId(), status.toLowerCase(), steps.size());
+        return result(definition, status, hash);
+    }
+
+    private void apply(LabTemplate template, TemplateBundleRequest.TemplateDefinition definition, String hash) {
+        template.setName(definition.getName());
+        template.setDescription(definition.getDescription());
+        template.setLabType(definition.getLabType());
+        template.setBaseImage(definition.getBaseImage());
+        template.setDurationMinutes(definition.getDurationMinutes() == null ? 60 : definition.getDurationMinutes());
+        template.setDifficulty(definition.getDifficulty() == null
+                ? LabTemplate.Difficulty.BEGINNER : LabTemplate.Difficulty.valueOf(definition.getDifficulty().toUpperCase()));
+        template.setSuccessCriteria(definition.getSuccessCriteria());
+        template.setIsActive(!Boolean.FALSE.equals(definition.getActive()));
+        template.setPackageCacheEnabled(Boolean.TRUE.equals(definition.getPackageCacheEnabled()));
+        template.setCpuRequest(definition.getCpuRequest());
+        template.setCpuLimit(definition.getCpuLimit());
+        template.setMemoryRequest(definition.getMemoryRequest());
+        template.setMemoryLimit(definition.getMemoryLimit());
+        template.setNodeSelector(definition.getNodeSelector());
+        template.setTopologySpreadMaxSkew(definition.getTopologySpreadMaxSkew());
+        template.setTopologySpreadKey(definition.getTopologySpreadKey());
+        template.setContentHash(hash);
+    }
+
+    private void applyStep(SetupStep step, TemplateBundleRequest.StepDefinition definition, int stepOrder) {
+        step.setStepOrder(stepOrder);
+        step.setStepKey(definition.getKey());
+        step.setTitle(definition.getTitle());
+        step.setDescription(definition.getDescription());
+        step.setSetupCommand(definition.getSetupCommand());
+        step.setExpectedExitCode(definition.getExpectedExitCode() == null ? 0 : definition.getExpectedExitCode());
+        step.setTimeoutSeconds(definition.getTimeoutSeconds() == null ? 300 : definition.getTimeoutSeconds());
+        step.setRetryCount(definition.getRetryCount() == null ? 1 : definition.getRetryCount());
+        step.setContinueOnFailure(Boolean.TRUE.equals(definition.getContinueOnFailure()));
+        step.setWorkingDirectory(definition.getWorkingDirectory() == null ? "/" : definition.getWorkingDirectory());
+    }
+
+    private void validate(TemplateBundleRequest bundle) {
+        if (bundle == null || bundle.getTemplates() == null || bundle.getTemplates().isEmpty()) {
+            throw new IllegalArgumentException("Bundle contains no templates");
+        }
+        Set<String> ids = new HashSet<>();
+        for (TemplateBundleRequest.TemplateDefinition template : bundle.getTemplates()) {
+            String id = template.getId();
+            if (id == null || !TEMPLATE_ID.matcher(id).matches()) {
+                throw new IllegalArgumentException("Invalid template id: " + id);
+            }
+            if (!ids.add(id)) {
+                throw new IllegalArgumentException("Duplicate template id in bundle: " + id);
+            }
+            require(id, "name", template.getName());
+            require(id, "labType", template.getLabType());
+            require(id, "baseImage", template.getBaseImage());
+            if (template.getDurationMinutes() != null && template.getDurationMinutes() <= 0) {
+                throw new IllegalArgumentException("Template " + id + ": durationMinutes must be positive");
+            }
+            if (template.getDifficulty() != null) {
+                try {
+                    LabTemplate.Difficulty.valueOf(template.getDifficulty().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Template " + id + ": unknown difficulty " + template.getDifficulty());
+                }
+            }
+            for (String quantity : new String[]{template.getCpuRequest(), template.getCpuLimit(),
+                    template.getMemoryRequest(), template.getMemoryLimit()}) {
+                if (quantity != null && !quantity.isBlank()) {
+                    try {
+                        new Quantity(quantity);
+                    } catch (RuntimeException e) {
+                        throw new IllegalArgumentException("Template " + id + ": invalid resource quantity " + quantity);
+                    }
+                }
+            }
+            LabPodPrototypes.nodeSelector(template.getNodeSelector());
+
+            List<TemplateBundleRequest.StepDefinition> steps = template.getSteps();
+            if (steps == null || steps.isEmpty() || steps.size() > MAX_STEPS) {
+                throw new IllegalArgumentException("Template " + id + ": needs 1-" + MAX_STEPS + " steps");
+            }
+            Set<String> stepKeys = new HashSet<>();
+            for (int i = 0; i < steps.size(); i++) {
+                TemplateBundleRequest.StepDefinition step = steps.get(i);
+                String where = id + " step " + (i + 1);
+                if (step.getKey() != null && (!STEP_KEY.matcher(step.getKey()).matches() || !stepKeys.add(step.getKey()))) {
+                    throw new IllegalArgumentException("Template " + where + ": key must be unique and match " + STEP_KEY);
+                }
+                require(where, "title", step.getTitle());
+                require(where, "setupCommand", step.getSetupCommand());
+                if (step.getTimeoutSeconds() != null
+                        && (step.getTimeoutSeconds() < 1 || step.getTimeoutSeconds() > MAX_TIMEOUT_SECONDS)) {
+                    throw new IllegalArgumentException("Template " + where + ": timeoutSeconds must be 1-" + MAX_TIMEOUT_SECONDS);
+                }
+                if (step.getRetryCount() != null && (step.getRetryCount() < 1 || step.getRetryCount() > MAX_RETRIES)) {
+                    throw new IllegalArgumentException("Template " + where + ": retryCount must be 1-" + MAX_RETRIES);
+                }
+            }
+        }
+    }
+
+    /**
+     * Explicit key, or a hash of the command for steps without one
+     */
+    private static String stepKey(String key, String command) {
+        if (key != null) {
+            return "key:" + key;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(command.getBytes(StandardCharsets.UTF_8));
+            return "command:" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void require(String where, String field, String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Template " + where + ": " + field + " is required");
+        }
+    }
+
+    private String contentHash(TemplateBundleRequest.TemplateDefinition definition) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(hashMapper.writeValueAsBytes(definition));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to hash template " + definition.getId(), e);
+        }
+    }
+
+    private static TemplateImportResponse result(TemplateBundleRequest.TemplateDefinition definition, String status, String hash) {
+        return TemplateImportResponse.builder()
+                .templateId(definition.getId())
+                .status(status)
+                .steps(definition.getSteps().size())
+                .contentHash(hash)
+                .build();
+    }
+
+    /**
+     * Thrown when an import would change the steps of a template that setup jobs are working through
+     */
+    public static class TemplateInUseException extends RuntimeException {
+        public TemplateInUseException(String message) {
+            super(message);
+        }
+    }
+}
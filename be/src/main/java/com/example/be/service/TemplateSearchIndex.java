@@ -0,0 +1,260 @@
+package com.example.be.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.be.model.LabTemplate;
+import com.example.be.repository.LabTemplateRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over template name, lab type and description.
+ * <p>
+ * Terms live in a sorted map, so every query word also matches as a prefix ("pyth" finds
+ * "python"). All query words must match; hits are ranked by field weight times inverse document
+ * frequency, with exact words counting more than prefixes. The index follows the templates change
+ * counter: when it moves, only templates whose @Version changed are re-read and re-indexed, so it
+ * also picks up changes made on other replicas.
+ */
+@Slf4j
+@Component
+public class TemplateSearchIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float TYPE_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_FACTOR = 0.6f;
+
+    private final LabTemplateRepository labTemplateRepository;
+    private final ChangeTracker changeTracker;
+
+    private final Map<String, IndexedTemplate> templates = new ConcurrentHashMap<>();
+    // Term -> template id -> weight of the best field containing it
+    private final ConcurrentSkipListMap<String, Map<String, Float>> postings = new ConcurrentSkipListMap<>();
+    private volatile long indexedVersion = -1;
+
+    public TemplateSearchIndex(LabTemplateRepository labTemplateRepository, ChangeTracker changeTracker) {
+        this.labTemplateRepository = labTemplateRepository;
+        this.changeTracker = changeTracker;
+    }
+
+    public static final class SearchPage {
+        private final List<String> templateIds;
+        private final long total;
+
+        private SearchPage(List<String> templateIds, long total) {
+            this.templateIds = templateIds;
+            this.total = total;
+        }
+
+        public List<String> getTemplateIds() {
+            return templateIds;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * Active templates matching the query and filters, best first, newest first among equals.
+     * A blank query matches everything.
+     */
+    public SearchPage search(String query, String labType, LabTemplate.Difficulty difficulty, int page, int size) {
+        List<String> words = tokenize(query);
+        Map<String, Float> scores = words.isEmpty() ? allTemplates() : score(words);
+
+        List<Hit> hits = new ArrayList<>();
+        scores.forEach((id, score) -> {
+            IndexedTemplate template = templates.get(id);
+            if (template != null && template.active
+                    && (labType == null || labType.equalsIgnoreCase(template.labType))
+                    && (difficulty == null || difficulty == template.difficulty)) {
+                hits.add(new Hit(id, score, template.createdAt));
+            }
+        });
+        hits.sort(Comparator.comparingDouble((Hit hit) -> hit.score).reversed()
+                .thenComparing(hit -> hit.createdAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder())));
+
+        int from = (int) Math.min((long) page * size, hits.size());
+        int to = Math.min(from + size, hits.size());
+        List<String> ids = hits.subList(from, to).stream().map(hit -> hit.id).toList();
+        return new SearchPage(ids, hits.size());
+    }
+
+    private Map<String, Float> allTemplates() {
+        Map<String, Float> all = new HashMap<>();
+        templates.keySet().forEach(id -> all.put(id, 0f));
+        return all;
+    }
+
+    private Map<String, Float> score(List<String> words) {
+        Map<String, Float> scores = null;
+        int documents = Math.max(1, templates.size());
+        for (String word : words) {
+            Map<String, Float> wordScores = new HashMap<>();
+            for (Map.Entry<String, Map<String, Float>> term
+                    : postings.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+                Map<String, Float> docs = term.getValue();
+                float idf = (float) Math.log(1.0 + (double) documents / Math.max(1, docs.size()));
+                float match = term.getKey().equals(word) ? 1.0f : PREFIX_FACTOR;
+                docs.forEach((id, weight) -> wordScores.merge(id, weight * idf * match, Math::max));
+            }
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                // Every word has to match
+                Map<String, Float> previous = scores;
+                scores = new HashMap<>();
+                for (Map.Entry<String, Float> hit : wordScores.entrySet()) {
+                    Float earlier = previous.get(hit.getKey());
+                    if (earlier != null) {
+                        scores.put(hit.getKey(), earlier + hit.getValue());
+                    }
+                }
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores == null ? Map.of() : scores;
+    }
+
+    @Scheduled(fixedDelayString = "${lab.template-search.refresh-interval-ms:2000}")
+    public synchronized void refresh() {
+        long version = changeTracker.version(ChangeTracker.TEMPLATES);
+        if (version == indexedVersion) {
+            return;
+        }
+        try {
+            Map<String, Long> current = new HashMap<>();
+            for (Object[] row : labTemplateRepository.findAllIdsAndVersions()) {
+                current.put((String) row[0], (Long) row[1]);
+            }
+
+            Set<String> removed = new HashSet<>(templates.keySet());
+            removed.removeAll(current.keySet());
+            removed.forEach(this::unindex);
+
+            List<String> changed = new ArrayList<>();
+            current.forEach((id, templateVersion) -> {
+                IndexedTemplate indexed = templates.get(id);
+                if (indexed == null || !Objects.equals(indexed.version, templateVersion)) {
+                    changed.add(id);
+                }
+            });
+            for (LabTemplate template : labTemplateRepository.findAllById(changed)) {
+                index(template);
+            }
+
+            indexedVersion = version;
+            if (!changed.isEmpty() || !removed.isEmpty()) {
+                log.info("Template search index: {} templates re-indexed, {} removed, {} terms",
+                        changed.size(), removed.size(), postings.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to refresh template search index: {}", e.getMessage(), e);
+        }
+    }
+
+    private void index(LabTemplate template) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, template.getDescription(), DESCRIPTION_WEIGHT);
+        addTerms(terms, template.getLabType(), TYPE_WEIGHT);
+        addTerms(terms, template.getName(), NAME_WEIGHT);
+
+        IndexedTemplate indexed = new IndexedTemplate(template.getVersion(), template.getLabType(),
+                template.getDifficulty(), !Boolean.FALSE.equals(template.getIsActive()),
+                template.getCreatedAt(), Set.copyOf(terms.keySet()));
+        // Add the new terms before dropping the old ones, so searches keep finding the template
+        terms.forEach((term, weight) ->
+                postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(template.getId(), weight));
+        IndexedTemplate previous = templates.put(template.getId(), indexed);
+        if (previous != null) {
+            removePostings(template.getId(), previous.terms, indexed.terms);
+        }
+    }
+
+    private void unindex(String templateId) {
+        IndexedTemplate previous = templates.remove(templateId);
+        if (previous != null) {
+            removePostings(templateId, previous.terms, Set.of());
+        }
+    }
+
+    private void removePostings(String templateId, Set<String> terms, Set<String> keep) {
+        for (String term : terms) {
+            if (keep.contains(term)) {
+                continue;
+            }
+            postings.computeIfPresent(term, (t, docs) -> {
+                docs.remove(templateId);
+                return docs.isEmpty() ? null : docs;
+            });
+        }
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String term : tokenize(text)) {
+            terms.merge(term, weight, Math::max);
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : NON_WORD.split(text.toLowerCase())) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Hit {
+        private final String id;
+        private final float score;
+        private final LocalDateTime createdAt;
+
+        private Hit(String id, float score, LocalDateTime createdAt) {
+            this.id = id;
+            this.score = score;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final class IndexedTemplate {
+        private final Long version;
+        private final String labType;
+        private final LabTemplate.Difficulty difficulty;
+        private final boolean active;
+        private final LocalDateTime createdAt;
+        private final Set<String> terms;
+
+        private IndexedTemplate(Long version, String labType, LabTemplate.Difficulty difficulty, boolean active,
+                                LocalDateTime createdAt, Set<String> terms) {
+            this.version = version;
+            this.labType = labType;
+            this.difficulty = difficulty;
+            this.active = active;
+            this.createdAt = createdAt;
+            this.terms = terms;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.be.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed text in MySQL's COMPRESS() format: the uncompressed length as 4 bytes, low byte first,
+ * followed by a zlib stream; the empty string is stored as zero bytes. Staying compatible means the
+ * columns can be migrated with plain SQL and read ad hoc with UNCOMPRESS().
+ * <p>
+ * Uses the fastest zlib level: setup logs (apt, pip, npm output) are repetitive enough that it
+ * gets most of the ratio of the slower levels.
+ */
+public final class CompressedText {
+
+    private CompressedText() {
+    }
+
+    public static byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (raw.length == 0) {
+            return new byte[0];
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 16);
+        out.write(raw.length);
+        out.write(raw.length >>> 8);
+        out.write(raw.length >>> 16);
+        out.write(raw.length >>> 24);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    public static String decompress(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == 0) {
+            return "";
+        }
+
+        int length = uncompressedLength(data);
+        byte[] raw = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 4, data.length - 4);
+            int offset = 0;
+            while (offset < length) {
+                int n = inflater.inflate(raw, offset, length - offset);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != length) {
+                throw new IllegalStateException("Compressed text is truncated: " + offset + " of " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed text is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Size of the original text in bytes, read from the header without decompressing
+     */
+    public static int uncompressedLength(byte[] data) {
+        if (data == null || data.length < 4) {
+            return 0;
+        }
+        int length = (data[0] & 0xFF) | (data[1] & 0xFF) << 8 | (data[2] & 0xFF) << 16 | (data[3] & 0xFF) << 24;
+        // MySQL keeps the top two bits free
+        return length & 0x3FFFFFFF;
+    }
+}
@@ -0,0 +1,136 @@
+-- Converts lab, setup step, setup log and setup job ids from VARCHAR to UUIDv7 stored as BINARY(16).
+--
+-- ddl-auto=update never changes existing column types, so run this once against the lab database
+-- (MySQL 8.0.16+) with the backend stopped, before starting the new version:
+--
+--   mysql -u <user> -p labplatform < 001_time_ordered_binary_ids.sql
+--
+-- Existing rows get v7 ids built from their own timestamps, so they keep their creation order in the
+-- new clustered index. Pod names of existing labs are left as they are; only new labs get base32 names.
+
+DROP PROCEDURE IF EXISTS drop_foreign_keys_to;
+
+DELIMITER //
+CREATE PROCEDURE drop_foreign_keys_to(IN referenced VARCHAR(64))
+BEGIN
+    DECLARE done INT DEFAULT 0;
+    DECLARE fk_table VARCHAR(64);
+    DECLARE fk_name VARCHAR(64);
+    DECLARE fks CURSOR FOR
+        SELECT table_name, constraint_name
+        FROM information_schema.referential_constraints
+        WHERE constraint_schema = DATABASE() AND referenced_table_name = referenced;
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET done = 1;
+
+    OPEN fks;
+    drop_loop: LOOP
+        FETCH fks INTO fk_table, fk_name;
+        IF done THEN
+            LEAVE drop_loop;
+        END IF;
+        SET @drop_fk = CONCAT('ALTER TABLE `', fk_table, '` DROP FOREIGN KEY `', fk_name, '`');
+        PREPARE stmt FROM @drop_fk;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END LOOP;
+    CLOSE fks;
+END //
+DELIMITER ;
+
+-- 1. Binary keys next to the old ones. The v7 layout is
+--    48-bit unix millis | version 7 | 12 random bits | variant 10 | 62 random bits
+
+ALTER TABLE lab_instances ADD COLUMN id_bin BINARY(16) NULL;
+ALTER TABLE setup_steps ADD COLUMN id_bin BINARY(16) NULL;
+ALTER TABLE setup_execution_logs
+    ADD COLUMN id_bin BINARY(16) NULL,
+    ADD COLUMN lab_instance_id_bin BINARY(16) NULL,
+    ADD COLUMN setup_step_id_bin BINARY(16) NULL;
+ALTER TABLE setup_jobs
+    ADD COLUMN id_bin BINARY(16) NULL,
+    ADD COLUMN lab_id_bin BINARY(16) NULL;
+
+UPDATE lab_instances
+SET id_bin = UNHEX(CONCAT(
+        LPAD(HEX(FLOOR(UNIX_TIMESTAMP(COALESCE(created_at, NOW(3))) * 1000)), 12, '0'),
+        '7', LEFT(HEX(RANDOM_BYTES(2)), 3),
+        HEX(8 + FLOOR(RAND() * 4)), LEFT(HEX(RANDOM_BYTES(8)), 15)));
+
+-- Steps have no timestamp of their own: use the template's and keep step order within it
+UPDATE setup_steps s
+LEFT JOIN lab_templates t ON t.id = s.template_id
+SET s.id_bin = UNHEX(CONCAT(
+        LPAD(HEX(FLOOR(UNIX_TIMESTAMP(COALESCE(t.created_at, NOW(3))) * 1000) + s.step_order), 12, '0'),
+        '7', LEFT(HEX(RANDOM_BYTES(2)), 3),
+        HEX(8 + FLOOR(RAND() * 4)), LEFT(HEX(RANDOM_BYTES(8)), 15)));
+
+UPDATE setup_execution_logs
+SET id_bin = UNHEX(CONCAT(
+        LPAD(HEX(FLOOR(UNIX_TIMESTAMP(COALESCE(started_at, NOW(3))) * 1000)), 12, '0'),
+        '7', LEFT(HEX(RANDOM_BYTES(2)), 3),
+        HEX(8 + FLOOR(RAND() * 4)), LEFT(HEX(RANDOM_BYTES(8)), 15)));
+
+UPDATE setup_jobs
+SET id_bin = UNHEX(CONCAT(
+        LPAD(HEX(FLOOR(UNIX_TIMESTAMP(COALESCE(created_at, NOW(3))) * 1000)), 12, '0'),
+        '7', LEFT(HEX(RANDOM_BYTES(2)), 3),
+        HEX(8 + FLOOR(RAND() * 4)), LEFT(HEX(RANDOM_BYTES(8)), 15)));
+
+UPDATE setup_execution_logs l
+JOIN lab_instances i ON i.id = l.lab_instance_id
+SET l.lab_instance_id_bin = i.id_bin;
+
+UPDATE setup_execution_logs l
+JOIN setup_steps s ON s.id = l.setup_step_id
+SET l.setup_step_id_bin = s.id_bin;
+
+UPDATE setup_jobs j
+JOIN lab_instances i ON i.id = j.lab_id
+SET j.lab_id_bin = i.id_bin;
+
+-- Jobs of labs that were deleted since cannot be resumed anyway
+DELETE FROM setup_jobs WHERE lab_id_bin IS NULL;
+
+-- 2. Foreign keys have Hibernate-generated names, so look them up
+CALL drop_foreign_keys_to('lab_instances');
+CALL drop_foreign_keys_to('setup_steps');
+DROP PROCEDURE drop_foreign_keys_to;
+
+-- 3. Swap the columns, parents first
+
+ALTER TABLE lab_instances DROP PRIMARY KEY, DROP COLUMN id;
+ALTER TABLE lab_instances RENAME COLUMN id_bin TO id;
+ALTER TABLE lab_instances MODIFY id BINARY(16) NOT NULL, ADD PRIMARY KEY (id);
+
+ALTER TABLE setup_steps DROP PRIMARY KEY, DROP COLUMN id;
+ALTER TABLE setup_steps RENAME COLUMN id_bin TO id;
+ALTER TABLE setup_steps MODIFY id BINARY(16) NOT NULL, ADD PRIMARY KEY (id);
+
+ALTER TABLE setup_execution_logs
+    DROP PRIMARY KEY,
+    DROP COLUMN id,
+    DROP COLUMN lab_instance_id,
+    DROP COLUMN setup_step_id;
+ALTER TABLE setup_execution_logs
+    RENAME COLUMN id_bin TO id,
+    RENAME COLUMN lab_instance_id_bin TO lab_instance_id,
+    RENAME COLUMN setup_step_id_bin TO setup_step_id;
+ALTER TABLE setup_execution_logs
+    MODIFY id BINARY(16) NOT NULL,
+    MODIFY lab_instance_id BINARY(16) NOT NULL,
+    MODIFY setup_step_id BINARY(16) NOT NULL,
+    ADD PRIMARY KEY (id);
+
+ALTER TABLE setup_jobs DROP PRIMARY KEY, DROP COLUMN id, DROP COLUMN lab_id;
+ALTER TABLE setup_jobs RENAME COLUMN id_bin TO id, RENAME COLUMN lab_id_bin TO lab_id;
+ALTER TABLE setup_jobs
+    MODIFY id BINARY(16) NOT NULL,
+    MODIFY lab_id BINARY(16) NOT NULL,
+    ADD PRIMARY KEY (id),
+    ADD INDEX idx_setup_jobs_lab (lab_id);
+
+-- 4. Foreign keys back on the binary columns
+
+ALTER TABLE setup_execution_logs
+    ADD CONSTRAINT fk_setup_logs_lab FOREIGN KEY (lab_instance_id) REFERENCES lab_instances (id),
+    ADD CONSTRAINT fk_setup_logs_step FOREIGN KEY (setup_step_id) REFERENCES setup_steps (id);
@@ -0,0 +1,30 @@
+-- Resource profiles and scheduling rules for the default templates.
+--
+-- ddl-auto=update adds the new lab_templates columns (version with its default of 0) but leaves the
+-- profile columns of existing rows empty, which makes them fall back to lab.pod.default-*. The
+-- backend works before this runs; run it once after the first start of the new version:
+--
+--   mysql -u <user> -p labplatform < 002_template_resource_profiles.sql
+
+-- Only matters where the version column was added before it had a default
+UPDATE lab_templates SET version = 0 WHERE version IS NULL;
+
+UPDATE lab_templates
+SET cpu_request = '300m', cpu_limit = '1', memory_request = '768Mi', memory_limit = '1536Mi',
+    topology_spread_max_skew = 1, version = version + 1
+WHERE id = 'johndoe-user-template' AND cpu_request IS NULL;
+
+UPDATE lab_templates
+SET cpu_request = '250m', cpu_limit = '1', memory_request = '256Mi', memory_limit = '768Mi',
+    topology_spread_max_skew = 1, version = version + 1
+WHERE id = 'python-dev-template' AND cpu_request IS NULL;
+
+UPDATE lab_templates
+SET cpu_request = '300m', cpu_limit = '1500m', memory_request = '768Mi', memory_limit = '2Gi',
+    topology_spread_max_skew = 1, version = version + 1
+WHERE id = 'docker-dev-template' AND cpu_request IS NULL;
+
+UPDATE lab_templates
+SET cpu_request = '100m', cpu_limit = '500m', memory_request = '192Mi', memory_limit = '512Mi',
+    topology_spread_max_skew = 1, version = version + 1
+WHERE id = 'nodejs-dev-template' AND cpu_request IS NULL;
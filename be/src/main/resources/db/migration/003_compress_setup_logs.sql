@@ -0,0 +1,42 @@
+-- Moves setup log command/output/error_message from TEXT into compressed BLOB columns.
+--
+-- The application writes CompressedText, which is the MySQL COMPRESS() format, so existing rows can
+-- be converted in SQL. Run once after the first start of the new version (ddl-auto=update creates the
+-- *_z columns); the old columns are no longer read by then:
+--
+--   mysql -u <user> -p labplatform < 003_compress_setup_logs.sql
+--
+-- Old rows can be inspected later with SELECT UNCOMPRESS(output_z) FROM setup_execution_logs.
+
+DROP PROCEDURE IF EXISTS compress_setup_logs;
+
+DELIMITER //
+CREATE PROCEDURE compress_setup_logs()
+BEGIN
+    DECLARE converted INT DEFAULT 1;
+    -- Small batches keep undo logs and replica lag bounded on large tables
+    WHILE converted > 0 DO
+        UPDATE setup_execution_logs
+        SET command_z = COMPRESS(command),
+            output_z = COMPRESS(output),
+            error_message_z = COMPRESS(error_message),
+            command = NULL,
+            output = NULL,
+            error_message = NULL
+        WHERE command IS NOT NULL OR output IS NOT NULL OR error_message IS NOT NULL
+        LIMIT 5000;
+        SET converted = ROW_COUNT();
+    END WHILE;
+END //
+DELIMITER ;
+
+CALL compress_setup_logs();
+DROP PROCEDURE compress_setup_logs;
+
+ALTER TABLE setup_execution_logs
+    DROP COLUMN command,
+    DROP COLUMN output,
+    DROP COLUMN error_message;
+
+-- Rebuild the table so the freed pages are returned
+OPTIMIZE TABLE setup_execution_logs;
@@ -0,0 +1,94 @@
+package com.example.be;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.be.util.TimeOrderedIds;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Insert rate of the old and new primary key schemes against a real MySQL.
+ * Excluded from the normal build, run with:
+ *
+ *   mvn test -Pbenchmark -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/labplatform \
+ *       -Dbenchmark.jdbc.user=... -Dbenchmark.jdbc.password=... [-Dbenchmark.rows=200000]
+ */
+@Tag("benchmark")
+class IdInsertBenchmarkTest {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private interface IdSource {
+        void bind(PreparedStatement statement, int row) throws Exception;
+    }
+
+    @Test
+    void compareInsertRates() throws Exception {
+        String url = System.getProperty("benchmark.jdbc.url");
+        Assumptions.assumeTrue(url != null, "benchmark.jdbc.url not set");
+        int rows = Integer.getInteger("benchmark.rows", 200_000);
+
+        String separator = url.contains("?") ? "&" : "?";
+        try (Connection connection = DriverManager.getConnection(url + separator + "rewriteBatchedStatements=true",
+                System.getProperty("benchmark.jdbc.user"), System.getProperty("benchmark.jdbc.password"))) {
+
+            // Old lab ids: "lab-<user>-<millis>", old log and step ids: random v4 strings
+            run(connection, "bench_ids_legacy", "VARCHAR(255)", rows,
+                    (statement, row) -> statement.setString(1, "lab-user" + (row % 300) + "-" + System.currentTimeMillis() + "-" + row));
+            run(connection, "bench_ids_uuid4", "VARCHAR(255)", rows,
+                    (statement, row) -> statement.setString(1, UUID.randomUUID().toString()));
+            run(connection, "bench_ids_uuid7", "BINARY(16)", rows,
+                    (statement, row) -> statement.setBytes(1, TimeOrderedIds.toBytes(TimeOrderedIds.newId())));
+        }
+    }
+
+    private void run(Connection connection, String table, String idType, int rows, IdSource ids) throws Exception {
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS " + table);
+            ddl.execute("CREATE TABLE " + table + " (id " + idType + " NOT NULL PRIMARY KEY, " +
+                    "user_id VARCHAR(64), created_at DATETIME(6), payload VARCHAR(255)) ENGINE=InnoDB");
+        }
+
+        connection.setAutoCommit(false);
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (id, user_id, created_at, payload) VALUES (?, ?, NOW(6), ?)")) {
+            for (int row = 0; row < rows; row++) {
+                ids.bind(insert, row);
+                insert.setString(2, "user" + (row % 300));
+                insert.setString(3, "lab payload " + row);
+                insert.addBatch();
+                if ((row + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        connection.setAutoCommit(true);
+
+        long sizeBytes = 0;
+        try (Statement stats = connection.createStatement()) {
+            stats.execute("ANALYZE TABLE " + table);
+            try (ResultSet rs = stats.executeQuery("SELECT data_length + index_length FROM information_schema.tables " +
+                    "WHERE table_schema = DATABASE() AND table_name = '" + table + "'")) {
+                if (rs.next()) {
+                    sizeBytes = rs.getLong(1);
+                }
+            }
+            stats.execute("DROP TABLE " + table);
+        }
+
+        System.out.printf("%-18s %-13s %,9d rows in %,7d ms = %,9d rows/s, %,6d KB on disk%n",
+                table, idType, rows, elapsedMs, rows * 1000L / elapsedMs, sizeBytes / 1024);
+    }
+}
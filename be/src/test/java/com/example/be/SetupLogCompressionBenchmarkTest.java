@@ -0,0 +1,176 @@
+package com.example.be;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.be.util.CompressedText;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Size and latency of compressed setup logs. The codec part always runs with -Pbenchmark, the table
+ * size comparison also needs a database:
+ *
+ *   mvn test -Pbenchmark [-Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/labplatform \
+ *       -Dbenchmark.jdbc.user=... -Dbenchmark.jdbc.password=... -Dbenchmark.rows=20000]
+ */
+@Tag("benchmark")
+class SetupLogCompressionBenchmarkTest {
+
+    @Test
+    void compareSizeAndLatency() throws Exception {
+        List<String> outputs = sampleOutputs(500);
+        long rawBytes = 0;
+        long compressedBytes = 0;
+        long compressNanos = 0;
+        long decompressNanos = 0;
+
+        for (int round = 0; round < 5; round++) {
+            for (String output : outputs) {
+                long start = System.nanoTime();
+                byte[] compressed = CompressedText.compress(output);
+                long compressedAt = System.nanoTime();
+                String restored = CompressedText.decompress(compressed);
+                long end = System.nanoTime();
+
+                // First round only warms up the JIT
+                if (round > 0) {
+                    rawBytes += output.getBytes(StandardCharsets.UTF_8).length;
+                    compressedBytes += compressed.length;
+                    compressNanos += compressedAt - start;
+                    decompressNanos += end - compressedAt;
+                }
+                assertEquals(output, restored);
+            }
+        }
+
+        int samples = outputs.size() * 4;
+        System.out.printf("codec: %,d KB -> %,d KB (ratio %.1fx), compress %.1f us/log, decompress %.1f us/log%n",
+                rawBytes / 1024, compressedBytes / 1024, (double) rawBytes / compressedBytes,
+                compressNanos / 1000.0 / samples, decompressNanos / 1000.0 / samples);
+
+        String url = System.getProperty("benchmark.jdbc.url");
+        if (url != null) {
+            compareTables(url, outputs, Integer.getInteger("benchmark.rows", 20_000));
+        }
+    }
+
+    private void compareTables(String url, List<String> outputs, int rows) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("benchmark.jdbc.user"), System.getProperty("benchmark.jdbc.password"))) {
+            long textBytes = fillTable(connection, "bench_logs_text", "MEDIUMTEXT", outputs, rows, false);
+            long blobBytes = fillTable(connection, "bench_logs_zlib", "MEDIUMBLOB", outputs, rows, true);
+            System.out.printf("table: %,d rows as TEXT %,d KB, compressed %,d KB%n", rows, textBytes / 1024, blobBytes / 1024);
+        }
+    }
+
+    private long fillTable(Connection connection, String table, String type, List<String> outputs,
+                           int rows, boolean compressed) throws Exception {
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS " + table);
+            ddl.execute("CREATE TABLE " + table + " (id BIGINT NOT NULL PRIMARY KEY, output " + type + ") ENGINE=InnoDB");
+        }
+        connection.setAutoCommit(false);
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " VALUES (?, ?)")) {
+            for (int row = 0; row < rows; row++) {
+                String output = outputs.get(row % outputs.size());
+                insert.setLong(1, row);
+                if (compressed) {
+                    insert.setBytes(2, CompressedText.compress(output));
+                } else {
+                    insert.setString(2, output);
+                }
+                insert.addBatch();
+                if (row % 500 == 499) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        long insertMs = (System.nanoTime() - start) / 1_000_000;
+        connection.setAutoCommit(true);
+
+        long readStart = System.nanoTime();
+        try (Statement read = connection.createStatement();
+             ResultSet rs = read.executeQuery("SELECT output FROM " + table)) {
+            while (rs.next()) {
+                if (compressed) {
+                    CompressedText.decompress(rs.getBytes(1));
+                } else {
+                    rs.getString(1);
+                }
+            }
+        }
+        long readMs = (System.nanoTime() - readStart) / 1_000_000;
+
+        long size = 0;
+        try (Statement stats = connection.createStatement()) {
+            stats.execute("ANALYZE TABLE " + table);
+            try (ResultSet rs = stats.executeQuery("SELECT data_length + index_length FROM information_schema.tables " +
+                    "WHERE table_schema = DATABASE() AND table_name = '" + table + "'")) {
+                if (rs.next()) {
+                    size = rs.getLong(1);
+                }
+            }
+            stats.execute("DROP TABLE " + table);
+        }
+        System.out.printf("%-16s insert %,6d ms, full read %,6d ms%n", table, insertMs, readMs);
+        return size;
+    }
+
+    /**
+     * Synthetic apt-get and pip output with the same shape as real setup logs
+     */
+    private List<String> sampleOutputs(int count) {
+        String[] packages = {"curl", "wget", "git", "vim", "sudo", "passwd", "adduser", "libcurl4", "libssl1.1",
+                "perl-base", "python3-pip", "ca-certificates", "openssl", "less", "libgdbm6", "liberror-perl"};
+        String[] wheels = {"numpy", "pandas", "requests", "flask", "jupyter", "matplotlib", "urllib3", "idna"};
+        Random random = new Random(42);
+        List<String> outputs = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            StringBuilder out = new StringBuilder();
+            int lines = 20 + random.nextInt(200);
+            for (int line = 0; line < lines; line++) {
+                String pkg = packages[random.nextInt(packages.length)];
+                switch (random.nextInt(4)) {
+                    case 0:
+                        out.append("Get:").append(line).append(" http://archive.ubuntu.com/ubuntu focal-updates/main amd64 ")
+                           .append(pkg).append(" amd64 ").append(random.nextInt(10)).append('.').append(random.nextInt(100))
+                           .append("-0ubuntu").append(random.nextInt(5)).append(" [").append(random.nextInt(900) + 10).append(" kB]\n");
+                        break;
+                    case 1:
+                        out.append("Selecting previously unselected package ").append(pkg).append(".\n")
+                           .append("Preparing to unpack .../").append(pkg).append("_amd64.deb ...\n")
+                           .append("Unpacking ").append(pkg).append(" ...\n");
+                        break;
+                    case 2:
+                        out.append("Setting up ").append(pkg).append(" ...\n");
+                        break;
+                    default:
+                        String wheel = wheels[random.nextInt(wheels.length)];
+                        out.append("  Downloading ").append(wheel).append('-').append(random.nextInt(3)).append('.')
+                           .append(random.nextInt(30)).append(".0-py3-none-any.whl (").append(random.nextInt(900))
+                           .append(" kB)\n     |████████████████████████████████| ").append(random.nextInt(900))
+                           .append(" kB 2.1 MB/s\n");
+                        break;
+                }
+            }
+            outputs.add(out.toString());
+        }
+        return outputs;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.be;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Time to a refreshed application context for the plain jar, the extracted jar and the extracted
+ * jar with AOT and the CDS archive. Needs the artifact from the fast-startup profile:
+ *
+ *   mvn package -Pfast-startup -DskipTests
+ *   mvn test -Pbenchmark -Dtest=StartupBenchmarkTest [-Dbenchmark.startup.runs=5]
+ */
+@Tag("benchmark")
+class StartupBenchmarkTest {
+
+    // Same flags as the CDS training run: stop after refresh, never touch the database
+    private static final List<String> EXIT_AFTER_REFRESH = List.of(
+            "-Dspring.context.exit=onRefresh",
+            "-Dspring.jpa.hibernate.ddl-auto=none",
+            "-Dspring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=false",
+            "-Dspring.datasource.hikari.initialization-fail-timeout=-1");
+
+    @Test
+    void compareStartupTimes() throws Exception {
+        Path appDir = Path.of("target", "app");
+        Path extractedJar = firstJar(appDir);
+        Path jsa = appDir.resolve("application.jsa");
+        Assumptions.assumeTrue(extractedJar != null && Files.exists(jsa), "run mvn package -Pfast-startup first");
+        Path fatJar = Path.of("target", extractedJar.getFileName().toString());
+        int runs = Integer.getInteger("benchmark.startup.runs", 5);
+
+        measure("fat jar", fatJar.getParent(), fatJar.getFileName().toString(), List.of(), runs);
+        measure("extracted", appDir, extractedJar.getFileName().toString(), List.of(), runs);
+        measure("extracted + AOT + CDS", appDir, extractedJar.getFileName().toString(),
+                List.of("-XX:SharedArchiveFile=application.jsa", "-Dspring.aot.enabled=true"), runs);
+    }
+
+    private static void measure(String label, Path dir, String jar, List<String> flags, int runs) throws Exception {
+        long[] millis = new long[runs];
+        // One extra run first warms the OS file cache
+        for (int run = -1; run < runs; run++) {
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(flags);
+            command.addAll(EXIT_AFTER_REFRESH);
+            command.add("-jar");
+            command.add(jar);
+
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .directory(dir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(2, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                throw new IllegalStateException(label + ": startup did not finish within 2 minutes");
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            assertEquals(0, process.exitValue(), label + ": process failed");
+            if (run >= 0) {
+                millis[run] = elapsed;
+            }
+        }
+        Arrays.sort(millis);
+        System.out.printf("%-24s median %,d ms, min %,d ms, max %,d ms (%d runs)%n",
+                label, millis[runs / 2], millis[0], millis[runs - 1], runs);
+    }
+
+    private static Path firstJar(Path dir) {
+        File[] jars = dir.toFile().listFiles((d, name) -> name.endsWith(".jar"));
+        return jars == null || jars.length == 0 ? null : jars[0].toPath();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.be.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.be.dto.CommandResultResponse;
+import com.example.be.repository.LabRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CommandResultCacheTest {
+
+    private static final LocalDateTime NEVER = LocalDateTime.now().plusDays(1);
+
+    private final LabRepository labRepository = mock(LabRepository.class);
+    private final CommandResultCache cache = new CommandResultCache(labRepository, new SimpleMeterRegistry(),
+            List.of("uname -a", "whoami"));
+    private final UUID labId = UUID.randomUUID();
+
+    CommandResultCacheTest() {
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+    }
+
+    @Test
+    void allowlistedSuccessIsServedAsCachedUntilTheGenerationMoves() {
+        run(0, "uname  -a", result("Linux lab 6.1", true));
+
+        CommandResultResponse cached = cache.get(labId, 0, " uname -a ");
+        assertEquals("Linux lab 6.1", cached.getOutput());
+        assertEquals(" uname -a ", cached.getCommand());
+        assertTrue(cached.isCached());
+
+        // Another replica ran a command and bumped the lab row
+        assertNull(cache.get(labId, 1, "uname -a"));
+    }
+
+    @Test
+    void otherCommandsInvalidateBeforeAndAfterTheyRun() {
+        run(0, "whoami", result("student", true));
+
+        assertFalse(cache.begin(labId, "apt-get install -y vim"));
+        assertNull(cache.get(labId, 0, "whoami"));
+        cache.complete(labId, 0, "apt-get install -y vim", false, result("", true), NEVER);
+
+        // Before and after the command ran
+        verify(labRepository, times(2)).bumpExecGeneration(labId);
+    }
+
+    @Test
+    void failuresAndOtherCommandsAreNotCached() {
+        run(0, "whoami", result("", false));
+        assertNull(cache.get(labId, 0, "whoami"));
+        assertNull(cache.get(labId, 0, "ls"));
+    }
+
+    @Test
+    void entriesNeverOutliveTheLab() {
+        run(0, "whoami", result("student", true), LocalDateTime.now().minusSeconds(1));
+        assertNull(cache.get(labId, 0, "whoami"));
+    }
+
+    @Test
+    void resultsOfOneLabAreNotServedForAnother() {
+        run(0, "whoami", result("student", true));
+        assertNull(cache.get(UUID.randomUUID(), 0, "whoami"));
+    }
+
+    @Test
+    void forgetIsLocalAndInvalidateIsShared() {
+        run(0, "whoami", result("student", true));
+        cache.forget(labId);
+        assertNull(cache.get(labId, 0, "whoami"));
+        verify(labRepository, never()).bumpExecGeneration(any());
+
+        cache.invalidate(labId);
+        verify(labRepository).bumpExecGeneration(labId);
+    }
+
+    @Test
+    void failedSharedInvalidationStillClearsThisReplica() {
+        when(labRepository.bumpExecGeneration(labId)).thenThrow(new IllegalStateException("database down"));
+        run(0, "whoami", result("student", true));
+
+        cache.invalidate(labId);
+
+        assertNull(cache.get(labId, 0, "whoami"));
+    }
+
+    @Test
+    void disabledCacheDoesNothing() {
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        run(0, "whoami", result("student", true));
+        assertNull(cache.get(labId, 0, "whoami"));
+        cache.invalidate(labId);
+        verify(labRepository, never()).bumpExecGeneration(any());
+    }
+
+    private void run(long generation, String command, CommandResultResponse result) {
+        run(generation, command, result, NEVER);
+    }
+
+    private void run(long generation, String command, CommandResultResponse result, LocalDateTime labExpiresAt) {
+        boolean cacheable = cache.begin(labId, command);
+        cache.complete(labId, generation, command, cacheable, result, labExpiresAt);
+    }
+
+    private static CommandResultResponse result(String output, boolean success) {
+        return CommandResultResponse.builder()
+                .output(output)
+                .error("")
+                .exitCode(success ? 0 : 1)
+                .success(success)
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.be.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ImageLocalityTest {
+
+    @Test
+    void officialImagesGetTheLibraryPrefix() {
+        assertEquals("docker.io/library/ubuntu:20.04", ImageLocality.normalize("ubuntu:20.04"));
+        assertEquals("docker.io/library/ubuntu:latest", ImageLocality.normalize("ubuntu"));
+    }
+
+    @Test
+    void dockerHubUserImagesGetTheRegistry() {
+        assertEquals("docker.io/bitnami/redis:7.2", ImageLocality.normalize("bitnami/redis:7.2"));
+        assertEquals("docker.io/bitnami/redis:latest", ImageLocality.normalize("bitnami/redis"));
+    }
+
+    @Test
+    void explicitRegistriesAreKept() {
+        assertEquals("registry.k8s.io/pause:3.9", ImageLocality.normalize("registry.k8s.io/pause:3.9"));
+        assertEquals("ghcr.io/org/tool:latest", ImageLocality.normalize("ghcr.io/org/tool"));
+        assertEquals("localhost/lab:dev", ImageLocality.normalize("localhost/lab:dev"));
+        assertEquals("docker.io/library/python:3.12", ImageLocality.normalize("docker.io/library/python:3.12"));
+    }
+
+    @Test
+    void registryPortIsNotMistakenForATag() {
+        assertEquals("registry:5000/team/app:latest", ImageLocality.normalize("registry:5000/team/app"));
+        assertEquals("registry:5000/team/app:1.0", ImageLocality.normalize("registry:5000/team/app:1.0"));
+    }
+
+    @Test
+    void digestsGetNoTag() {
+        String digest = "sha256:" + "a".repeat(64);
+        assertEquals("docker.io/library/alpine@" + digest, ImageLocality.normalize("alpine@" + digest));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.be.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LabExecLimiterTest {
+
+    private static final String POD = "lab-pod";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LabExecSlots sharedSlots = mock(LabExecSlots.class);
+    private final LabExecLimiter limiter = new LabExecLimiter(meterRegistry, sharedSlots);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    LabExecLimiterTest() {
+        ReflectionTestUtils.setField(limiter, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(limiter, "maxInteractive", 1);
+        ReflectionTestUtils.setField(limiter, "setupQueueTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(limiter, "gradingQueueTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(limiter, "interactiveQueueTimeoutMs", 100L);
+        ReflectionTestUtils.setField(limiter, "sharedLimitEnabled", false);
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void interactiveCommandsUseOnlyTheirShareOfSlots() throws Exception {
+        try (LabExecLimiter.Permit interactive = limiter.acquire(POD, LabExecLimiter.Priority.INTERACTIVE, 30)) {
+            assertThrows(LabExecLimiter.LabBusyException.class,
+                    () -> limiter.acquire(POD, LabExecLimiter.Priority.INTERACTIVE, 30));
+            // The slot left over is still there for setup
+            limiter.acquire(POD, LabExecLimiter.Priority.SETUP, 30).close();
+        }
+        assertEquals(1.0, meterRegistry.counter("lab.exec.rejected", "priority", "INTERACTIVE").count());
+    }
+
+    @Test
+    void waitingSetupGetsTheNextFreeSlot() throws Exception {
+        LabExecLimiter.Permit first = limiter.acquire(POD, LabExecLimiter.Priority.GRADING, 30);
+        LabExecLimiter.Permit second = limiter.acquire(POD, LabExecLimiter.Priority.GRADING, 30);
+
+        Future<LabExecLimiter.Permit> setup = executor.submit(() -> limiter.acquire(POD, LabExecLimiter.Priority.SETUP, 30));
+        Thread.sleep(50);
+        assertFalse(setup.isDone());
+
+        first.close();
+        setup.get(1, TimeUnit.SECONDS).close();
+        second.close();
+    }
+
+    @Test
+    void waitingSetupGoesBeforeWaitingGrading() throws Exception {
+        LabExecLimiter.Permit first = limiter.acquire(POD, LabExecLimiter.Priority.SETUP, 30);
+        LabExecLimiter.Permit second = limiter.acquire(POD, LabExecLimiter.Priority.SETUP, 30);
+
+        CompletableFuture<String> admitted = new CompletableFuture<>();
+        Future<?> grading = executor.submit(() -> acquireAndReport(LabExecLimiter.Priority.GRADING, admitted));
+        Thread.sleep(50);
+        Future<?> setup = executor.submit(() -> acquireAndReport(LabExecLimiter.Priority.SETUP, admitted));
+        Thread.sleep(50);
+
+        first.close();
+        assertEquals("SETUP", admitted.get(1, TimeUnit.SECONDS));
+        second.close();
+        setup.get(1, TimeUnit.SECONDS);
+        grading.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void labsDoNotShareSlots() throws Exception {
+        try (LabExecLimiter.Permit a = limiter.acquire("pod-a", LabExecLimiter.Priority.INTERACTIVE, 30);
+             LabExecLimiter.Permit b = limiter.acquire("pod-b", LabExecLimiter.Priority.INTERACTIVE, 30)) {
+            assertNotNull(a);
+            assertNotNull(b);
+        }
+    }
+
+    @Test
+    void sharedSlotIsClaimedWithTheExecLeaseAndReleasedWithThePermit() throws Exception {
+        ReflectionTestUtils.setField(limiter, "sharedLimitEnabled", true);
+        LabExecSlots.Claim claim = mock(LabExecSlots.Claim.class);
+        when(sharedSlots.tryClaim(POD, LabExecLimiter.Priority.SETUP, 2, 1, 120_000 + 30_000)).thenReturn(claim);
+
+        limiter.acquire(POD, LabExecLimiter.Priority.SETUP, 120).close();
+
+        verify(sharedSlots).release(claim);
+    }
+
+    @Test
+    void fullSharedSlotsRejectAndFreeTheLocalSlot() throws Exception {
+        ReflectionTestUtils.setField(limiter, "sharedLimitEnabled", true);
+        when(sharedSlots.tryClaim(eq(POD), any(), anyInt(), anyInt(), anyLong())).thenReturn(null);
+
+        assertThrows(LabExecLimiter.LabBusyException.class,
+                () -> limiter.acquire(POD, LabExecLimiter.Priority.INTERACTIVE, 30));
+
+        // The local interactive slot was given back
+        ReflectionTestUtils.setField(limiter, "sharedLimitEnabled", false);
+        limiter.acquire(POD, LabExecLimiter.Priority.INTERACTIVE, 30).close();
+    }
+
+    @Test
+    void unreachableDatabaseFallsBackToTheLocalLimit() throws Exception {
+        ReflectionTestUtils.setField(limiter, "sharedLimitEnabled", true);
+        when(sharedSlots.tryClaim(anyString(), any(), anyInt(), anyInt(), anyLong()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        limiter.acquire(POD, LabExecLimiter.Priority.INTERACTIVE, 30).close();
+
+        verify(sharedSlots, never()).release(any());
+    }
+
+    private void acquireAndReport(LabExecLimiter.Priority priority, CompletableFuture<String> admitted) {
+        try (LabExecLimiter.Permit permit = limiter.acquire(POD, priority, 30)) {
+            admitted.complete(priority.name());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.be.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.be.repository.LabRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class LabPlacementServiceTest {
+
+    private final KubernetesClusters clusters = mock(KubernetesClusters.class);
+    private final LabRepository labRepository = mock(LabRepository.class);
+    private final LabPlacementService placement = new LabPlacementService(clusters, labRepository);
+    private final List<String> users = IntStream.range(0, 2000).mapToObj(i -> "user-" + i).collect(Collectors.toList());
+
+    @BeforeEach
+    void consistentHashPolicy() {
+        ReflectionTestUtils.setField(placement, "policy", "consistent-hash");
+    }
+
+    @Test
+    void sameUserAlwaysLandsOnTheSameTarget() {
+        when(clusters.targets()).thenReturn(targets(4));
+        List<KubernetesClusters.Target> first = placement.place(users);
+        assertEquals(first, placement.place(users));
+        assertEquals(first.get(7), placement.place("user-7"));
+        // Hashing needs no load counts
+        verifyNoInteractions(labRepository);
+    }
+
+    @Test
+    void usersSpreadOverAllTargets() {
+        when(clusters.targets()).thenReturn(targets(4));
+        Map<KubernetesClusters.Target, Integer> counts = new HashMap<>();
+        placement.place(users).forEach(target -> counts.merge(target, 1, Integer::sum));
+
+        assertEquals(4, counts.size());
+        // 500 expected per target
+        counts.values().forEach(count -> assertTrue(count > 400 && count < 600, "target got " + count + " users"));
+    }
+
+    @Test
+    void addingATargetOnlyMovesUsersToIt() {
+        List<KubernetesClusters.Target> four = targets(4);
+        List<KubernetesClusters.Target> five = targets(5);
+        when(clusters.targets()).thenReturn(four);
+        List<KubernetesClusters.Target> before = placement.place(users);
+        when(clusters.targets()).thenReturn(five);
+        List<KubernetesClusters.Target> after = placement.place(users);
+
+        int moved = 0;
+        for (int i = 0; i < users.size(); i++) {
+            if (!before.get(i).equals(after.get(i))) {
+                assertEquals(five.get(4), after.get(i));
+                moved++;
+            }
+        }
+        // About a fifth of the users, 400 expected
+        assertTrue(moved > 300 && moved < 500, moved + " users moved");
+    }
+
+    @Test
+    void removingATargetOnlyMovesItsUsers() {
+        List<KubernetesClusters.Target> four = targets(4);
+        when(clusters.targets()).thenReturn(four);
+        List<KubernetesClusters.Target> before = placement.place(users);
+        when(clusters.targets()).thenReturn(four.subList(0, 3));
+        List<KubernetesClusters.Target> after = placement.place(users);
+
+        for (int i = 0; i < users.size(); i++) {
+            if (!before.get(i).equals(four.get(3))) {
+                assertEquals(before.get(i), after.get(i));
+            }
+        }
+    }
+
+    private static List<KubernetesClusters.Target> targets(int count) {
+        List<KubernetesClusters.Target> targets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            targets.add(new KubernetesClusters.Target("cluster-" + (i % 2), "labs-" + i));
+        }
+        return targets;
+    }
+}
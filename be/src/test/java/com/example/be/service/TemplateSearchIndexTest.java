@@ -0,0 +1,145 @@
+package com.example.be.service;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.be.model.LabTemplate;
+import com.example.be.repository.LabTemplateRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TemplateSearchIndexTest {
+
+    private final LabTemplateRepository repository = mock(LabTemplateRepository.class);
+    private final ChangeTracker changeTracker = mock(ChangeTracker.class);
+    private final TemplateSearchIndex index = new TemplateSearchIndex(repository, changeTracker);
+
+    // What the repository holds
+    private final Map<String, LabTemplate> stored = new LinkedHashMap<>();
+    private final AtomicLong templatesVersion = new AtomicLong();
+    private final List<String> reread = new ArrayList<>();
+
+    TemplateSearchIndexTest() {
+        when(changeTracker.version(any())).thenAnswer(invocation -> templatesVersion.get());
+        when(repository.findAllIdsAndVersions()).thenAnswer(invocation -> stored.values().stream()
+                .map(template -> new Object[]{template.getId(), template.getVersion()})
+                .toList());
+        when(repository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<LabTemplate> found = new ArrayList<>();
+            for (String id : invocation.<Iterable<String>>getArgument(0)) {
+                reread.add(id);
+                found.add(stored.get(id));
+            }
+            return found;
+        });
+    }
+
+    @Test
+    void allWordsMustMatchAndPrefixesCount() {
+        store("py-basics", "Python basics", "python", "Variables and loops", 1);
+        store("py-web", "Flask web apps", "python", "Build a web server", 2);
+        store("k8s", "Kubernetes intro", "devops", "Pods and services with kubectl", 3);
+        refresh();
+
+        assertEquals(List.of("py-basics", "py-web"), sorted(search("pyth")));
+        assertEquals(List.of("py-web"), search("python web"));
+        assertEquals(List.of("k8s"), search("KUBE pods"));
+        assertEquals(List.of(), search("python pods"));
+        assertEquals(List.of(), search("rust"));
+    }
+
+    @Test
+    void nameOutranksDescriptionAndExactOutranksPrefix() {
+        store("in-description", "Networking", "linux", "Covers docker networking", 1);
+        store("in-name", "Docker fundamentals", "linux", "Containers from scratch", 2);
+        store("prefix-only", "Dockerfile tips", "linux", "Layers and caching", 3);
+        refresh();
+
+        assertEquals(List.of("in-name", "prefix-only", "in-description"), search("docker"));
+    }
+
+    @Test
+    void blankQueryListsActiveTemplatesNewestFirstWithFiltersAndPaging() {
+        store("old", "Old lab", "linux", null, 1).setCreatedAt(LocalDateTime.now().minusDays(2));
+        store("new", "New lab", "linux", null, 2).setCreatedAt(LocalDateTime.now());
+        store("other-type", "Other lab", "python", null, 3).setCreatedAt(LocalDateTime.now().minusDays(1));
+        store("inactive", "Hidden lab", "linux", null, 4).setIsActive(false);
+        refresh();
+
+        assertEquals(List.of("new", "other-type", "old"), search(""));
+        assertEquals(List.of("new", "old"), index.search(null, "LINUX", null, 0, 10).getTemplateIds());
+
+        TemplateSearchIndex.SearchPage second = index.search("lab", null, null, 1, 2);
+        assertEquals(3, second.getTotal());
+        assertEquals(1, second.getTemplateIds().size());
+    }
+
+    @Test
+    void refreshRereadsOnlyChangedTemplatesAndDropsRemovedOnes() {
+        store("a", "Alpha", "linux", null, 1);
+        store("b", "Beta", "linux", null, 1);
+        refresh();
+        assertEquals(List.of("a", "b"), sorted(reread));
+
+        reread.clear();
+        store("b", "Gamma", "linux", null, 2);
+        stored.remove("a");
+        refresh();
+
+        assertEquals(List.of("b"), reread);
+        assertEquals(List.of("b"), search("gamma"));
+        assertEquals(List.of(), search("beta"));
+        assertEquals(List.of(), search("alpha"));
+    }
+
+    @Test
+    void refreshIsSkippedWhileTheChangeCounterStands() {
+        store("a", "Alpha", "linux", null, 1);
+        refresh();
+        reread.clear();
+
+        store("a", "Changed", "linux", null, 2);
+        index.refresh();
+
+        assertEquals(List.of(), reread);
+        assertEquals(List.of("a"), search("alpha"));
+    }
+
+    private LabTemplate store(String id, String name, String labType, String description, long version) {
+        LabTemplate template = LabTemplate.builder()
+                .id(id)
+                .name(name)
+                .labType(labType)
+                .description(description)
+                .isActive(true)
+                .createdAt(LocalDateTime.now())
+                .version(version)
+                .build();
+        stored.put(id, template);
+        return template;
+    }
+
+    private void refresh() {
+        templatesVersion.incrementAndGet();
+        index.refresh();
+    }
+
+    private List<String> search(String query) {
+        return index.search(query, null, null, 0, 20).getTemplateIds();
+    }
+
+    private static List<String> sorted(Collection<String> ids) {
+        return ids.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.be.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    @Test
+    void burstIsServedWithoutWaiting() throws InterruptedException {
+        KubernetesApiGateway.TokenBucket bucket = new KubernetesApiGateway.TokenBucket(1, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.acquire());
+        }
+    }
+
+    @Test
+    void permitsBeyondTheBurstWaitForTheRate() throws InterruptedException {
+        KubernetesApiGateway.TokenBucket bucket = new KubernetesApiGateway.TokenBucket(20, 1);
+        assertEquals(0, bucket.acquire());
+
+        long waited = bucket.acquire();
+        // One permit per 50ms; refill since the first permit shortens the wait a little
+        assertTrue(waited > TimeUnit.MILLISECONDS.toNanos(30) && waited <= TimeUnit.MILLISECONDS.toNanos(50),
+                "waited " + waited + "ns");
+    }
+
+    @Test
+    void idleTimeRefillsNoMoreThanTheBurst() throws InterruptedException {
+        KubernetesApiGateway.TokenBucket bucket = new KubernetesApiGateway.TokenBucket(100, 2);
+        bucket.acquire();
+        bucket.acquire();
+        Thread.sleep(100);
+
+        // Ten permits' worth of idle time, but only two are kept
+        assertEquals(0, bucket.acquire());
+        assertEquals(0, bucket.acquire());
+        assertTrue(bucket.acquire() > 0);
+    }
+
+    @Test
+    void sustainedRateMatchesTheConfiguredRate() throws InterruptedException {
+        KubernetesApiGateway.TokenBucket bucket = new KubernetesApiGateway.TokenBucket(200, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 21; i++) {
+            bucket.acquire();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 20 permits after the first at 5ms each
+        assertTrue(elapsedMs >= 90, "took " + elapsedMs + "ms");
+    }
+}
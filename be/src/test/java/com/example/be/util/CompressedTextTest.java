@@ -0,0 +1,81 @@
+package com.example.be.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedTextTest {
+
+    @Test
+    void nullAndEmptyAreKeptApart() {
+        assertNull(CompressedText.compress(null));
+        assertNull(CompressedText.decompress(null));
+        assertArrayEquals(new byte[0], CompressedText.compress(""));
+        assertEquals("", CompressedText.decompress(new byte[0]));
+    }
+
+    @Test
+    void roundTripsMultiByteText() {
+        String text = "Setting up ünïcödé ✓ — 日本語\n\tpaths /usr/lib/x86_64-linux-gnu\r\n";
+        assertEquals(text, CompressedText.decompress(CompressedText.compress(text)));
+    }
+
+    @Test
+    void roundTripsRepetitiveLogsAndShrinksThem() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            log.append("Get:").append(i).append(" http://archive.ubuntu.com/ubuntu focal/main amd64 libc6 [2,722 kB]\n");
+        }
+        String text = log.toString();
+        byte[] compressed = CompressedText.compress(text);
+
+        assertEquals(text, CompressedText.decompress(compressed));
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, CompressedText.uncompressedLength(compressed));
+        assertTrue(compressed.length * 5 < text.length(), "compressed to " + compressed.length + " bytes");
+    }
+
+    @Test
+    void roundTripsIncompressibleText() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            text.append((char) (' ' + random.nextInt(95)));
+        }
+        assertEquals(text.toString(), CompressedText.decompress(CompressedText.compress(text.toString())));
+    }
+
+    @Test
+    void usesMysqlCompressLayout() throws Exception {
+        String text = "hello hello hello";
+        byte[] compressed = CompressedText.compress(text);
+
+        // 4-byte little-endian length, then a plain zlib stream, as UNCOMPRESS() expects
+        int length = (compressed[0] & 0xff) | (compressed[1] & 0xff) << 8
+                | (compressed[2] & 0xff) << 16 | (compressed[3] & 0xff) << 24;
+        assertEquals(text.length(), length);
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed, 4, compressed.length - 4);
+        byte[] raw = new byte[length];
+        assertEquals(length, inflater.inflate(raw));
+        assertTrue(inflater.finished());
+        inflater.end();
+        assertEquals(text, new String(raw, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void truncatedDataFailsInsteadOfReturningPartialText() {
+        byte[] compressed = CompressedText.compress("x".repeat(10_000) + "y".repeat(10_000));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 8);
+        assertThrows(IllegalStateException.class, () -> CompressedText.decompress(truncated));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.be.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedIdsTest {
+
+    @Test
+    void idsAreVersion7AndStrictlyIncreasingInBinaryOrder() {
+        List<UUID> ids = new ArrayList<>();
+        // Far more than fit in one millisecond, so the counter and its rollover are exercised
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(TimeOrderedIds.newId());
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            UUID id = ids.get(i);
+            assertEquals(7, id.version());
+            assertEquals(2, id.variant());
+            if (i > 0) {
+                byte[] previous = TimeOrderedIds.toBytes(ids.get(i - 1));
+                assertTrue(Arrays.compareUnsigned(previous, TimeOrderedIds.toBytes(id)) < 0,
+                        "id " + i + " does not sort after its predecessor");
+            }
+        }
+    }
+
+    @Test
+    void timestampIsTheCurrentTime() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedIds.newId();
+        long millis = id.getMostSignificantBits() >>> 16;
+        // The counter may borrow a millisecond or two under load
+        assertTrue(millis >= before && millis <= System.currentTimeMillis() + 5);
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        UUID id = TimeOrderedIds.newId();
+        byte[] bytes = TimeOrderedIds.toBytes(id);
+        assertEquals(16, bytes.length);
+        assertEquals(id, TimeOrderedIds.fromBytes(bytes));
+        assertArrayEquals(bytes, TimeOrderedIds.toBytes(TimeOrderedIds.fromBytes(bytes)));
+    }
+
+    @Test
+    void podNamesAreDnsLabelsInCreationOrder() {
+        UUID first = TimeOrderedIds.newId();
+        UUID second = TimeOrderedIds.newId();
+        String firstName = TimeOrderedIds.podName("lab", first);
+        String secondName = TimeOrderedIds.podName("lab", second);
+
+        assertTrue(firstName.matches("lab-[0-9a-z]{26}"), firstName);
+        assertTrue(firstName.length() <= 63);
+        assertTrue(firstName.compareTo(secondName) < 0);
+        assertEquals(firstName, TimeOrderedIds.podName("lab", first));
+    }
+
+    @Test
+    void parseRejectsNonCanonicalValues() {
+        UUID id = TimeOrderedIds.newId();
+        assertEquals(id, TimeOrderedIds.parse(id.toString()));
+        assertThrows(IllegalArgumentException.class, () -> TimeOrderedIds.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> TimeOrderedIds.parse("1-2-3-4-5"));
+        assertThrows(IllegalArgumentException.class, () -> TimeOrderedIds.parse(id.toString().replace('-', 'x')));
+    }
+}